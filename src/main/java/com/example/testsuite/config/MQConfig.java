@@ -3,9 +3,15 @@ package com.example.testsuite.config;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.jms.core.JmsTemplate;
 import jakarta.jms.ConnectionFactory;
 
+/**
+ * JMS templates for the request queue. Both go through the connection factory Spring Boot configures, which
+ * caches the connection, sessions and producers ({@code spring.jms.cache.*}), so consecutive sends reuse one
+ * connection instead of opening a new connection and session each.
+ */
 @Configuration
 public class MQConfig {
 
@@ -13,6 +19,7 @@ public class MQConfig {
     private String queueName;
 
     @Bean
+    @Primary
     public JmsTemplate jmsTemplate(ConnectionFactory connectionFactory) {
         JmsTemplate template = new JmsTemplate(connectionFactory);
         template.setDefaultDestinationName(queueName);
@@ -20,4 +27,15 @@ public class MQConfig {
         // For IBM MQ in development mode, we don't need explicit message conversion
         return template;
     }
-}
\ No newline at end of file
+
+    /**
+     * Template for batches of sends committed together
+     */
+    @Bean
+    public JmsTemplate transactedJmsTemplate(ConnectionFactory connectionFactory) {
+        JmsTemplate template = new JmsTemplate(connectionFactory);
+        template.setDefaultDestinationName(queueName);
+        template.setSessionTransacted(true);
+        return template;
+    }
+}
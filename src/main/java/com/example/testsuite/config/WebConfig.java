@@ -1,18 +1,84 @@
 package com.example.testsuite.config;
 
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.ws.client.core.WebServiceTemplate;
 import org.springframework.ws.soap.SoapVersion;
 import org.springframework.ws.soap.saaj.SaajSoapMessageFactory;
+import org.springframework.ws.transport.http.HttpComponents5MessageSender;
 
 @Configuration
 public class WebConfig {
 
+    @Value("${document.http.max-connections:200}")
+    private int maxConnections;
+
+    @Value("${document.http.max-connections-per-route:100}")
+    private int maxConnectionsPerRoute;
+
+    @Value("${document.http.connect-timeout-millis:5000}")
+    private long connectTimeoutMillis;
+
+    @Value("${document.http.response-timeout-millis:60000}")
+    private long responseTimeoutMillis;
+
+    @Value("${document.http.keep-alive-seconds:30}")
+    private long keepAliveSeconds;
+
+    @Value("${document.http.time-to-live-seconds:300}")
+    private long timeToLiveSeconds;
+
+    @Value("${document.http.validate-after-inactivity-millis:2000}")
+    private long validateAfterInactivityMillis;
+
+    /**
+     * Connection pool shared by the REST and SOAP clients, so that polls and submissions to the same
+     * host reuse kept-alive connections instead of opening a new one (and doing a new TLS handshake) each time
+     */
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager httpConnectionManager() {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMillis))
+                        .setSocketTimeout(Timeout.ofMilliseconds(responseTimeoutMillis))
+                        .setValidateAfterInactivity(TimeValue.ofMilliseconds(validateAfterInactivityMillis))
+                        .setTimeToLive(TimeValue.ofSeconds(timeToLiveSeconds))
+                        .build())
+                .build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient httpClient(PoolingHttpClientConnectionManager httpConnectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(httpConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setResponseTimeout(Timeout.ofMilliseconds(responseTimeoutMillis))
+                        // Kept-alive connections are reused unless the server says otherwise
+                        .setConnectionKeepAlive(TimeValue.ofSeconds(keepAliveSeconds))
+                        .build())
+                .evictIdleConnections(TimeValue.ofSeconds(keepAliveSeconds))
+                .evictExpiredConnections()
+                // Spring WS sets Content-Length and Transfer-Encoding itself, which HttpClient rejects
+                .addRequestInterceptorFirst(new HttpComponents5MessageSender.RemoveSoapHeadersInterceptor())
+                .build();
+    }
+
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(CloseableHttpClient httpClient) {
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
     }
 
     @Bean
@@ -23,10 +89,11 @@ public class WebConfig {
     }
 
     @Bean
-    public WebServiceTemplate webServiceTemplate(SaajSoapMessageFactory messageFactory) {
+    public WebServiceTemplate webServiceTemplate(SaajSoapMessageFactory messageFactory, CloseableHttpClient httpClient) {
         WebServiceTemplate webServiceTemplate = new WebServiceTemplate();
         webServiceTemplate.setMessageFactory(messageFactory);
-        
+        webServiceTemplate.setMessageSender(new HttpComponents5MessageSender(httpClient));
+
         // If you need XML/Object marshalling, uncomment and configure these:
         /*
         Jaxb2Marshaller marshaller = new Jaxb2Marshaller();
@@ -34,7 +101,7 @@ public class WebConfig {
         webServiceTemplate.setMarshaller(marshaller);
         webServiceTemplate.setUnmarshaller(marshaller);
         */
-        
+
         return webServiceTemplate;
     }
-}
\ No newline at end of file
+}
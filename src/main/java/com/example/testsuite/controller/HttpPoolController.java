@@ -0,0 +1,48 @@
+package com.example.testsuite.controller;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.pool.PoolStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Exposes the usage of the shared HTTP connection pool, to size it for the number of concurrent policies.
+ * Requests waiting for a connection ("pending") mean the pool is too small for the load.
+ */
+@RestController
+@RequestMapping("/api/diagnostics/http-pool")
+public class HttpPoolController {
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+
+    @Autowired
+    public HttpPoolController(PoolingHttpClientConnectionManager connectionManager) {
+        this.connectionManager = connectionManager;
+    }
+
+    @GetMapping
+    public Map<String, Object> getPoolStats() {
+        Map<String, Object> routes = new LinkedHashMap<>();
+        for (HttpRoute route : connectionManager.getRoutes()) {
+            routes.put(route.getTargetHost().toURI(), toMap(connectionManager.getStats(route)));
+        }
+        Map<String, Object> stats = toMap(connectionManager.getTotalStats());
+        stats.put("routes", routes);
+        return stats;
+    }
+
+    private static Map<String, Object> toMap(PoolStats stats) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("leased", stats.getLeased());
+        map.put("pending", stats.getPending());
+        map.put("available", stats.getAvailable());
+        map.put("max", stats.getMax());
+        return map;
+    }
+}
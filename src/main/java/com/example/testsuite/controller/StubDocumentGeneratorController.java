@@ -0,0 +1,114 @@
+package com.example.testsuite.controller;
+
+import com.example.testsuite.processor.XMLFileProcessor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stands in for the document generator so that load runs and the pipeline can be exercised offline.
+ * <p>
+ * A SOAP submission is accepted immediately and its PDF becomes available after a generation time drawn
+ * uniformly between {@code document.stub.min-generation-millis} and {@code max-generation-millis}; until then
+ * the PDF endpoint answers 404, as the real document API does. Point {@code webservice.resource} at
+ * {@code /api/stub/generator} and {@code document.api.pdf-endpoint} at {@code /api/stub/generator/pdf} to use it.
+ * Only enabled with {@code document.stub.enabled=true}.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/stub/generator")
+@ConditionalOnProperty(name = "document.stub.enabled", havingValue = "true")
+public class StubDocumentGeneratorController {
+
+    private static final String ACCEPTED_RESPONSE = "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+            + "<soapenv:Body><accepted/></soapenv:Body></soapenv:Envelope>";
+
+    private final XMLFileProcessor xmlFileProcessor;
+    /** Time, in System.nanoTime, at which each submitted policy's PDF becomes available */
+    private final Map<String, Long> readyAt = new ConcurrentHashMap<>();
+    private final byte[] pdf = createPdf();
+
+    @Value("${document.stub.min-generation-millis:100}")
+    private long minGenerationMillis;
+
+    @Value("${document.stub.max-generation-millis:500}")
+    private long maxGenerationMillis;
+
+    @Autowired
+    public StubDocumentGeneratorController(XMLFileProcessor xmlFileProcessor) {
+        this.xmlFileProcessor = xmlFileProcessor;
+    }
+
+    /**
+     * Accepts a SOAP envelope holding a policy and starts "generating" its PDF
+     * @param soapEnvelope the SOAP envelope, with the policy XML in its body
+     * @return an acceptance envelope
+     */
+    @PostMapping(produces = MediaType.TEXT_XML_VALUE)
+    public String submit(@RequestBody String soapEnvelope) {
+        String policyNumber = xmlFileProcessor.extractPolicyNumber(soapEnvelope);
+        long generationMillis = maxGenerationMillis > minGenerationMillis
+                ? ThreadLocalRandom.current().nextLong(minGenerationMillis, maxGenerationMillis + 1)
+                : minGenerationMillis;
+        long ready = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(generationMillis);
+        // A resubmitted policy keeps the PDF it already has; LoadGenerationRunner gives repeated arrivals
+        // policy numbers of their own so that each of them waits for its own generation
+        readyAt.merge(policyNumber, ready, Math::min);
+        log.debug("Stub accepted policy {}, PDF ready in {} ms", policyNumber, generationMillis);
+        return ACCEPTED_RESPONSE;
+    }
+
+    /**
+     * Returns the PDF of a submitted policy once its generation time has passed
+     * @param policyNumber the policy number to retrieve the PDF for
+     * @return the PDF, or 404 while it is not generated yet or the policy was never submitted
+     */
+    @GetMapping(value = "/pdf", produces = MediaType.APPLICATION_PDF_VALUE)
+    public ResponseEntity<byte[]> getPdf(@RequestParam String policyNumber) {
+        Long ready = readyAt.get(policyNumber);
+        if (ready == null || ready - System.nanoTime() > 0) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_PDF).body(pdf);
+    }
+
+    private static byte[] createPdf() {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = new PDPage();
+            document.addPage(page);
+            try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
+                contentStream.beginText();
+                contentStream.setFont(PDType1Font.HELVETICA_BOLD, 12);
+                contentStream.newLineAtOffset(100, 700);
+                contentStream.showText("Stub PDF Document");
+                contentStream.endText();
+            }
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            document.save(baos);
+            return baos.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create stub PDF", e);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.testsuite.processor;
+
+import com.example.testsuite.processor.SoapEnvelopProcessor.SoapEnvelope;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.apache.hc.core5.http.ConnectionRequestTimeoutException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.net.ConnectException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Submits SOAP envelopes to the forms service asynchronously, for replaying large policy volumes without
+ * overwhelming the generator. At most {@code document.submit.max-in-flight} requests are sent at once,
+ * requests are handed to the submission threads at no more than {@code rate-per-second} (a token bucket
+ * allowing bursts of {@code burst}), and transient failures are retried with exponential backoff.
+ * <p>
+ * Transient failures are failures to connect, including timeouts waiting for a pooled connection,
+ * 429 Too Many Requests and 502, 503 and 504 responses, honouring a Retry-After header given in seconds.
+ * Other failures fail the submission straight away: SOAP faults returned with 500, and read timeouts,
+ * since the service may still process a request it did not answer in time. Rate limit and backoff waits
+ * happen on a scheduler, not on a submission thread.
+ */
+@Slf4j
+@Component
+public class AsyncSoapSubmitter {
+
+    private final DocumentMessageProcessor messageProcessor;
+
+    @Value("${document.submit.max-in-flight:32}")
+    private int maxInFlight;
+
+    @Value("${document.submit.rate-per-second:0}")
+    private double ratePerSecond;
+
+    @Value("${document.submit.burst:1}")
+    private int burst;
+
+    @Value("${document.submit.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${document.submit.initial-backoff-millis:500}")
+    private long initialBackoffMillis;
+
+    @Value("${document.submit.max-backoff-millis:30000}")
+    private long maxBackoffMillis;
+
+    @Value("${document.submit.backoff-multiplier:2.0}")
+    private double backoffMultiplier;
+
+    @Value("${document.submit.jitter:0.2}")
+    private double jitter;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private ExecutorService submitPool;
+    private ScheduledExecutorService delayScheduler;
+    private TokenBucket tokenBucket;
+
+    @Autowired
+    public AsyncSoapSubmitter(DocumentMessageProcessor messageProcessor) {
+        this.messageProcessor = messageProcessor;
+    }
+
+    @PostConstruct
+    void init() {
+        submitPool = Executors.newFixedThreadPool(Math.max(1, maxInFlight), threadFactory("soap-submit-"));
+        delayScheduler = Executors.newSingleThreadScheduledExecutor(threadFactory("soap-delay-"));
+        tokenBucket = ratePerSecond > 0 ? new TokenBucket(ratePerSecond, Math.max(1, burst)) : null;
+        log.debug("Submitting with at most {} requests in flight, {} per second and {} attempts",
+                maxInFlight, ratePerSecond > 0 ? ratePerSecond : "unlimited", maxAttempts);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        delayScheduler.shutdownNow();
+        submitPool.shutdownNow();
+    }
+
+    /**
+     * Queues a SOAP envelope for submission
+     * @param soapEnvelope the SOAP envelope to send; it is written again for every attempt
+     * @return a future completed with the response envelope, or exceptionally with the error of the last
+     * attempt. Cancelling it drops the submission if it has not been sent yet.
+     */
+    public CompletableFuture<String> submitAsync(SoapEnvelope soapEnvelope) {
+        Submission submission = new Submission(soapEnvelope);
+        queued.incrementAndGet();
+        submission.dispatch();
+        return submission.future;
+    }
+
+    /**
+     * @return number of requests currently being sent
+     */
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return number of submissions waiting for a free slot or for their next attempt
+     */
+    public int getQueuedCount() {
+        return queued.get();
+    }
+
+    static boolean isTransient(Throwable error) {
+        if (error instanceof ResourceAccessException) {
+            // Only retried when the request never reached the service
+            Throwable cause = error.getCause();
+            return cause instanceof ConnectException || cause instanceof ConnectTimeoutException
+                    || cause instanceof ConnectionRequestTimeoutException;
+        }
+        if (error instanceof HttpStatusCodeException) {
+            int status = ((HttpStatusCodeException) error).getStatusCode().value();
+            return status == HttpStatus.TOO_MANY_REQUESTS.value() || status == HttpStatus.BAD_GATEWAY.value()
+                    || status == HttpStatus.SERVICE_UNAVAILABLE.value() || status == HttpStatus.GATEWAY_TIMEOUT.value();
+        }
+        return false;
+    }
+
+    private static long retryAfterMillis(Throwable error) {
+        if (error instanceof HttpStatusCodeException) {
+            HttpHeaders headers = ((HttpStatusCodeException) error).getResponseHeaders();
+            String retryAfter = headers == null ? null : headers.getFirst(HttpHeaders.RETRY_AFTER);
+            if (retryAfter != null) {
+                try {
+                    return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+                } catch (NumberFormatException e) {
+                    // An HTTP date; the computed backoff is used instead
+                }
+            }
+        }
+        return 0;
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * One envelope and its attempts so far, handed between the submit pool and the delay scheduler
+     */
+    private class Submission {
+        private final SoapEnvelope soapEnvelope;
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+        private long backoffMillis = initialBackoffMillis;
+        private int attempts;
+
+        Submission(SoapEnvelope soapEnvelope) {
+            this.soapEnvelope = soapEnvelope;
+        }
+
+        /**
+         * Hands the submission to the submit pool once the rate limit allows it
+         */
+        void dispatch() {
+            long waitNanos = tokenBucket == null ? 0 : tokenBucket.reserve();
+            try {
+                if (waitNanos > 0) {
+                    delayScheduler.schedule(this::submit, waitNanos, TimeUnit.NANOSECONDS);
+                } else {
+                    submit();
+                }
+            } catch (RejectedExecutionException e) {
+                fail(e);
+            }
+        }
+
+        private void submit() {
+            try {
+                submitPool.execute(this::attempt);
+            } catch (RejectedExecutionException e) {
+                fail(e);
+            }
+        }
+
+        private void attempt() {
+            if (future.isDone()) {
+                queued.decrementAndGet();
+                return;
+            }
+            attempts++;
+            queued.decrementAndGet();
+            inFlight.incrementAndGet();
+            String response = null;
+            RuntimeException error = null;
+            try {
+                response = messageProcessor.postSoapEnvelope(soapEnvelope);
+            } catch (RuntimeException e) {
+                error = e;
+            } finally {
+                // Released before completing, so the slot is free by the time dependent stages run
+                inFlight.decrementAndGet();
+            }
+            if (error == null) {
+                future.complete(response);
+            } else {
+                retryOrFail(error);
+            }
+        }
+
+        private void retryOrFail(RuntimeException error) {
+            if (attempts >= maxAttempts || !isTransient(error)) {
+                log.error("Submission failed after {} attempt(s)", attempts, error);
+                future.completeExceptionally(error);
+                return;
+            }
+            double spread = 1 + jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+            long delayMillis = Math.max((long) (backoffMillis * spread), retryAfterMillis(error));
+            backoffMillis = Math.min((long) (backoffMillis * backoffMultiplier), maxBackoffMillis);
+            log.warn("Submission attempt {} failed with {}, retrying in {} ms", attempts, error.getMessage(), delayMillis);
+            queued.incrementAndGet();
+            try {
+                delayScheduler.schedule(this::dispatch, delayMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                fail(e);
+            }
+        }
+
+        private void fail(Exception error) {
+            queued.decrementAndGet();
+            future.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * Token bucket refilled continuously at a fixed rate. A caller that finds it empty reserves the next
+     * token and is told how long to wait for it, so waiting callers are served in order.
+     */
+    static class TokenBucket {
+        private final double tokensPerNano;
+        private final double capacity;
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        TokenBucket(double ratePerSecond, int capacity) {
+            this.tokensPerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = capacity;
+            this.tokens = capacity;
+        }
+
+        /**
+         * @return nanoseconds until the reserved token is available
+         */
+        synchronized long reserve() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+            refilledAt = now;
+            tokens--;
+            return tokens >= 0 ? 0 : (long) (-tokens / tokensPerNano);
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.example.testsuite.processor;
+
+import com.example.testsuite.utils.MaskRules;
+import com.example.testsuite.utils.PDFComparator;
+import com.example.testsuite.utils.PDFComparator.ComparisonResult;
+import com.example.testsuite.utils.TextComparator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.HtmlUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares a whole directory of generated PDFs against a directory of gold copies.
+ * <p>
+ * Files are paired by policy number: {@code generated_<policy>.pdf} with {@code gold_<policy>.pdf}, or
+ * files of the same name when neither has a prefix. Pairs are compared on a fixed pool of workers.
+ * The directory listing is consumed as comparisons complete, since at most {@code max-pending} pairs are
+ * queued or running at any time, so memory stays flat however large the corpus. Every pair gets its own
+ * report directory, and the outcome of all pairs is summarized in {@code batch-summary.json} and
+ * {@code batch-summary.html}. A pair that fails to compare is recorded as FAILED and does not stop the batch.
+ * <p>
+ * Each comparison already renders and extracts pages on its own pools, so the CPU load of a batch is
+ * roughly {@code parallelism} times the visual and text parallelism; lower those when raising this one.
+ */
+@Slf4j
+@Component
+public class BatchComparisonRunner {
+
+    static final String GENERATED_PREFIX = "generated_";
+    static final String GOLD_COPY_PREFIX = "gold_";
+
+    private final PDFComparator pdfComparator;
+    private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    @Value("${document.batch.parallelism:0}")
+    private int parallelism;
+
+    @Value("${document.batch.max-pending:0}")
+    private int maxPending;
+
+    @Value("${document.batch.text-mode:LINE_BY_LINE}")
+    private TextComparator.ComparisonMode textMode;
+
+    @Value("${document.batch.deep-detect:false}")
+    private boolean deepDetect;
+
+    private ExecutorService comparisonPool;
+
+    @Autowired
+    public BatchComparisonRunner(PDFComparator pdfComparator) {
+        this.pdfComparator = pdfComparator;
+    }
+
+    @PostConstruct
+    void init() {
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        if (maxPending < parallelism) {
+            maxPending = parallelism * 2;
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        comparisonPool = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "batch-compare-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.debug("Batch comparison configured with parallelism {} and at most {} pending pairs",
+                parallelism, maxPending);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        comparisonPool.shutdownNow();
+    }
+
+    /**
+     * Compares every pair of PDFs in two directories using the default mask rules
+     * @param generatedDir directory of generated PDFs
+     * @param goldCopyDir directory of gold copies
+     * @param outputDir directory to write the per-pair reports and the summaries to
+     * @return the summary of the batch
+     * @throws IOException if a directory cannot be read or the summaries cannot be written
+     */
+    public BatchSummary run(File generatedDir, File goldCopyDir, File outputDir) throws IOException {
+        return run(generatedDir, goldCopyDir, outputDir, MaskRules.DEFAULT_TEMPLATE);
+    }
+
+    /**
+     * Compares every pair of PDFs in two directories
+     * @param generatedDir directory of generated PDFs
+     * @param goldCopyDir directory of gold copies
+     * @param outputDir directory to write the per-pair reports and the summaries to
+     * @param template the policy template whose mask rules apply
+     * @return the summary of the batch
+     * @throws IOException if a directory cannot be read or the summaries cannot be written
+     */
+    public BatchSummary run(File generatedDir, File goldCopyDir, File outputDir, String template) throws IOException {
+        if (!outputDir.exists() && !outputDir.mkdirs()) {
+            throw new IOException("Failed to create output directory: " + outputDir);
+        }
+        long start = System.nanoTime();
+        Instant startedAt = Instant.now();
+
+        Map<String, File> goldCopies = listPdfs(goldCopyDir, GOLD_COPY_PREFIX);
+        ConcurrentLinkedQueue<PairResult> results = new ConcurrentLinkedQueue<>();
+        Semaphore pending = new Semaphore(maxPending);
+        List<Future<?>> futures = new ArrayList<>();
+
+        try (DirectoryStream<Path> generatedPdfs = Files.newDirectoryStream(generatedDir.toPath(), "*.pdf")) {
+            for (Path generatedPdf : generatedPdfs) {
+                String policyNumber = policyNumber(generatedPdf, GENERATED_PREFIX);
+                File goldCopy = goldCopies.remove(policyNumber);
+                if (goldCopy == null) {
+                    results.add(PairResult.missing(policyNumber, generatedPdf.toFile(), null));
+                    continue;
+                }
+                // Blocks the listing until a worker frees up a slot
+                pending.acquire();
+                try {
+                    futures.add(comparisonPool.submit(() -> {
+                        try {
+                            results.add(compare(policyNumber, generatedPdf.toFile(), goldCopy, outputDir,
+                                    template));
+                        } finally {
+                            pending.release();
+                        }
+                    }));
+                } catch (RejectedExecutionException e) {
+                    // The task that would have released the slot never runs
+                    pending.release();
+                    log.error("Failed to schedule comparison of policy {}", policyNumber, e);
+                    results.add(new PairResult(policyNumber, Status.FAILED, generatedPdf.toFile(), goldCopy, null,
+                            0, 0, 0, 0, String.valueOf(e)));
+                }
+            }
+            // All slots are free again once the last comparison has finished
+            pending.acquire(maxPending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(true));
+            throw new IOException("Interrupted while comparing " + generatedDir, e);
+        }
+
+        goldCopies.forEach((policyNumber, goldCopy) ->
+                results.add(PairResult.missing(policyNumber, null, goldCopy)));
+
+        List<PairResult> pairs = new ArrayList<>(results);
+        pairs.sort(Comparator.comparing(PairResult::getPolicyNumber));
+        BatchSummary summary = new BatchSummary(startedAt.toString(),
+                (System.nanoTime() - start) / 1_000_000, parallelism, pairs);
+        objectMapper.writeValue(new File(outputDir, "batch-summary.json"), summary);
+        Files.writeString(new File(outputDir, "batch-summary.html").toPath(), toHtml(summary));
+
+        log.info("Compared {} pairs in {} ms: {}", pairs.size(), summary.getElapsedMillis(), summary.getStatusCounts());
+        return summary;
+    }
+
+    private PairResult compare(String policyNumber, File generatedPdf, File goldCopyPdf, File outputDir,
+            String template) {
+        long start = System.nanoTime();
+        File pairDir = new File(outputDir, policyNumber.replaceAll("[^a-zA-Z0-9.-]", "_"));
+        try {
+            ComparisonResult result = pdfComparator.compare(generatedPdf, goldCopyPdf, pairDir,
+                    textMode, deepDetect, template);
+            return new PairResult(policyNumber, result.hasDifferences() ? Status.DIFFERENT : Status.IDENTICAL,
+                    generatedPdf, goldCopyPdf, pairDir.getName() + "/comparison-report.txt",
+                    result.getVisualDifferences().size(), result.getTextDifferences().size(),
+                    result.getFontDifferences().size(), (System.nanoTime() - start) / 1_000_000, null);
+        } catch (Exception e) {
+            log.error("Failed to compare policy {}", policyNumber, e);
+            return new PairResult(policyNumber, Status.FAILED, generatedPdf, goldCopyPdf, null, 0, 0, 0,
+                    (System.nanoTime() - start) / 1_000_000, String.valueOf(e));
+        }
+    }
+
+    /**
+     * @return the PDFs of a directory by policy number
+     */
+    private static Map<String, File> listPdfs(File dir, String prefix) throws IOException {
+        Map<String, File> pdfs = new HashMap<>();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(dir.toPath(), "*.pdf")) {
+            for (Path path : paths) {
+                pdfs.put(policyNumber(path, prefix), path.toFile());
+            }
+        }
+        return pdfs;
+    }
+
+    static String policyNumber(Path pdf, String prefix) {
+        String name = pdf.getFileName().toString();
+        name = name.substring(0, name.length() - ".pdf".length());
+        return name.startsWith(prefix) ? name.substring(prefix.length()) : name;
+    }
+
+    private static String toHtml(BatchSummary summary) {
+        StringBuilder html = new StringBuilder();
+        html.append("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"UTF-8\">\n")
+            .append("<title>Batch Comparison Summary</title>\n<style>\n")
+            .append("body { font-family: sans-serif; }\n")
+            .append("table { border-collapse: collapse; }\n")
+            .append("th, td { border: 1px solid #ccc; padding: 4px 8px; text-align: left; }\n")
+            .append(".IDENTICAL { background: #e6f4e6; }\n")
+            .append(".DIFFERENT, .FAILED { background: #fbe3e3; }\n")
+            .append(".MISSING_GENERATED, .MISSING_GOLD_COPY { background: #fdf3d8; }\n")
+            .append("</style>\n</head>\n<body>\n<h1>Batch Comparison Summary</h1>\n<p>")
+            .append(summary.getPairCount()).append(" pairs compared in ").append(summary.getElapsedMillis())
+            .append(" ms with parallelism ").append(summary.getParallelism())
+            .append(", started ").append(summary.getStartedAt()).append("</p>\n<ul>\n");
+        summary.getStatusCounts().forEach((status, count) ->
+                html.append("<li>").append(status).append(": ").append(count).append("</li>\n"));
+        html.append("</ul>\n<table>\n<tr><th>Policy</th><th>Status</th><th>Visual</th><th>Text</th>")
+            .append("<th>Font</th><th>Time (ms)</th><th>Details</th></tr>\n");
+        for (PairResult pair : summary.getPairs()) {
+            html.append("<tr class=\"").append(pair.getStatus()).append("\"><td>")
+                .append(HtmlUtils.htmlEscape(pair.getPolicyNumber())).append("</td><td>")
+                .append(pair.getStatus()).append("</td><td>")
+                .append(pair.getVisualDifferences()).append("</td><td>")
+                .append(pair.getTextDifferences()).append("</td><td>")
+                .append(pair.getFontDifferences()).append("</td><td>")
+                .append(pair.getDurationMillis()).append("</td><td>");
+            if (pair.getReport() != null) {
+                String report = HtmlUtils.htmlEscape(pair.getReport());
+                html.append("<a href=\"").append(report).append("\">").append(report).append("</a>");
+            } else if (pair.getError() != null) {
+                html.append(HtmlUtils.htmlEscape(pair.getError()));
+            }
+            html.append("</td></tr>\n");
+        }
+        html.append("</table>\n</body>\n</html>\n");
+        return html.toString();
+    }
+
+    public enum Status {
+        IDENTICAL, DIFFERENT, FAILED, MISSING_GENERATED, MISSING_GOLD_COPY
+    }
+
+    public static class PairResult {
+        private final String policyNumber;
+        private final Status status;
+        private final String generatedPdf;
+        private final String goldCopyPdf;
+        private final String report;
+        private final int visualDifferences;
+        private final int textDifferences;
+        private final int fontDifferences;
+        private final long durationMillis;
+        private final String error;
+
+        /**
+         * @param report path of the comparison report relative to the batch output directory, or null
+         * @param error description of the failure, or null
+         */
+        public PairResult(String policyNumber, Status status, File generatedPdf, File goldCopyPdf, String report,
+                int visualDifferences, int textDifferences, int fontDifferences, long durationMillis, String error) {
+            this.policyNumber = policyNumber;
+            this.status = status;
+            this.generatedPdf = generatedPdf == null ? null : generatedPdf.getPath();
+            this.goldCopyPdf = goldCopyPdf == null ? null : goldCopyPdf.getPath();
+            this.report = report;
+            this.visualDifferences = visualDifferences;
+            this.textDifferences = textDifferences;
+            this.fontDifferences = fontDifferences;
+            this.durationMillis = durationMillis;
+            this.error = error;
+        }
+
+        static PairResult missing(String policyNumber, File generatedPdf, File goldCopyPdf) {
+            return new PairResult(policyNumber, generatedPdf == null ? Status.MISSING_GENERATED : Status.MISSING_GOLD_COPY,
+                    generatedPdf, goldCopyPdf, null, 0, 0, 0, 0, null);
+        }
+
+        public String getPolicyNumber() { return policyNumber; }
+        public Status getStatus() { return status; }
+        public String getGeneratedPdf() { return generatedPdf; }
+        public String getGoldCopyPdf() { return goldCopyPdf; }
+        public String getReport() { return report; }
+        public int getVisualDifferences() { return visualDifferences; }
+        public int getTextDifferences() { return textDifferences; }
+        public int getFontDifferences() { return fontDifferences; }
+        public long getDurationMillis() { return durationMillis; }
+        public String getError() { return error; }
+    }
+
+    public static class BatchSummary {
+        private final String startedAt;
+        private final long elapsedMillis;
+        private final int parallelism;
+        private final List<PairResult> pairs;
+        private final Map<Status, Integer> statusCounts = new EnumMap<>(Status.class);
+
+        public BatchSummary(String startedAt, long elapsedMillis, int parallelism, List<PairResult> pairs) {
+            this.startedAt = startedAt;
+            this.elapsedMillis = elapsedMillis;
+            this.parallelism = parallelism;
+            this.pairs = pairs;
+            for (PairResult pair : pairs) {
+                statusCounts.merge(pair.getStatus(), 1, Integer::sum);
+            }
+        }
+
+        public String getStartedAt() { return startedAt; }
+        public long getElapsedMillis() { return elapsedMillis; }
+        public int getParallelism() { return parallelism; }
+        public int getPairCount() { return pairs.size(); }
+        public Map<Status, Integer> getStatusCounts() { return statusCounts; }
+        public List<PairResult> getPairs() { return pairs; }
+
+        /** @return whether every pair was found and compared without differences */
+        public boolean isPassed() {
+            return statusCounts.getOrDefault(Status.IDENTICAL, 0) == pairs.size();
+        }
+    }
+}
@@ -1,30 +1,45 @@
 package com.example.testsuite.processor;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.awaitility.Awaitility;
+import com.example.testsuite.processor.SoapEnvelopProcessor.SoapEnvelope;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.jms.core.JmsTemplate;
+import org.springframework.http.StreamingHttpOutputMessage;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
-import org.springframework.ws.client.core.WebServiceTemplate;
-import javax.xml.transform.stream.StreamSource;
-import javax.xml.transform.stream.StreamResult;
-import java.io.StringReader;
-import java.io.StringWriter;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class DocumentMessageProcessor {
 
-    private final JmsTemplate jmsTemplate;
+    private static final MediaType SOAP_CONTENT_TYPE = new MediaType(MediaType.TEXT_XML, StandardCharsets.UTF_8);
+
+    private final QueuePublisher queuePublisher;
     private final RestTemplate restTemplate;
-    private final WebServiceTemplate webServiceTemplate;
+    private final DocumentReplyListener replyListener;
 
     @Value("${ibm.mq.queue}")
     private String queueName;
@@ -41,12 +56,55 @@ public class DocumentMessageProcessor {
     @Value("${document.poll.interval-seconds}")
     private int intervalSeconds;
 
+    @Value("${document.poll.initial-delay-millis:0}")
+    private long initialDelayMillis;
+
+    @Value("${document.poll.initial-interval-millis:250}")
+    private long initialIntervalMillis;
+
+    @Value("${document.poll.backoff-multiplier:2.0}")
+    private double backoffMultiplier;
+
+    @Value("${document.poll.jitter:0.2}")
+    private double jitter;
+
+    @Value("${document.poll.scheduler-threads:2}")
+    private int schedulerThreads;
+
+    @Value("${document.poll.request-threads:16}")
+    private int requestThreads;
+
     @Value("${webservice.base-url}")
     private String webserviceBaseUrl;
 
     @Value("${webservice.resource}")
     private String webserviceResource;
 
+    private ScheduledExecutorService pollScheduler;
+    private ExecutorService requestExecutor;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        pollScheduler = Executors.newScheduledThreadPool(Math.max(1, schedulerThreads), runnable -> {
+            Thread thread = new Thread(runnable, "pdf-poll-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger requestThreadCount = new AtomicInteger();
+        requestExecutor = Executors.newFixedThreadPool(Math.max(1, requestThreads), runnable -> {
+            Thread thread = new Thread(runnable, "pdf-request-" + requestThreadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pollScheduler.shutdownNow();
+        requestExecutor.shutdownNow();
+    }
+
     /**
      * Sends an XML message to the configured MQ queue
      * @param xmlContent the XML content to send
@@ -54,7 +112,7 @@ public class DocumentMessageProcessor {
     public void sendToQueue(String xmlContent) {
         log.info("Sending message to queue: {}", queueName);
         try {
-            jmsTemplate.convertAndSend(queueName, xmlContent);
+            queuePublisher.send(xmlContent);
             log.info("Message sent successfully");
         } catch (Exception e) {
             log.error("Failed to send message to queue", e);
@@ -63,22 +121,49 @@ public class DocumentMessageProcessor {
     }
 
     /**
-     * Sends XML payload to a webservice endpoint
+     * Sends XML messages to the configured MQ queue in transacted batches
+     * @param xmlContents the XML contents to send, in order
+     */
+    public void sendToQueue(List<String> xmlContents) {
+        log.info("Sending {} messages to queue: {}", xmlContents.size(), queueName);
+        try {
+            queuePublisher.sendBatch(xmlContents);
+            log.info("Messages sent successfully");
+        } catch (Exception e) {
+            log.error("Failed to send messages to queue", e);
+            throw new RuntimeException("Failed to send messages to queue", e);
+        }
+    }
+
+    /**
+     * Sends an XML message to the configured MQ queue without waiting for the broker
      * @param xmlContent the XML content to send
-     * @return the response message from the webservice
+     * @return a future completed once the broker has accepted the message
      */
-    public String sendToWebService(String xmlContent) {
-        log.info("Sending message to API: {}/{}", webserviceBaseUrl, webserviceResource);
-        var fullUrl = webserviceBaseUrl + "/" + webserviceResource;
+    public CompletableFuture<Void> sendToQueueAsync(String xmlContent) {
+        log.debug("Sending message asynchronously to queue: {}", queueName);
+        return queuePublisher.sendAsync(xmlContent);
+    }
 
+    /**
+     * Sends a complete SOAP envelope to a webservice endpoint as is, without wrapping it in another envelope
+     * @param soapEnvelope the SOAP envelope to send
+     * @return the whole response envelope from the webservice
+     */
+    public String sendToWebService(String soapEnvelope) {
+        return sendToWebService(out -> out.write(soapEnvelope.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Sends a SOAP envelope to a webservice endpoint, writing it straight into the request body, which is
+     * streamed to the connection with chunked transfer encoding rather than buffered
+     * @param soapEnvelope the SOAP envelope to send
+     * @return the response envelope from the webservice
+     */
+    public String sendToWebService(SoapEnvelope soapEnvelope) {
+        log.info("Sending message to API: {}/{}", webserviceBaseUrl, webserviceResource);
         try {
-            StreamSource source = new StreamSource(new StringReader(xmlContent));
-            StringWriter writer = new StringWriter();
-            StreamResult result = new StreamResult(writer);
-            
-            webServiceTemplate.sendSourceAndReceiveToResult(fullUrl, source, result);
-            
-            String response = writer.toString();
+            String response = postSoapEnvelope(soapEnvelope);
             log.info("Message sent successfully");
             return response;
         } catch (Exception e) {
@@ -88,31 +173,138 @@ public class DocumentMessageProcessor {
     }
 
     /**
-     * Retrieves the generated PDF for a given policy number
+     * Posts a SOAP envelope to the webservice endpoint, leaving failures as thrown by the RestTemplate
+     * so that callers can tell transient ones apart
+     * @param soapEnvelope the SOAP envelope to send
+     * @return the response envelope from the webservice
+     * @throws org.springframework.web.client.RestClientException if the request failed
+     */
+    String postSoapEnvelope(SoapEnvelope soapEnvelope) {
+        var fullUrl = webserviceBaseUrl + "/" + webserviceResource;
+        return restTemplate.execute(fullUrl, HttpMethod.POST, request -> {
+            request.getHeaders().setContentType(SOAP_CONTENT_TYPE);
+            request.getHeaders().set("SOAPAction", "\"\"");
+            if (request instanceof StreamingHttpOutputMessage) {
+                ((StreamingHttpOutputMessage) request).setBody(soapEnvelope::writeTo);
+            } else {
+                soapEnvelope.writeTo(request.getBody());
+            }
+        }, clientResponse -> StreamUtils.copyToString(clientResponse.getBody(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Retrieves the generated PDF for a given policy number, blocking until it is available
      * @param policyNumber the policy number to retrieve the PDF for
      * @return the PDF content as a byte array
+     * @see #retrievePDFAsync(String)
      */
     public byte[] retrievePDF(String policyNumber) {
-        String url = apiBaseUrl + pdfEndpoint;
+        try {
+            return retrievePDFAsync(policyNumber).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("Failed to retrieve PDF for policy " + policyNumber, e.getCause());
+        }
+    }
+
+    /**
+     * Retrieves the generated PDF of a policy without holding a thread while waiting. When the reply listener
+     * is enabled, the PDF is taken from the policy's completion message on the reply queue. Otherwise the
+     * document API is polled: the first poll
+     * happens after {@code document.poll.initial-delay-millis}; the interval then starts at
+     * {@code initial-interval-millis} and grows by {@code backoff-multiplier} up to {@code interval-seconds},
+     * each delay randomized by {@code jitter} so that retrievals started together don't poll in lockstep.
+     * All retrievals share a small scheduler that only times the polls; the blocking requests run on
+     * {@code request-threads} separate threads, so slow responses don't delay the polls of other retrievals.
+     * @param policyNumber the policy number to retrieve the PDF for
+     * @return a future completed with the PDF content, or exceptionally with a TimeoutException once
+     * {@code timeout-minutes} have passed or with the error of a failed request. Cancelling it stops polling.
+     */
+    public CompletableFuture<byte[]> retrievePDFAsync(String policyNumber) {
+        if (replyListener.isEnabled()) {
+            log.info("Waiting for PDF for policy: {} on the reply queue", policyNumber);
+            return replyListener.awaitPDF(policyNumber, Duration.ofMinutes(timeoutMinutes));
+        }
+        String url = apiBaseUrl + pdfEndpoint + "?policyNumber=" + policyNumber;
         log.info("Attempting to retrieve PDF for policy: {} from: {}", policyNumber, url);
 
-        AtomicReference<byte[]> result = new AtomicReference<>();
-
-        Awaitility.await()
-                .atMost(Duration.ofMinutes(timeoutMinutes))
-                .pollInterval(Duration.ofSeconds(intervalSeconds))
-                .untilAsserted(() -> {
-                    ResponseEntity<byte[]> response = restTemplate.getForEntity(
-                            url + "?policyNumber=" + policyNumber,
-                            byte[].class
-                    );
-                    if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
-                        throw new AssertionError("PDF not yet available");
-                    }
-                    result.set(response.getBody());
-                });
-
-        log.info("Successfully retrieved PDF for policy: {}", policyNumber);
-        return result.get();
+        PdfPoll poll = new PdfPoll(policyNumber, url,
+                System.nanoTime() + TimeUnit.MINUTES.toNanos(timeoutMinutes));
+        poll.schedule(initialDelayMillis);
+        return poll.future;
+    }
+
+    /**
+     * State of one asynchronous retrieval, rescheduled on the shared scheduler after every
+     * unsuccessful attempt and handed to the request threads when due
+     */
+    private class PdfPoll {
+        private final String policyNumber;
+        private final String url;
+        private final long deadline;
+        private final CompletableFuture<byte[]> future = new CompletableFuture<>();
+        private long intervalMillis = initialIntervalMillis;
+        private int attempts;
+
+        PdfPoll(String policyNumber, String url, long deadline) {
+            this.policyNumber = policyNumber;
+            this.url = url;
+            this.deadline = deadline;
+        }
+
+        void schedule(long delayMillis) {
+            try {
+                pollScheduler.schedule(this::submit, delayMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+        private void submit() {
+            try {
+                requestExecutor.execute(this::poll);
+            } catch (RejectedExecutionException e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+        private void poll() {
+            if (future.isDone()) {
+                return;
+            }
+            attempts++;
+            try {
+                ResponseEntity<byte[]> response = restTemplate.getForEntity(url, byte[].class);
+                if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
+                    log.info("Successfully retrieved PDF for policy: {} after {} attempt(s)", policyNumber, attempts);
+                    future.complete(response.getBody());
+                    return;
+                }
+            } catch (RuntimeException e) {
+                // Not found means the PDF has not been generated yet; anything else is an actual failure
+                if (!(e instanceof HttpClientErrorException)
+                        || !((HttpClientErrorException) e).getStatusCode().isSameCodeAs(HttpStatus.NOT_FOUND)) {
+                    log.error("Failed to retrieve PDF for policy: {}", policyNumber, e);
+                    future.completeExceptionally(e);
+                    return;
+                }
+            }
+
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                future.completeExceptionally(new TimeoutException(String.format(
+                        "PDF for policy %s not available after %d minute(s) and %d attempt(s)",
+                        policyNumber, timeoutMinutes, attempts)));
+                return;
+            }
+            double spread = 1 + jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+            long delayMillis = Math.min((long) (intervalMillis * spread), remainingMillis);
+            intervalMillis = Math.min((long) (intervalMillis * backoffMultiplier),
+                    TimeUnit.SECONDS.toMillis(intervalSeconds));
+            log.debug("PDF for policy {} not available yet, polling again in {} ms", policyNumber, delayMillis);
+            schedule(delayMillis);
+        }
     }
-}
\ No newline at end of file
+}
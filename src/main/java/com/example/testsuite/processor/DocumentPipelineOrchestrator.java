@@ -0,0 +1,267 @@
+package com.example.testsuite.processor;
+
+import com.example.testsuite.processor.SoapEnvelopProcessor.SoapEnvelope;
+import com.example.testsuite.utils.PDFComparator;
+import com.example.testsuite.utils.PDFComparator.ComparisonResult;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the end-to-end flow for many policies at once as a pipeline: every policy is submitted up front,
+ * each PDF is retrieved as soon as it is ready, and ready PDFs are compared while others are still being
+ * generated. The total time is therefore close to that of the slowest document rather than the sum.
+ * <p>
+ * The stages run on separate executors: submissions on a bounded I/O pool, which also limits the load
+ * put on the document service, retrievals on DocumentMessageProcessor's shared poll scheduler, which holds
+ * no thread while waiting, and comparisons on a CPU-bound pool. A failure only ends the pipeline of its
+ * own policy and is reported with the stage it happened in.
+ * <p>
+ * Inputs come from XmlCorpusIndex: the configured input folder is loaded through its persisted index, and
+ * each payload is read from its file when the policy is submitted and streamed into the request body, so
+ * no input is decoded into a String.
+ */
+@Slf4j
+@Component
+public class DocumentPipelineOrchestrator {
+
+    private final XmlCorpusIndex corpusIndex;
+    private final SoapEnvelopProcessor soapEnvelopProcessor;
+    private final DocumentMessageProcessor messageProcessor;
+    private final PDFComparator pdfComparator;
+
+    @Value("${document.input.gold-copies-folder}")
+    private String goldCopiesFolderPath;
+
+    @Value("${document.pipeline.submit-concurrency:16}")
+    private int submitConcurrency;
+
+    @Value("${document.pipeline.compare-parallelism:0}")
+    private int compareParallelism;
+
+    @Value("${document.pipeline.lob:PK0001}")
+    private String lob;
+
+    @Value("${document.pipeline.target-environment:ETE}")
+    private String targetEnvironment;
+
+    @Value("${document.pipeline.email-address:fake@email.com}")
+    private String emailAddress;
+
+    private ExecutorService submitPool;
+    private ExecutorService comparePool;
+
+    @Autowired
+    public DocumentPipelineOrchestrator(XmlCorpusIndex corpusIndex, SoapEnvelopProcessor soapEnvelopProcessor,
+            DocumentMessageProcessor messageProcessor, PDFComparator pdfComparator) {
+        this.corpusIndex = corpusIndex;
+        this.soapEnvelopProcessor = soapEnvelopProcessor;
+        this.messageProcessor = messageProcessor;
+        this.pdfComparator = pdfComparator;
+    }
+
+    @PostConstruct
+    void init() {
+        if (compareParallelism <= 0) {
+            compareParallelism = Runtime.getRuntime().availableProcessors();
+        }
+        submitPool = Executors.newFixedThreadPool(Math.max(1, submitConcurrency), threadFactory("pipeline-submit-"));
+        comparePool = Executors.newFixedThreadPool(compareParallelism, threadFactory("pipeline-compare-"));
+        log.debug("Pipeline configured with {} concurrent submissions and {} concurrent comparisons",
+                submitConcurrency, compareParallelism);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        submitPool.shutdownNow();
+        comparePool.shutdownNow();
+    }
+
+    /**
+     * Runs every XML file of the configured input folder through the pipeline
+     * @param outputDir directory to write the generated PDFs and comparison reports to
+     * @return the outcome of every policy, ordered by the relative path of its input file
+     * @throws IOException if the input folder cannot be read
+     */
+    public List<PolicyResult> run(File outputDir) throws IOException {
+        List<PolicyRun> runs = new ArrayList<>();
+        for (XmlCorpusIndex.Entry entry : corpusIndex.load()) {
+            runs.add(new PolicyRun(entry.getFile().toFile(), entry));
+        }
+        return runAll(runs, outputDir);
+    }
+
+    /**
+     * Submits all policies, then retrieves and compares each generated PDF as soon as it is ready. Each file
+     * is indexed when its policy is submitted, so a file without a policy number fails in the submit stage.
+     * @param xmlFiles the policy XML files
+     * @param outputDir directory to write the generated PDFs and comparison reports to
+     * @return the outcome of every policy, in the order of the input files
+     * @throws IOException if the output directory cannot be created
+     */
+    public List<PolicyResult> run(List<File> xmlFiles, File outputDir) throws IOException {
+        List<PolicyRun> runs = new ArrayList<>();
+        for (File xmlFile : xmlFiles) {
+            runs.add(new PolicyRun(xmlFile, null));
+        }
+        return runAll(runs, outputDir);
+    }
+
+    private List<PolicyResult> runAll(List<PolicyRun> runs, File outputDir) throws IOException {
+        if (!outputDir.exists() && !outputDir.mkdirs()) {
+            throw new IOException("Failed to create output directory: " + outputDir);
+        }
+        long start = System.nanoTime();
+
+        List<CompletableFuture<PolicyResult>> futures = new ArrayList<>();
+        for (PolicyRun run : runs) {
+            futures.add(process(run, outputDir, start));
+        }
+        List<PolicyResult> results = new ArrayList<>();
+        for (CompletableFuture<PolicyResult> future : futures) {
+            results.add(future.join());
+        }
+
+        log.info("Pipeline processed {} policies in {} ms, {} passed", results.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                results.stream().filter(PolicyResult::isPassed).count());
+        return results;
+    }
+
+    private CompletableFuture<PolicyResult> process(PolicyRun run, File outputDir, long start) {
+        return CompletableFuture.supplyAsync(() -> submit(run), submitPool)
+                .thenCompose(policyNumber -> {
+                    run.stage = Stage.RETRIEVE;
+                    return messageProcessor.retrievePDFAsync(policyNumber);
+                })
+                .thenApplyAsync(pdf -> {
+                    run.stage = Stage.COMPARE;
+                    return compare(run.policyNumber, pdf, outputDir);
+                }, comparePool)
+                .handle((comparison, error) -> {
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    if (cause != null) {
+                        log.error("Pipeline for {} failed in stage {}", run.name(), run.stage, cause);
+                    }
+                    return new PolicyResult(run.name(), run.xmlFile, cause == null ? null : run.stage, comparison,
+                            cause, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                });
+    }
+
+    private String submit(PolicyRun run) {
+        try {
+            XmlCorpusIndex.Entry entry = run.entry != null ? run.entry : corpusIndex.index(run.xmlFile);
+            run.policyNumber = entry.getPolicyNumber();
+            SoapEnvelope soapEnvelope = soapEnvelopProcessor.streamSoapEnvelope(lob, targetEnvironment, emailAddress,
+                    entry.payload());
+            String response = messageProcessor.sendToWebService(soapEnvelope);
+            if (response.contains("error")) {
+                throw new IllegalStateException(String.format("Error response received for policy %s: %s",
+                        run.policyNumber, response));
+            }
+            return run.policyNumber;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ComparisonResult compare(String policyNumber, byte[] pdf, File outputDir) {
+        try {
+            String fileName = policyNumber.replaceAll("[^a-zA-Z0-9.-]", "_");
+            File generatedPdfFile = new File(outputDir, "generated_" + fileName + ".pdf");
+            Files.write(generatedPdfFile.toPath(), pdf);
+            File goldCopyFile = Paths.get(goldCopiesFolderPath, "gold_" + policyNumber + ".pdf").toFile();
+            return pdfComparator.compare(generatedPdfFile, goldCopyFile, new File(outputDir, "comparison_" + fileName));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public enum Stage {
+        SUBMIT, RETRIEVE, COMPARE
+    }
+
+    /**
+     * Progress of one policy through the stages, handed from stage to stage by its CompletableFuture chain
+     */
+    private static class PolicyRun {
+        private final File xmlFile;
+        /** The indexed file, or null if it is indexed when the policy is submitted */
+        private final XmlCorpusIndex.Entry entry;
+        private volatile String policyNumber;
+        private volatile Stage stage = Stage.SUBMIT;
+
+        PolicyRun(File xmlFile, XmlCorpusIndex.Entry entry) {
+            this.xmlFile = xmlFile;
+            this.entry = entry;
+        }
+
+        String name() {
+            return policyNumber != null ? policyNumber : xmlFile.getName();
+        }
+    }
+
+    public static class PolicyResult {
+        private final String policyNumber;
+        private final File xmlFile;
+        private final Stage failedStage;
+        private final ComparisonResult comparison;
+        private final Throwable error;
+        private final long completedAfterMillis;
+
+        /**
+         * @param policyNumber the policy number, or the XML file name if it could not be read
+         * @param failedStage the stage that failed, or null if the policy went through every stage
+         * @param comparison the comparison result, or null if the pipeline failed
+         * @param completedAfterMillis time from the start of the run until this policy was done
+         */
+        public PolicyResult(String policyNumber, File xmlFile, Stage failedStage, ComparisonResult comparison,
+                Throwable error, long completedAfterMillis) {
+            this.policyNumber = policyNumber;
+            this.xmlFile = xmlFile;
+            this.failedStage = failedStage;
+            this.comparison = comparison;
+            this.error = error;
+            this.completedAfterMillis = completedAfterMillis;
+        }
+
+        public String getPolicyNumber() { return policyNumber; }
+        public File getXmlFile() { return xmlFile; }
+        public Stage getFailedStage() { return failedStage; }
+        public ComparisonResult getComparison() { return comparison; }
+        public Throwable getError() { return error; }
+        public long getCompletedAfterMillis() { return completedAfterMillis; }
+
+        /** @return whether the policy went through every stage and its PDF matches the gold copy */
+        public boolean isPassed() {
+            return failedStage == null && !comparison.hasDifferences();
+        }
+    }
+}
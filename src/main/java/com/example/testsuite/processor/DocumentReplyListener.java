@@ -0,0 +1,219 @@
+package com.example.testsuite.processor;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.jms.BytesMessage;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.TextMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+import org.springframework.jms.listener.SessionAwareMessageListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Event-driven alternative to polling the document API: listens on the reply queue for completion messages
+ * and completes the future of the pending policy whose number is the message's JMS correlation ID.
+ * A BytesMessage carries the generated PDF; a TextMessage reports that generation failed.
+ * <p>
+ * Replies that arrive before anyone waits for them are kept until they are claimed, so a reply racing
+ * ahead of the call to {@link #awaitPDF} is not lost. They are kept for
+ * {@code document.jms.reply.retention-seconds} at most, and no more than {@code max-unclaimed} of them at a time.
+ * Policies whose wait completed or timed out are remembered for as long, so that late and duplicate replies are
+ * dropped instead of being kept as unclaimed.
+ * The listener is only started when {@code document.jms.reply.enabled} is set.
+ */
+@Slf4j
+@Component
+public class DocumentReplyListener {
+
+    private final ConnectionFactory connectionFactory;
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger unclaimed = new AtomicInteger();
+
+    @Value("${document.jms.reply.enabled:false}")
+    private boolean enabled;
+
+    @Value("${document.jms.reply.queue:DOC.GEN.REPLY.QUEUE}")
+    private String replyQueueName;
+
+    @Value("${document.jms.reply.concurrency:1-4}")
+    private String concurrency;
+
+    @Value("${document.jms.reply.retention-seconds:300}")
+    private long retentionSeconds;
+
+    @Value("${document.jms.reply.max-unclaimed:1000}")
+    private int maxUnclaimed;
+
+    private DefaultMessageListenerContainer container;
+
+    @Autowired
+    public DocumentReplyListener(ConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+    }
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        container = new DefaultMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.setDestinationName(replyQueueName);
+        container.setConcurrency(concurrency);
+        container.setMessageListener((SessionAwareMessageListener<Message>) (message, session) -> onReply(message));
+        container.afterPropertiesSet();
+        container.start();
+        log.info("Listening for document replies on {} with concurrency {}", replyQueueName, concurrency);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (container != null) {
+            container.shutdown();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Waits for the reply of a policy without holding a thread
+     * @param policyNumber the policy number the reply is correlated by
+     * @param timeout how long to wait for the reply
+     * @return a future completed with the generated PDF, exceptionally if generation failed, or with a
+     * TimeoutException if no reply arrived in time
+     */
+    public CompletableFuture<byte[]> awaitPDF(String policyNumber, Duration timeout) {
+        if (!enabled) {
+            throw new IllegalStateException("Reply listener is not enabled, set document.jms.reply.enabled");
+        }
+        Pending entry = pending.compute(policyNumber, (key, existing) -> {
+            if (existing == null || existing.finished) {
+                return new Pending(true, false);
+            }
+            if (!existing.awaited) {
+                existing.awaited = true;
+                unclaimed.decrementAndGet();
+            }
+            return existing;
+        });
+        // orTimeout completes the reply itself, so a timed out wait finishes the entry too
+        entry.reply.whenComplete((pdf, error) -> finish(policyNumber, entry));
+        return entry.reply.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return number of policies waiting for a reply plus replies not claimed yet
+     */
+    public int getPendingCount() {
+        return (int) pending.values().stream().filter(entry -> !entry.finished).count();
+    }
+
+    /**
+     * Returns the future a reply completes, or null if the reply is to be dropped
+     */
+    private CompletableFuture<byte[]> replyFor(String policyNumber) {
+        boolean[] created = new boolean[1];
+        Pending entry = pending.compute(policyNumber, (key, existing) -> {
+            if (existing != null || unclaimed.get() >= maxUnclaimed) {
+                return existing;
+            }
+            unclaimed.incrementAndGet();
+            created[0] = true;
+            return new Pending(false, false);
+        });
+        if (entry == null) {
+            log.warn("Dropping reply for policy {}: {} replies are not claimed yet", policyNumber, maxUnclaimed);
+            return null;
+        }
+        if (entry.finished || entry.reply.isDone()) {
+            log.warn("Dropping late or duplicate reply for policy {}", policyNumber);
+            return null;
+        }
+        if (created[0]) {
+            expireLater(policyNumber, entry);
+        }
+        return entry.reply;
+    }
+
+    /**
+     * Replaces the entry of a completed wait by one that only remembers the policy, to drop later replies
+     */
+    private void finish(String policyNumber, Pending entry) {
+        Pending finished = new Pending(false, true);
+        if (pending.replace(policyNumber, entry, finished)) {
+            expireLater(policyNumber, finished);
+        }
+    }
+
+    private void expireLater(String policyNumber, Pending entry) {
+        CompletableFuture.delayedExecutor(retentionSeconds, TimeUnit.SECONDS).execute(() ->
+                pending.computeIfPresent(policyNumber, (key, existing) -> {
+                    if (existing != entry || existing.awaited) {
+                        return existing;
+                    }
+                    if (!existing.finished) {
+                        unclaimed.decrementAndGet();
+                        log.warn("Discarding reply for policy {} not claimed within {} s", policyNumber,
+                                retentionSeconds);
+                    }
+                    return null;
+                }));
+    }
+
+    private void onReply(Message message) throws JMSException {
+        String policyNumber = message.getJMSCorrelationID();
+        if (policyNumber == null) {
+            log.warn("Ignoring reply {} without correlation ID", message.getJMSMessageID());
+            return;
+        }
+        if (message instanceof BytesMessage) {
+            BytesMessage bytesMessage = (BytesMessage) message;
+            byte[] pdf = new byte[(int) bytesMessage.getBodyLength()];
+            bytesMessage.readBytes(pdf);
+            log.info("Received PDF for policy: {} on reply queue", policyNumber);
+            CompletableFuture<byte[]> reply = replyFor(policyNumber);
+            if (reply != null) {
+                reply.complete(pdf);
+            }
+        } else if (message instanceof TextMessage) {
+            String error = ((TextMessage) message).getText();
+            log.error("Document generation failed for policy {}: {}", policyNumber, error);
+            CompletableFuture<byte[]> reply = replyFor(policyNumber);
+            if (reply != null) {
+                reply.completeExceptionally(new IllegalStateException(
+                        String.format("Document generation failed for policy %s: %s", policyNumber, error)));
+            }
+        } else {
+            log.warn("Ignoring reply of unexpected type {} for policy {}", message.getClass().getSimpleName(), policyNumber);
+        }
+    }
+
+    /**
+     * A policy that is waited for, a reply that is not claimed yet, or, once finished, a policy whose wait
+     * is over. The flags are only changed inside the map's compute functions for the policy.
+     */
+    private static final class Pending {
+        private final CompletableFuture<byte[]> reply = new CompletableFuture<>();
+        private boolean awaited;
+        private final boolean finished;
+
+        Pending(boolean awaited, boolean finished) {
+            this.awaited = awaited;
+            this.finished = finished;
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package com.example.testsuite.processor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays the XML corpus against the document generator at a target request rate and measures
+ * end-to-end generation latency, from the submission of a policy until its PDF has been retrieved.
+ * <p>
+ * Arrivals follow an open model: requests are started on schedule, at fixed intervals or as a Poisson
+ * process, however long earlier ones take, and latency is measured from the time a request was scheduled
+ * to start rather than from when it actually could. A slow generator therefore shows up as growing
+ * latency instead of a silently reduced rate. The corpus is cycled until the duration has passed; once
+ * {@code document.load.max-outstanding} requests are unfinished, further arrivals are dropped and counted.
+ * <p>
+ * The corpus comes from XmlCorpusIndex; only its metadata is kept, and each payload is read from its file
+ * when the request is sent, so the corpus is never held on the heap. Policies are submitted through
+ * AsyncSoapSubmitter or, with the QUEUE transport, to the request queue, which takes the payload decoded;
+ * PDFs are retrieved with DocumentMessageProcessor.retrievePDFAsync.
+ * <p>
+ * Every arrival has a policy number of its own: from the second pass over the corpus on, the pass number is
+ * appended to the policy number in the payload ({@code POL-1-2} for the third pass). Otherwise a repeated
+ * policy would be answered with the PDF generated for its first submission, and latency would leave out
+ * the generation time.
+ */
+@Slf4j
+@Component
+public class LoadGenerationRunner {
+
+    /** Latencies are recorded in microseconds with three significant digits */
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final XmlCorpusIndex corpusIndex;
+    private final SoapEnvelopProcessor soapEnvelopProcessor;
+    private final AsyncSoapSubmitter soapSubmitter;
+    private final DocumentMessageProcessor messageProcessor;
+    private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    @Value("${document.load.rate-per-second:10}")
+    private double ratePerSecond;
+
+    @Value("${document.load.duration-seconds:60}")
+    private long durationSeconds;
+
+    @Value("${document.load.poisson:false}")
+    private boolean poisson;
+
+    @Value("${document.load.transport:SOAP}")
+    private Transport transport;
+
+    @Value("${document.load.max-outstanding:10000}")
+    private int maxOutstanding;
+
+    @Value("${document.pipeline.lob:PK0001}")
+    private String lob;
+
+    @Value("${document.pipeline.target-environment:ETE}")
+    private String targetEnvironment;
+
+    @Value("${document.pipeline.email-address:fake@email.com}")
+    private String emailAddress;
+
+    @Autowired
+    public LoadGenerationRunner(XmlCorpusIndex corpusIndex, SoapEnvelopProcessor soapEnvelopProcessor,
+            AsyncSoapSubmitter soapSubmitter, DocumentMessageProcessor messageProcessor) {
+        this.corpusIndex = corpusIndex;
+        this.soapEnvelopProcessor = soapEnvelopProcessor;
+        this.soapSubmitter = soapSubmitter;
+        this.messageProcessor = messageProcessor;
+    }
+
+    /**
+     * Replays the configured input folder at the configured rate and duration
+     * @param outputDir directory to write load-report.json and the latency distributions to
+     * @return throughput and latency percentiles of the run
+     * @throws IOException if the corpus cannot be read or the report cannot be written
+     */
+    public LoadReport run(File outputDir) throws IOException {
+        return replay(corpusIndex.load(), ratePerSecond, Duration.ofSeconds(durationSeconds), outputDir);
+    }
+
+    /**
+     * Replays a corpus at a given rate until the duration has passed, then waits for outstanding requests
+     * @param xmlFiles the policy XML files to cycle through
+     * @param ratePerSecond requests started per second
+     * @param duration how long to keep starting requests
+     * @param outputDir directory to write load-report.json and the latency distributions to
+     * @return throughput and latency percentiles of the run
+     * @throws IOException if the corpus cannot be read or the report cannot be written
+     */
+    public LoadReport run(List<File> xmlFiles, double ratePerSecond, Duration duration, File outputDir)
+            throws IOException {
+        return replay(corpusIndex.index(xmlFiles), ratePerSecond, duration, outputDir);
+    }
+
+    private LoadReport replay(List<XmlCorpusIndex.Entry> entries, double ratePerSecond, Duration duration,
+            File outputDir) throws IOException {
+        if (entries.isEmpty()) {
+            throw new IllegalArgumentException("No XML files to replay");
+        }
+        if (ratePerSecond <= 0) {
+            throw new IllegalArgumentException("Rate must be positive: " + ratePerSecond);
+        }
+        if (!outputDir.exists() && !outputDir.mkdirs()) {
+            throw new IOException("Failed to create output directory: " + outputDir);
+        }
+
+        Histogram submitLatency = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+        Histogram endToEndLatency = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+        AtomicInteger outstanding = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        List<CompletableFuture<Void>> requests = new ArrayList<>();
+        int arrivals = 0;
+        int dropped = 0;
+
+        log.info("Replaying {} policies at {} requests per second for {} over {}", entries.size(), ratePerSecond,
+                duration, transport);
+        String startedAt = Instant.now().toString();
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        double meanIntervalNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long scheduled = start;
+        while (scheduled < end) {
+            waitUntil(scheduled);
+            XmlCorpusIndex.Entry entry = entries.get(arrivals % entries.size());
+            int pass = arrivals++ / entries.size();
+            if (outstanding.get() >= maxOutstanding) {
+                dropped++;
+            } else {
+                outstanding.incrementAndGet();
+                String policyNumber = pass == 0 ? entry.getPolicyNumber() : entry.getPolicyNumber() + "-" + pass;
+                requests.add(send(entry, policyNumber, scheduled, submitLatency, endToEndLatency)
+                        .whenComplete((result, error) -> {
+                            outstanding.decrementAndGet();
+                            if (error != null) {
+                                failed.incrementAndGet();
+                                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                                log.warn("Request for policy {} failed: {}", policyNumber, cause.toString());
+                            }
+                        }));
+            }
+            scheduled += (long) (poisson
+                    ? -Math.log(1 - ThreadLocalRandom.current().nextDouble()) * meanIntervalNanos
+                    : meanIntervalNanos);
+        }
+        long arrivalsEnd = System.nanoTime();
+
+        CompletableFuture.allOf(requests.toArray(new CompletableFuture[0])).exceptionally(error -> null).join();
+        long elapsedNanos = System.nanoTime() - start;
+
+        LoadReport report = new LoadReport(startedAt, transport, ratePerSecond,
+                arrivals / Math.max(1e-9, (arrivalsEnd - start) / 1e9), arrivals, requests.size() - failed.get(),
+                failed.get(), dropped, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                new LatencySummary(submitLatency), new LatencySummary(endToEndLatency));
+        objectMapper.writeValue(new File(outputDir, "load-report.json"), report);
+        writeDistribution(submitLatency, new File(outputDir, "submit-latency.hgrm"));
+        writeDistribution(endToEndLatency, new File(outputDir, "end-to-end-latency.hgrm"));
+        log.info("Load run finished: {} requests, {} completed, {} failed, {} dropped, {} per second; "
+                        + "end-to-end latency p50 {} ms, p99 {} ms, max {} ms", arrivals, report.getCompleted(),
+                report.getFailed(), dropped, String.format("%.1f", report.getThroughputPerSecond()),
+                report.getEndToEndLatency().getP50Millis(), report.getEndToEndLatency().getP99Millis(),
+                report.getEndToEndLatency().getMaxMillis());
+        return report;
+    }
+
+    private CompletableFuture<Void> send(XmlCorpusIndex.Entry entry, String policyNumber, long scheduled,
+            Histogram submitLatency, Histogram endToEndLatency) {
+        CompletableFuture<?> submitted;
+        try {
+            // Read per request, so that no buffer per file stays live for the whole run
+            ByteBuffer[] payload = withPolicyNumber(entry, entry.payload(), policyNumber);
+            if (transport == Transport.QUEUE) {
+                StringBuilder xmlContent = new StringBuilder();
+                for (ByteBuffer part : payload) {
+                    xmlContent.append(StandardCharsets.UTF_8.decode(part));
+                }
+                submitted = messageProcessor.sendToQueueAsync(xmlContent.toString());
+            } else {
+                submitted = soapSubmitter.submitAsync(soapEnvelopProcessor.streamSoapEnvelope(lob,
+                        targetEnvironment, emailAddress, payload)).thenAccept(response -> {
+                            if (response.contains("error")) {
+                                throw new IllegalStateException(String.format(
+                                        "Error response received for policy %s: %s", policyNumber, response));
+                            }
+                        });
+            }
+        } catch (IOException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return submitted
+                .thenCompose(ignored -> {
+                    record(submitLatency, scheduled);
+                    return messageProcessor.retrievePDFAsync(policyNumber);
+                })
+                .thenAccept(pdf -> record(endToEndLatency, scheduled));
+    }
+
+    /**
+     * Splits a payload around the end of its policy number and inserts the suffix that makes it unique,
+     * without copying the payload itself
+     */
+    private static ByteBuffer[] withPolicyNumber(XmlCorpusIndex.Entry entry, ByteBuffer payload,
+            String policyNumber) {
+        if (policyNumber.equals(entry.getPolicyNumber())) {
+            return new ByteBuffer[] {payload};
+        }
+        int split = payload.position() + entry.getPolicyNumberEnd() - entry.getPayloadStart();
+        String suffix = policyNumber.substring(entry.getPolicyNumber().length());
+        return new ByteBuffer[] {
+                payload.duplicate().limit(split),
+                ByteBuffer.wrap(suffix.getBytes(StandardCharsets.UTF_8)),
+                payload.duplicate().position(split)
+        };
+    }
+
+    private static void record(Histogram histogram, long scheduled) {
+        histogram.recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scheduled)));
+    }
+
+    private static void waitUntil(long nanoTime) {
+        long remaining;
+        while ((remaining = nanoTime - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private static void writeDistribution(Histogram histogram, File file) throws IOException {
+        try (PrintStream out = new PrintStream(file, "UTF-8")) {
+            // Values are recorded in microseconds and written in milliseconds
+            histogram.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+
+    public enum Transport {
+        SOAP, QUEUE
+    }
+
+    /**
+     * Percentiles of one latency histogram, in milliseconds
+     */
+    public static class LatencySummary {
+        private final long count;
+        private final double meanMillis;
+        private final double p50Millis;
+        private final double p90Millis;
+        private final double p99Millis;
+        private final double p999Millis;
+        private final double maxMillis;
+
+        public LatencySummary(Histogram histogram) {
+            this.count = histogram.getTotalCount();
+            this.meanMillis = histogram.getMean() / 1000.0;
+            this.p50Millis = histogram.getValueAtPercentile(50) / 1000.0;
+            this.p90Millis = histogram.getValueAtPercentile(90) / 1000.0;
+            this.p99Millis = histogram.getValueAtPercentile(99) / 1000.0;
+            this.p999Millis = histogram.getValueAtPercentile(99.9) / 1000.0;
+            this.maxMillis = histogram.getMaxValue() / 1000.0;
+        }
+
+        public long getCount() { return count; }
+        public double getMeanMillis() { return meanMillis; }
+        public double getP50Millis() { return p50Millis; }
+        public double getP90Millis() { return p90Millis; }
+        public double getP99Millis() { return p99Millis; }
+        public double getP999Millis() { return p999Millis; }
+        public double getMaxMillis() { return maxMillis; }
+    }
+
+    public static class LoadReport {
+        private final String startedAt;
+        private final Transport transport;
+        private final double targetRatePerSecond;
+        private final double achievedRatePerSecond;
+        private final int requests;
+        private final int completed;
+        private final int failed;
+        private final int dropped;
+        private final long elapsedMillis;
+        private final LatencySummary submitLatency;
+        private final LatencySummary endToEndLatency;
+
+        public LoadReport(String startedAt, Transport transport, double targetRatePerSecond,
+                double achievedRatePerSecond, int requests, int completed, int failed, int dropped,
+                long elapsedMillis, LatencySummary submitLatency, LatencySummary endToEndLatency) {
+            this.startedAt = startedAt;
+            this.transport = transport;
+            this.targetRatePerSecond = targetRatePerSecond;
+            this.achievedRatePerSecond = achievedRatePerSecond;
+            this.requests = requests;
+            this.completed = completed;
+            this.failed = failed;
+            this.dropped = dropped;
+            this.elapsedMillis = elapsedMillis;
+            this.submitLatency = submitLatency;
+            this.endToEndLatency = endToEndLatency;
+        }
+
+        public String getStartedAt() { return startedAt; }
+        public Transport getTransport() { return transport; }
+        public double getTargetRatePerSecond() { return targetRatePerSecond; }
+        /** Rate at which requests were actually started */
+        public double getAchievedRatePerSecond() { return achievedRatePerSecond; }
+        public int getRequests() { return requests; }
+        public int getCompleted() { return completed; }
+        public int getFailed() { return failed; }
+        public int getDropped() { return dropped; }
+        public long getElapsedMillis() { return elapsedMillis; }
+        public LatencySummary getSubmitLatency() { return submitLatency; }
+        public LatencySummary getEndToEndLatency() { return endToEndLatency; }
+
+        /** Completed requests per second over the whole run, including waiting for the last PDFs */
+        public double getThroughputPerSecond() {
+            return elapsedMillis == 0 ? 0 : completed * 1000.0 / elapsedMillis;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.testsuite.processor;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.jms.CompletionListener;
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.Destination;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Session;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jms.connection.ConnectionFactoryUtils;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.support.JmsUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Publishes request messages to the request queue through the JMS templates of MQConfig, whose connection
+ * factory caches connections, sessions and producers. Besides single sends it offers transacted batches,
+ * committed every {@code document.jms.batch-size} messages, and asynchronous sends that complete a future
+ * when the broker acknowledges the message.
+ */
+@Slf4j
+@Component
+public class QueuePublisher {
+
+    private final JmsTemplate jmsTemplate;
+    private final JmsTemplate transactedJmsTemplate;
+
+    @Value("${ibm.mq.queue}")
+    private String queueName;
+
+    @Value("${document.jms.batch-size:100}")
+    private int batchSize;
+
+    /** Closes the session of an asynchronous send once it completed, which its CompletionListener must not do */
+    private ExecutorService releaseExecutor;
+
+    @Autowired
+    public QueuePublisher(JmsTemplate jmsTemplate,
+            @Qualifier("transactedJmsTemplate") JmsTemplate transactedJmsTemplate) {
+        this.jmsTemplate = jmsTemplate;
+        this.transactedJmsTemplate = transactedJmsTemplate;
+    }
+
+    @PostConstruct
+    void init() {
+        releaseExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "jms-release-1");
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.debug("Publishing to {} in batches of {}", queueName, batchSize);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        releaseExecutor.shutdown();
+    }
+
+    /**
+     * Sends a text message to the request queue
+     * @param text the message text
+     */
+    public void send(String text) {
+        jmsTemplate.convertAndSend(text);
+    }
+
+    /**
+     * Sends text messages to the request queue in transactions of {@code document.jms.batch-size} messages.
+     * If a send fails, the uncommitted part of the current batch is rolled back; batches committed
+     * before it stay on the queue.
+     * @param texts the message texts, in sending order
+     * @return the number of messages sent
+     */
+    public int sendBatch(List<String> texts) {
+        return transactedJmsTemplate.execute(session -> {
+            MessageProducer producer = session.createProducer(resolveQueue(transactedJmsTemplate, session));
+            try {
+                int uncommitted = 0;
+                for (String text : texts) {
+                    producer.send(session.createTextMessage(text));
+                    if (++uncommitted == batchSize) {
+                        session.commit();
+                        uncommitted = 0;
+                    }
+                }
+                if (uncommitted > 0) {
+                    session.commit();
+                }
+                return texts.size();
+            } catch (JMSException | RuntimeException e) {
+                session.rollback();
+                throw e;
+            } finally {
+                producer.close();
+            }
+        }, true);
+    }
+
+    /**
+     * Sends a text message to the request queue without waiting for the broker's acknowledgement. The session
+     * is held until the broker answers, so that no other send uses it meanwhile, and released afterwards.
+     * @param text the message text
+     * @return a future completed once the broker has accepted the message, or exceptionally if it did not
+     */
+    public CompletableFuture<Void> sendAsync(String text) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        ConnectionFactory connectionFactory = jmsTemplate.getConnectionFactory();
+        Connection connection = null;
+        Session session = null;
+        MessageProducer producer = null;
+        try {
+            connection = connectionFactory.createConnection();
+            session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            producer = session.createProducer(resolveQueue(jmsTemplate, session));
+            Connection sendConnection = connection;
+            Session sendSession = session;
+            MessageProducer sendProducer = producer;
+            producer.send(session.createTextMessage(text), new CompletionListener() {
+                @Override
+                public void onCompletion(Message message) {
+                    release(connectionFactory, sendConnection, sendSession, sendProducer);
+                    future.complete(null);
+                }
+
+                @Override
+                public void onException(Message message, Exception exception) {
+                    release(connectionFactory, sendConnection, sendSession, sendProducer);
+                    future.completeExceptionally(exception);
+                }
+            });
+        } catch (JMSException | RuntimeException e) {
+            close(connectionFactory, connection, session, producer);
+            future.completeExceptionally(e instanceof JMSException
+                    ? JmsUtils.convertJmsAccessException((JMSException) e) : e);
+        }
+        return future;
+    }
+
+    private void release(ConnectionFactory connectionFactory, Connection connection, Session session,
+            MessageProducer producer) {
+        try {
+            releaseExecutor.execute(() -> close(connectionFactory, connection, session, producer));
+        } catch (RejectedExecutionException e) {
+            log.warn("Publisher shut down, leaving session of an asynchronous send open");
+        }
+    }
+
+    /**
+     * Closes what was opened for a send; with a caching connection factory this returns the producer and
+     * session to the cache
+     */
+    private static void close(ConnectionFactory connectionFactory, Connection connection, Session session,
+            MessageProducer producer) {
+        JmsUtils.closeMessageProducer(producer);
+        JmsUtils.closeSession(session);
+        ConnectionFactoryUtils.releaseConnection(connection, connectionFactory, true);
+    }
+
+    private Destination resolveQueue(JmsTemplate template, Session session) throws JMSException {
+        return template.getDestinationResolver().resolveDestinationName(session, queueName, false);
+    }
+}
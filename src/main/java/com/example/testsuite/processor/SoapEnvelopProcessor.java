@@ -2,12 +2,31 @@ package com.example.testsuite.processor;
 
 import org.springframework.stereotype.Component;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Wraps policy XML in the SOAP envelope of the forms service. The envelope is either built as a String or
+ * written straight to an output stream, such as the body of the outgoing request, in which case the policy
+ * XML is copied through a fixed-size buffer so that memory use does not grow with the size of the payload.
+ */
 @Component
 public class SoapEnvelopProcessor {
 
-    private static final String SOAP_ENVELOPE_TEMPLATE = """
+    private static final String ENVELOPE_START = """
             <?xml version="1.0" encoding="UTF-8"?>
-            <soapenv:Envelope 
+            <soapenv:Envelope
                 xmlns:soapenv="http://schemas.xmlsoap.org/soap/envelope/"
                 xmlns:xsi="http://www.w3.org/2001/XMLSchema-instance"
                 xmlns:for="http://www.example.com/FormsService">
@@ -15,12 +34,16 @@ public class SoapEnvelopProcessor {
                 <soapenv:Body>
                     <for:submitRequest>
                         <formsRequest>
-                            <LOB>%s</LOB>
-                            <TargetEnvironment>%s</TargetEnvironment>
-                            <EmailAddress>%s</EmailAddress>
+                            <LOB>""";
+    private static final String TARGET_ENVIRONMENT_START = "</LOB>\n                <TargetEnvironment>";
+    private static final String EMAIL_ADDRESS_START = "</TargetEnvironment>\n                <EmailAddress>";
+    private static final String REQUEST_START = """
+            </EmailAddress>
                             <GetAFPPDF>false</GetAFPPDF>
                             <Request>
-                                %s
+                                """;
+    private static final String ENVELOPE_END = """
+
                             </Request>
                         </formsRequest>
                     </for:submitRequest>
@@ -28,26 +51,221 @@ public class SoapEnvelopProcessor {
             </soapenv:Envelope>
             """;
 
+    /** Size of the head of the payload scanned for the XML declaration, and of the copy buffers */
+    private static final int BUFFER_SIZE = 8192;
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    /**
+     * SOAP envelope that writes itself to a stream, as many times as needed
+     */
+    @FunctionalInterface
+    public interface SoapEnvelope {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
     /**
      * Creates a SOAP envelope with the provided parameters and XML content
      * @param lob Line of Business value
      * @param targetEnvironment Target environment value
      * @param emailAddress Email address
-     * @param getAFPPDF Whether to get AFP PDF
      * @param xmlContent The XML content to be wrapped in the Request tag
      * @return Complete SOAP message
      */
-    public String createSoapEnvelope(String lob, String targetEnvironment, 
+    public String createSoapEnvelope(String lob, String targetEnvironment,
             String emailAddress, String xmlContent) {
-        
-        if (xmlContent == null || xmlContent.trim().isEmpty()) {
+        int[] range = payloadRange(xmlContent);
+        StringBuilder envelope = new StringBuilder(range[1] - range[0] + 1024);
+        appendHead(envelope, lob, targetEnvironment, emailAddress);
+        envelope.append(xmlContent, range[0], range[1]);
+        return envelope.append(ENVELOPE_END).toString();
+    }
+
+    /**
+     * Creates a SOAP envelope around XML content that is written out in chunks instead of being copied
+     * into a new String
+     * @param lob Line of Business value
+     * @param targetEnvironment Target environment value
+     * @param emailAddress Email address
+     * @param xmlContent The XML content to be wrapped in the Request tag
+     * @return the envelope, to be written to the request body
+     */
+    public SoapEnvelope streamSoapEnvelope(String lob, String targetEnvironment,
+            String emailAddress, String xmlContent) {
+        int[] range = payloadRange(xmlContent);
+        return out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+            writer.write(head(lob, targetEnvironment, emailAddress));
+            // Writer.write(String, int, int) would copy the whole range into a single char array
+            char[] buffer = new char[BUFFER_SIZE];
+            for (int position = range[0]; position < range[1]; position += buffer.length) {
+                int length = Math.min(buffer.length, range[1] - position);
+                xmlContent.getChars(position, position + length, buffer, 0);
+                writer.write(buffer, 0, length);
+            }
+            writer.write(ENVELOPE_END);
+            writer.flush();
+        };
+    }
+
+    /**
+     * Creates a SOAP envelope around a UTF-8 XML file, which is only read while the envelope is written.
+     * Only the head of the file is scanned for the XML declaration; the rest is copied as is.
+     * @param lob Line of Business value
+     * @param targetEnvironment Target environment value
+     * @param emailAddress Email address
+     * @param xmlFile The XML file to be wrapped in the Request tag
+     * @return the envelope, to be written to the request body
+     * @throws IOException if the file cannot be read
+     */
+    public SoapEnvelope streamSoapEnvelope(String lob, String targetEnvironment,
+            String emailAddress, Path xmlFile) throws IOException {
+        if (Files.size(xmlFile) == 0) {
+            throw new IllegalArgumentException("XML content cannot be null or empty");
+        }
+        byte[] head = head(lob, targetEnvironment, emailAddress).getBytes(StandardCharsets.UTF_8);
+        byte[] end = ENVELOPE_END.getBytes(StandardCharsets.UTF_8);
+        return out -> {
+            try (InputStream in = Files.newInputStream(xmlFile)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int length = in.readNBytes(buffer, 0, buffer.length);
+                int start = skipDeclaration(buffer, length);
+                out.write(head);
+                out.write(buffer, start, length - start);
+                in.transferTo(out);
+                out.write(end);
+                out.flush();
+            }
+        };
+    }
+
+    /**
+     * Creates a SOAP envelope around UTF-8 XML bytes, such as a payload read by XmlCorpusIndex,
+     * which are written to the stream straight from the buffer without being decoded
+     * @param lob Line of Business value
+     * @param targetEnvironment Target environment value
+     * @param emailAddress Email address
+     * @param payload The XML content to be wrapped in the Request tag, without an XML declaration, in one
+     * or more consecutive parts; each is only read between its position and limit, which are left unchanged
+     * @return the envelope, to be written to the request body
+     */
+    public SoapEnvelope streamSoapEnvelope(String lob, String targetEnvironment,
+            String emailAddress, ByteBuffer... payload) {
+        if (payload == null || Arrays.stream(payload).noneMatch(ByteBuffer::hasRemaining)) {
             throw new IllegalArgumentException("XML content cannot be null or empty");
         }
+        byte[] head = head(lob, targetEnvironment, emailAddress).getBytes(StandardCharsets.UTF_8);
+        byte[] end = ENVELOPE_END.getBytes(StandardCharsets.UTF_8);
+        return out -> {
+            out.write(head);
+            // Not closed, as that would close the request body
+            WritableByteChannel channel = Channels.newChannel(out);
+            for (ByteBuffer part : payload) {
+                ByteBuffer remaining = part.duplicate();
+                while (remaining.hasRemaining()) {
+                    channel.write(remaining);
+                }
+            }
+            out.write(end);
+            out.flush();
+        };
+    }
 
-        // Remove XML declaration if present to avoid multiple declarations
-        String cleanedXml = xmlContent.replaceFirst("<\\?xml.*\\?>", "").trim();
-        
-        return String.format(SOAP_ENVELOPE_TEMPLATE, 
-                lob, targetEnvironment, emailAddress, cleanedXml);
+    private static String head(String lob, String targetEnvironment, String emailAddress) {
+        return appendHead(new StringBuilder(1024), lob, targetEnvironment, emailAddress).toString();
+    }
+
+    private static StringBuilder appendHead(StringBuilder builder, String lob, String targetEnvironment,
+            String emailAddress) {
+        builder.append(ENVELOPE_START);
+        appendEscaped(builder, lob).append(TARGET_ENVIRONMENT_START);
+        appendEscaped(builder, targetEnvironment).append(EMAIL_ADDRESS_START);
+        return appendEscaped(builder, emailAddress).append(REQUEST_START);
+    }
+
+    private static StringBuilder appendEscaped(StringBuilder builder, String value) {
+        if (value == null) {
+            return builder.append("null");
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '<' -> builder.append("&lt;");
+                case '>' -> builder.append("&gt;");
+                case '&' -> builder.append("&amp;");
+                default -> builder.append(c);
+            }
+        }
+        return builder;
+    }
+
+    /**
+     * Finds the XML content without its declaration, to avoid multiple declarations, and without
+     * surrounding whitespace
+     * @return start and end index of the content to wrap
+     */
+    private static int[] payloadRange(String xmlContent) {
+        if (xmlContent == null) {
+            throw new IllegalArgumentException("XML content cannot be null or empty");
+        }
+        int start = skipWhitespace(xmlContent, xmlContent.startsWith("\uFEFF") ? 1 : 0);
+        if (xmlContent.startsWith("<?xml", start)) {
+            int declarationEnd = xmlContent.indexOf("?>", start);
+            if (declarationEnd == -1) {
+                throw new IllegalArgumentException("Unterminated XML declaration");
+            }
+            start = skipWhitespace(xmlContent, declarationEnd + 2);
+        }
+        int end = xmlContent.length();
+        while (end > start && Character.isWhitespace(xmlContent.charAt(end - 1))) {
+            end--;
+        }
+        if (start == end) {
+            throw new IllegalArgumentException("XML content cannot be null or empty");
+        }
+        return new int[] {start, end};
+    }
+
+    private static int skipWhitespace(String text, int index) {
+        while (index < text.length() && Character.isWhitespace(text.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * @return index of the first byte after the byte order mark and XML declaration in the head of a file
+     */
+    private static int skipDeclaration(byte[] head, int length) {
+        int start = length >= UTF8_BOM.length && head[0] == UTF8_BOM[0] && head[1] == UTF8_BOM[1]
+                && head[2] == UTF8_BOM[2] ? UTF8_BOM.length : 0;
+        start = skipWhitespace(head, start, length);
+        if (!startsWith(head, start, length, "<?xml")) {
+            return start;
+        }
+        for (int i = start; i < length - 1; i++) {
+            if (head[i] == '?' && head[i + 1] == '>') {
+                return skipWhitespace(head, i + 2, length);
+            }
+        }
+        throw new IllegalArgumentException("XML declaration not terminated in the first " + length + " bytes");
+    }
+
+    private static int skipWhitespace(byte[] bytes, int index, int length) {
+        while (index < length && Character.isWhitespace(bytes[index])) {
+            index++;
+        }
+        return index;
+    }
+
+    private static boolean startsWith(byte[] bytes, int index, int length, String prefix) {
+        if (length - index < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (bytes[index + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
     }
 }
@@ -17,6 +17,8 @@ import java.util.stream.Stream;
 @Component
 public class XMLFileProcessor {
 
+    private static final String POLICY_NUMBER_START = "<policyNumber>";
+
     @Value("${document.input.xml-folder}")
     private String xmlFolderPath;
 
@@ -60,10 +62,14 @@ public class XMLFileProcessor {
      * @return the extracted policy number
      */
     public String extractPolicyNumber(String xmlContent) {
-        int startIndex = xmlContent.indexOf("<policyNumber>");
-        int endIndex = xmlContent.indexOf("</policyNumber>");
-        if (startIndex != -1 && endIndex != -1) {
-            return xmlContent.substring(startIndex + 13, endIndex);
+        int startIndex = xmlContent.indexOf(POLICY_NUMBER_START);
+        if (startIndex != -1) {
+            startIndex += POLICY_NUMBER_START.length();
+            // Only scan past the start tag for the end tag
+            int endIndex = xmlContent.indexOf("</policyNumber>", startIndex);
+            if (endIndex != -1) {
+                return xmlContent.substring(startIndex, endIndex);
+            }
         }
         throw new IllegalArgumentException("Could not find policy number in XML content");
     }
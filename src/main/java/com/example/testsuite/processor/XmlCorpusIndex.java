@@ -0,0 +1,501 @@
+package com.example.testsuite.processor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Index of the XML input corpus: the policy number of every file, the byte ranges of its policy number and
+ * {@code PassDate} values and the byte range of the payload to wrap in a request, i.e. the content without
+ * byte order mark, XML declaration and surrounding whitespace.
+ * <p>
+ * The corpus folder is walked with a task per directory on the common fork/join pool, without following
+ * symbolic links to directories, and files are then indexed in parallel by scanning their bytes, without
+ * decoding them into Strings. The index is persisted under {@code document.input.index.directory}, in a file
+ * named after the corpus folder; an entry is reused as long as its file keeps the same size and modification
+ * time, so a restart only rescans files that changed.
+ * <p>
+ * Payloads are read when they are requested and not kept. Files are read onto the heap, as mapping costs
+ * more than reading for typical policy sizes and every live mapping counts against the process's map limit;
+ * only files of at least {@value #MAP_THRESHOLD} bytes are memory-mapped.
+ */
+@Slf4j
+@Component
+public class XmlCorpusIndex {
+
+    /** Files at least this large are mapped rather than read */
+    static final int MAP_THRESHOLD = 1 << 20;
+    /** Identifies index files, followed by the format version */
+    private static final int MAGIC = 0x58434958;
+    /** Changed whenever the persisted entries change shape, to discard older index files */
+    private static final int FORMAT_VERSION = 3;
+    private static final byte[] POLICY_NUMBER_START = "<policyNumber>".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] POLICY_NUMBER_END = "</policyNumber>".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PASS_DATE_START = "<PassDate>".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PASS_DATE_END = "</PassDate>".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] XML_DECLARATION_START = "<?xml".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] XML_DECLARATION_END = "?>".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    @Value("${document.input.xml-folder}")
+    private String xmlFolderPath;
+
+    @Value("${document.input.index.persist:true}")
+    private boolean persist;
+
+    @Value("${document.input.index.directory:target/corpus-index}")
+    private String indexDirectory;
+
+    /**
+     * Indexes the configured input folder, reusing the persisted entries of unchanged files
+     * @return the entries of all XML files in the folder and its subfolders, ordered by relative path
+     * @throws IOException if the folder cannot be walked or a file cannot be read
+     */
+    public List<Entry> load() throws IOException {
+        return load(Paths.get(xmlFolderPath));
+    }
+
+    /**
+     * Indexes a corpus folder, reusing the persisted entries of unchanged files
+     * @param folder the corpus folder
+     * @return the entries of all XML files in the folder and its subfolders, ordered by relative path
+     * @throws IOException if the folder cannot be walked or a file cannot be read
+     * @throws IllegalArgumentException if a file has no policy number
+     */
+    public List<Entry> load(Path folder) throws IOException {
+        if (!Files.isDirectory(folder)) {
+            throw new IOException("XML folder does not exist: " + folder);
+        }
+        long start = System.nanoTime();
+        Path indexFile = indexFile(folder);
+        Map<String, Entry> persisted = persist ? readIndex(indexFile) : Map.of();
+
+        Queue<Candidate> candidates = new ConcurrentLinkedQueue<>();
+        AtomicInteger reindexed = new AtomicInteger();
+        List<Entry> entries;
+        try {
+            ForkJoinPool.commonPool().invoke(new DirectoryScan(folder, folder, candidates));
+            entries = candidates.parallelStream()
+                    .map(candidate -> {
+                        Entry entry = persisted.get(candidate.relativePath);
+                        if (entry == null || !entry.matches(candidate.attributes)) {
+                            reindexed.incrementAndGet();
+                            entry = index(candidate.file, candidate.relativePath, candidate.attributes);
+                        }
+                        entry.file = candidate.file;
+                        return entry;
+                    })
+                    .sorted(Comparator.comparing(Entry::getRelativePath))
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        if (persist && (reindexed.get() > 0 || entries.size() != persisted.size())) {
+            writeIndex(indexFile, entries);
+        }
+        log.info("Indexed {} XML files in {} ({} rescanned) in {} ms", entries.size(), folder, reindexed.get(),
+                (System.nanoTime() - start) / 1_000_000);
+        return entries;
+    }
+
+    /**
+     * Indexes the given files in parallel, without reading or writing a persisted index
+     * @param xmlFiles the XML files to index
+     * @return the entries of the files, in the same order
+     * @throws IOException if a file cannot be read
+     * @throws IllegalArgumentException if a file has no policy number
+     */
+    public List<Entry> index(List<File> xmlFiles) throws IOException {
+        try {
+            return xmlFiles.parallelStream()
+                    .map(xmlFile -> {
+                        try {
+                            return index(xmlFile);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Indexes a single file, without reading or writing a persisted index
+     * @param xmlFile the XML file to index
+     * @return the entry of the file
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file has no policy number
+     */
+    public Entry index(File xmlFile) throws IOException {
+        Path file = xmlFile.toPath();
+        try {
+            Entry entry = index(file, xmlFile.getName(), Files.readAttributes(file, BasicFileAttributes.class));
+            entry.file = file;
+            return entry;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Entry index(Path file, String relativePath, BasicFileAttributes attributes) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("XML file too large to index: " + file);
+            }
+            int length = (int) size;
+            ByteBuffer content = read(channel, 0, length, file);
+
+            int[] policyNumber = valueRange(content, POLICY_NUMBER_START, POLICY_NUMBER_END, length);
+            if (policyNumber == null) {
+                throw new IllegalArgumentException("Could not find policy number in XML file: " + file);
+            }
+            int[] passDate = valueRange(content, PASS_DATE_START, PASS_DATE_END, length);
+            int payloadStart = payloadStart(content, length);
+            int payloadEnd = length;
+            while (payloadEnd > payloadStart && isWhitespace(content.get(payloadEnd - 1))) {
+                payloadEnd--;
+            }
+
+            String policyNumberValue = StandardCharsets.UTF_8
+                    .decode(content.duplicate().limit(policyNumber[1]).position(policyNumber[0])).toString();
+            return new Entry(relativePath, size, attributes.lastModifiedTime().toMillis(), policyNumberValue,
+                    policyNumber[0], policyNumber[1], payloadStart, payloadEnd,
+                    passDate == null ? -1 : passDate[0], passDate == null ? -1 : passDate[1]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads a range of a file onto the heap, or maps it when it is large enough for mapping to pay off
+     */
+    private static ByteBuffer read(FileChannel channel, long position, int length, Path file) throws IOException {
+        if (length >= MAP_THRESHOLD) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("File shrank while reading: " + file);
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * @return start and end offset of the value of the first element with the given tags, or null if there is none
+     */
+    private static int[] valueRange(ByteBuffer content, byte[] startTag, byte[] endTag, int length) {
+        int start = indexOf(content, startTag, 0, length);
+        if (start == -1) {
+            return null;
+        }
+        start += startTag.length;
+        int end = indexOf(content, endTag, start, length);
+        return end == -1 ? null : new int[] {start, end};
+    }
+
+    /**
+     * @return index of the first byte after the byte order mark, XML declaration and leading whitespace
+     */
+    private static int payloadStart(ByteBuffer content, int length) {
+        int start = startsWith(content, UTF8_BOM, 0, length) ? UTF8_BOM.length : 0;
+        start = skipWhitespace(content, start, length);
+        if (startsWith(content, XML_DECLARATION_START, start, length)) {
+            int declarationEnd = indexOf(content, XML_DECLARATION_END, start, length);
+            if (declarationEnd == -1) {
+                throw new IllegalArgumentException("Unterminated XML declaration");
+            }
+            start = skipWhitespace(content, declarationEnd + XML_DECLARATION_END.length, length);
+        }
+        return start;
+    }
+
+    private static int indexOf(ByteBuffer content, byte[] pattern, int from, int to) {
+        int last = to - pattern.length;
+        for (int i = from; i <= last; i++) {
+            if (content.get(i) == pattern[0] && startsWith(content, pattern, i, to)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(ByteBuffer content, byte[] prefix, int index, int length) {
+        if (length - index < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (content.get(index + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipWhitespace(ByteBuffer content, int index, int length) {
+        while (index < length && isWhitespace(content.get(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    /**
+     * @return the index file of a corpus folder, named after a digest of the folder's absolute path
+     */
+    private Path indexFile(Path folder) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(
+                    folder.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8));
+            return Paths.get(indexDirectory).resolve(HexFormat.of().formatHex(digest, 0, 16) + ".idx");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static Map<String, Entry> readIndex(Path indexFile) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a corpus index");
+            }
+            if (in.readInt() != FORMAT_VERSION) {
+                log.info("Discarding corpus index {} written in another format", indexFile);
+                return Map.of();
+            }
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("Invalid entry count " + count);
+            }
+            Map<String, Entry> entries = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                Entry entry = Entry.readFrom(in);
+                entries.put(entry.relativePath, entry);
+            }
+            return entries;
+        } catch (NoSuchFileException e) {
+            return Map.of();
+        } catch (IOException e) {
+            log.warn("Discarding unreadable corpus index {}", indexFile, e);
+            return Map.of();
+        }
+    }
+
+    private static void writeIndex(Path indexFile, List<Entry> entries) {
+        try {
+            Files.createDirectories(indexFile.getParent());
+            Path temp = Files.createTempFile(indexFile.getParent(), indexFile.getFileName().toString(), ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(FORMAT_VERSION);
+                    out.writeInt(entries.size());
+                    for (Entry entry : entries) {
+                        entry.writeTo(out);
+                    }
+                }
+                Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            // An index that cannot be written only costs the next startup a full scan
+            log.warn("Failed to write corpus index {}", indexFile, e);
+        }
+    }
+
+    private static class Candidate {
+        private final Path file;
+        private final String relativePath;
+        private final BasicFileAttributes attributes;
+
+        Candidate(Path file, String relativePath, BasicFileAttributes attributes) {
+            this.file = file;
+            this.relativePath = relativePath;
+            this.attributes = attributes;
+        }
+    }
+
+    /**
+     * Lists the XML files of one directory and scans its subdirectories as parallel subtasks
+     */
+    private static class DirectoryScan extends RecursiveAction {
+        private final Path root;
+        private final Path directory;
+        private final Queue<Candidate> candidates;
+
+        DirectoryScan(Path root, Path directory, Queue<Candidate> candidates) {
+            this.root = root;
+            this.directory = directory;
+            this.candidates = candidates;
+        }
+
+        @Override
+        protected void compute() {
+            List<DirectoryScan> subdirectories = new ArrayList<>();
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(directory)) {
+                for (Path child : children) {
+                    BasicFileAttributes attributes = Files.readAttributes(child, BasicFileAttributes.class,
+                            LinkOption.NOFOLLOW_LINKS);
+                    if (attributes.isSymbolicLink()) {
+                        // Linked files are indexed, but linked directories could lead back up the tree
+                        attributes = Files.readAttributes(child, BasicFileAttributes.class);
+                        if (attributes.isDirectory()) {
+                            log.debug("Not following linked directory {}", child);
+                            continue;
+                        }
+                    }
+                    if (attributes.isDirectory()) {
+                        subdirectories.add(new DirectoryScan(root, child, candidates));
+                    } else if (attributes.isRegularFile()
+                            && child.getFileName().toString().toLowerCase().endsWith(".xml")) {
+                        candidates.add(new Candidate(child, root.relativize(child).toString(), attributes));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            invokeAll(subdirectories);
+        }
+    }
+
+    /**
+     * Indexed metadata of one corpus file. Offsets are byte offsets into the file.
+     */
+    public static class Entry {
+        private final String relativePath;
+        private final long size;
+        private final long lastModifiedMillis;
+        private final String policyNumber;
+        private final int policyNumberStart;
+        private final int policyNumberEnd;
+        private final int payloadStart;
+        private final int payloadEnd;
+        private final int passDateStart;
+        private final int passDateEnd;
+        private Path file;
+
+        Entry(String relativePath, long size, long lastModifiedMillis, String policyNumber, int policyNumberStart,
+                int policyNumberEnd, int payloadStart, int payloadEnd, int passDateStart, int passDateEnd) {
+            this.relativePath = relativePath;
+            this.size = size;
+            this.lastModifiedMillis = lastModifiedMillis;
+            this.policyNumber = policyNumber;
+            this.policyNumberStart = policyNumberStart;
+            this.policyNumberEnd = policyNumberEnd;
+            this.payloadStart = payloadStart;
+            this.payloadEnd = payloadEnd;
+            this.passDateStart = passDateStart;
+            this.passDateEnd = passDateEnd;
+        }
+
+        public Path getFile() { return file; }
+        public String getRelativePath() { return relativePath; }
+        public long getSize() { return size; }
+        public long getLastModifiedMillis() { return lastModifiedMillis; }
+        public String getPolicyNumber() { return policyNumber; }
+        /** Offset of the first byte of the policy number value */
+        public int getPolicyNumberStart() { return policyNumberStart; }
+        /** Offset just past the policy number value */
+        public int getPolicyNumberEnd() { return policyNumberEnd; }
+        public int getPayloadStart() { return payloadStart; }
+        public int getPayloadEnd() { return payloadEnd; }
+        /** Offset of the first byte of the PassDate value, or -1 if the file has no PassDate */
+        public int getPassDateStart() { return passDateStart; }
+        /** Offset just past the PassDate value, or -1 if the file has no PassDate */
+        public int getPassDateEnd() { return passDateEnd; }
+
+        /**
+         * Reads the payload of the file, without byte order mark, XML declaration and surrounding whitespace.
+         * The buffer is not kept, so read it again for every request rather than holding on to it.
+         * @return a read-only buffer over the payload bytes, mapped if the file is large
+         * @throws IOException if the file cannot be read
+         */
+        public ByteBuffer payload() throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                return read(channel, payloadStart, payloadEnd - payloadStart, file).asReadOnlyBuffer();
+            }
+        }
+
+        /**
+         * Decodes the payload, for consumers that need it as a String
+         * @return the payload as a String
+         * @throws IOException if the file cannot be read
+         */
+        public String readPayload() throws IOException {
+            return StandardCharsets.UTF_8.decode(payload()).toString();
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeUTF(relativePath);
+            out.writeLong(size);
+            out.writeLong(lastModifiedMillis);
+            out.writeUTF(policyNumber);
+            out.writeInt(policyNumberStart);
+            out.writeInt(policyNumberEnd);
+            out.writeInt(payloadStart);
+            out.writeInt(payloadEnd);
+            out.writeInt(passDateStart);
+            out.writeInt(passDateEnd);
+        }
+
+        static Entry readFrom(DataInputStream in) throws IOException {
+            Entry entry = new Entry(in.readUTF(), in.readLong(), in.readLong(), in.readUTF(), in.readInt(),
+                    in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt());
+            if (entry.payloadStart < 0 || entry.payloadStart > entry.payloadEnd || entry.payloadEnd > entry.size
+                    || entry.policyNumberStart < entry.payloadStart || entry.policyNumberStart > entry.policyNumberEnd
+                    || entry.policyNumberEnd > entry.payloadEnd
+                    || entry.passDateStart > entry.passDateEnd || entry.passDateEnd > entry.size) {
+                throw new IOException("Invalid offsets for " + entry.relativePath);
+            }
+            return entry;
+        }
+
+        boolean matches(BasicFileAttributes attributes) {
+            return attributes.size() == size && attributes.lastModifiedTime().toMillis() == lastModifiedMillis;
+        }
+    }
+}
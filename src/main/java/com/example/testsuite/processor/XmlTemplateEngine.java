@@ -0,0 +1,412 @@
+package com.example.testsuite.processor;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Synthesizes test inputs by overriding fields of seed policies, such as dates, policy numbers and amounts.
+ * <p>
+ * A set of fields is compiled once into a {@link Template}, which applies values to all of them in a single
+ * StAX pass: events are copied from the reader to a writer on the output stream, and the content of matched
+ * elements or the value of matched attributes is replaced on the way. Neither the input nor the output is
+ * held in memory. Fields are selected by paths of local names, namespaces ignored:
+ * <ul>
+ *   <li>{@code /policy/metadata/policyNumber} - an element by its absolute path</li>
+ *   <li>{@code //PassDate} or {@code //limits/collision} - elements ending in this path at any depth</li>
+ *   <li>{@code /policy/coverage/@currency} - an attribute of the selected elements, added when missing</li>
+ *   <li>{@code *} - any element name at that step</li>
+ * </ul>
+ * {@link #generate} writes many variants of a small seed set on a fixed pool; seeds are read once and
+ * parsed from memory for every variant.
+ */
+@Slf4j
+@Component
+public class XmlTemplateEngine {
+
+    private final XMLInputFactory inputFactory = XMLInputFactory.newFactory();
+    private final XMLOutputFactory outputFactory = XMLOutputFactory.newFactory();
+
+    @Value("${document.template.parallelism:0}")
+    private int parallelism;
+
+    private ExecutorService generatorPool;
+
+    public XmlTemplateEngine() {
+        // Seeds are test inputs, but there is no reason to resolve anything outside of them
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    @PostConstruct
+    void init() {
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        generatorPool = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "xml-template-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        generatorPool.shutdownNow();
+    }
+
+    /**
+     * Compiles the fields a template overrides
+     * @param selectors one path per field, see the class description for the syntax
+     * @return the template, which takes one value per selector in the same order
+     * @throws IllegalArgumentException if a selector is malformed
+     */
+    public Template compile(String... selectors) {
+        Selector[] compiled = new Selector[selectors.length];
+        for (int i = 0; i < selectors.length; i++) {
+            compiled[i] = Selector.compile(selectors[i]);
+        }
+        return new Template(compiled);
+    }
+
+    /**
+     * Values of the fields of one variant
+     */
+    @FunctionalInterface
+    public interface VariantValues {
+        /**
+         * @param seed file name of the seed the variant is made from
+         * @param variant index of the variant among those of its seed, starting at 0
+         * @return one value per selector of the template, null to leave a field as it is in the seed
+         */
+        String[] valuesFor(String seed, int variant);
+    }
+
+    /**
+     * Writes variants of every seed, named {@code <seed>-<variant>.xml}, to a directory
+     * @param seeds the seed XML files
+     * @param variantsPerSeed number of variants to write per seed
+     * @param template the fields to override
+     * @param values the values of the fields per variant
+     * @param outputDir directory to write the variants to
+     * @return the number of variants written
+     * @throws IOException if a seed cannot be read or a variant cannot be written
+     */
+    public int generate(List<Path> seeds, int variantsPerSeed, Template template, VariantValues values,
+            Path outputDir) throws IOException {
+        Files.createDirectories(outputDir);
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (Path seed : seeds) {
+                byte[] content = Files.readAllBytes(seed);
+                String seedName = seed.getFileName().toString();
+                String baseName = seedName.toLowerCase().endsWith(".xml")
+                        ? seedName.substring(0, seedName.length() - 4) : seedName;
+                for (int variant = 0; variant < variantsPerSeed; variant++) {
+                    int index = variant;
+                    Path target = outputDir.resolve(baseName + "-" + variant + ".xml");
+                    futures.add(generatorPool.submit(() -> {
+                        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(target))) {
+                            template.apply(new ByteArrayInputStream(content), out, values.valuesFor(seedName, index));
+                        }
+                        return null;
+                    }));
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(true));
+            throw new IOException("Interrupted while generating variants", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException("Failed to generate variants", e.getCause());
+        }
+        log.info("Generated {} variants of {} seeds in {} ms", futures.size(), seeds.size(),
+                (System.nanoTime() - start) / 1_000_000);
+        return futures.size();
+    }
+
+    /**
+     * Compiled set of field selectors, safe to apply from many threads at once
+     */
+    public final class Template {
+        private final Selector[] selectors;
+
+        private Template(Selector[] selectors) {
+            this.selectors = selectors;
+        }
+
+        /**
+         * Copies an XML document to a stream, overriding the selected fields. Matched elements get the value
+         * as their only content; every element a selector matches is overridden, not just the first.
+         * @param in the XML document; its encoding is detected from the declaration
+         * @param out the stream to write the document to; it is always written in UTF-8, with the declaration's
+         * encoding changed to match and its version and standalone status kept. It is flushed but not closed
+         * @param values one value per selector, null to leave a field unchanged
+         * @throws IOException if the document cannot be read, parsed or written
+         */
+        public void apply(InputStream in, OutputStream out, String... values) throws IOException {
+            if (values.length != selectors.length) {
+                throw new IllegalArgumentException(String.format("Expected %d values but got %d",
+                        selectors.length, values.length));
+            }
+            XMLStreamReader reader = null;
+            XMLStreamWriter writer = null;
+            try {
+                reader = inputFactory.createXMLStreamReader(in);
+                writeDeclaration(reader, out);
+                writer = outputFactory.createXMLStreamWriter(out, "UTF-8");
+                copy(reader, writer, values);
+                writer.flush();
+            } catch (XMLStreamException e) {
+                throw new IOException("Failed to apply template", e);
+            } finally {
+                close(reader, writer);
+            }
+        }
+
+        /**
+         * Writes the XML declaration of the input, if it has one, ahead of the writer. XMLStreamWriter cannot
+         * write the standalone pseudo-attribute, so the declaration is written by hand.
+         */
+        private void writeDeclaration(XMLStreamReader reader, OutputStream out) throws IOException {
+            if (reader.getVersion() == null) {
+                return;
+            }
+            StringBuilder declaration = new StringBuilder("<?xml version=\"").append(reader.getVersion())
+                    .append("\" encoding=\"UTF-8\"");
+            if (reader.standaloneSet()) {
+                declaration.append(" standalone=\"").append(reader.isStandalone() ? "yes" : "no").append('"');
+            }
+            out.write(declaration.append("?>").toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        private void copy(XMLStreamReader reader, XMLStreamWriter writer, String[] values)
+                throws XMLStreamException {
+            String[] path = new String[16];
+            int depth = 0;
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT -> {
+                        if (depth == path.length) {
+                            path = Arrays.copyOf(path, depth * 2);
+                        }
+                        path[depth++] = reader.getLocalName();
+                        writeStartElement(reader, writer, path, depth, values);
+                        String text = elementValue(path, depth, values);
+                        if (text != null) {
+                            writer.writeCharacters(text);
+                            skipContent(reader);
+                            writer.writeEndElement();
+                            depth--;
+                        }
+                    }
+                    case XMLStreamConstants.END_ELEMENT -> {
+                        writer.writeEndElement();
+                        depth--;
+                    }
+                    case XMLStreamConstants.CHARACTERS, XMLStreamConstants.SPACE -> writer.writeCharacters(
+                            reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    case XMLStreamConstants.CDATA -> writer.writeCData(reader.getText());
+                    case XMLStreamConstants.COMMENT -> writer.writeComment(reader.getText());
+                    case XMLStreamConstants.PROCESSING_INSTRUCTION -> writer.writeProcessingInstruction(
+                            reader.getPITarget(), reader.getPIData() == null ? "" : reader.getPIData());
+                    case XMLStreamConstants.DTD -> writer.writeDTD(reader.getText());
+                    case XMLStreamConstants.ENTITY_REFERENCE -> writer.writeEntityRef(reader.getLocalName());
+                    default -> {
+                        // END_DOCUMENT
+                    }
+                }
+            }
+            writer.writeEndDocument();
+        }
+
+        private void writeStartElement(XMLStreamReader reader, XMLStreamWriter writer, String[] path, int depth,
+                String[] values) throws XMLStreamException {
+            String prefix = reader.getPrefix();
+            String namespaceUri = reader.getNamespaceURI();
+            if (namespaceUri == null || namespaceUri.isEmpty()) {
+                writer.writeStartElement(reader.getLocalName());
+            } else {
+                writer.writeStartElement(prefix == null ? "" : prefix, reader.getLocalName(), namespaceUri);
+            }
+            for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                String namespacePrefix = reader.getNamespacePrefix(i);
+                if (namespacePrefix == null || namespacePrefix.isEmpty()) {
+                    writer.writeDefaultNamespace(reader.getNamespaceURI(i));
+                } else {
+                    writer.writeNamespace(namespacePrefix, reader.getNamespaceURI(i));
+                }
+            }
+
+            // Selectors of attributes of this element that have a value; their attributes are added if missing
+            boolean[] pending = null;
+            for (int s = 0; s < selectors.length; s++) {
+                if (values[s] != null && selectors[s].attribute != null && selectors[s].matches(path, depth)) {
+                    if (pending == null) {
+                        pending = new boolean[selectors.length];
+                    }
+                    pending[s] = true;
+                }
+            }
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                String localName = reader.getAttributeLocalName(i);
+                String value = reader.getAttributeValue(i);
+                if (pending != null) {
+                    for (int s = 0; s < selectors.length; s++) {
+                        if (pending[s] && selectors[s].attribute.equals(localName)) {
+                            value = values[s];
+                            pending[s] = false;
+                        }
+                    }
+                }
+                String attributeNamespace = reader.getAttributeNamespace(i);
+                if (attributeNamespace == null || attributeNamespace.isEmpty()) {
+                    writer.writeAttribute(localName, value);
+                } else {
+                    writer.writeAttribute(reader.getAttributePrefix(i), attributeNamespace, localName, value);
+                }
+            }
+            if (pending != null) {
+                for (int s = 0; s < selectors.length; s++) {
+                    if (pending[s]) {
+                        writer.writeAttribute(selectors[s].attribute, values[s]);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return the value replacing the content of the current element, or null if no selector matches it
+         */
+        private String elementValue(String[] path, int depth, String[] values) {
+            String value = null;
+            for (int s = 0; s < selectors.length; s++) {
+                if (values[s] != null && selectors[s].attribute == null && selectors[s].matches(path, depth)) {
+                    // The last matching selector wins, as later overrides are usually the more specific ones
+                    value = values[s];
+                }
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Skips the content of the current element up to and including its end tag
+     */
+    private static void skipContent(XMLStreamReader reader) throws XMLStreamException {
+        int level = 1;
+        while (level > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                level++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                level--;
+            }
+        }
+    }
+
+    private static void close(XMLStreamReader reader, XMLStreamWriter writer) throws IOException {
+        try {
+            // Neither closes the underlying stream
+            if (writer != null) {
+                writer.close();
+            }
+            if (reader != null) {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Failed to close XML stream", e);
+        }
+    }
+
+    /**
+     * Path of local names, matched against the names of the open elements from the innermost outwards
+     */
+    private static final class Selector {
+        private final String[] steps;
+        private final boolean absolute;
+        private final String attribute;
+
+        private Selector(String[] steps, boolean absolute, String attribute) {
+            this.steps = steps;
+            this.absolute = absolute;
+            this.attribute = attribute;
+        }
+
+        static Selector compile(String selector) {
+            boolean absolute;
+            String path;
+            if (selector.startsWith("//")) {
+                absolute = false;
+                path = selector.substring(2);
+            } else if (selector.startsWith("/")) {
+                absolute = true;
+                path = selector.substring(1);
+            } else {
+                throw new IllegalArgumentException("Selector must start with / or //: " + selector);
+            }
+            List<String> steps = new ArrayList<>(Arrays.asList(path.split("/", -1)));
+            String attribute = null;
+            if (steps.get(steps.size() - 1).startsWith("@")) {
+                attribute = steps.remove(steps.size() - 1).substring(1);
+                if (attribute.isEmpty()) {
+                    throw new IllegalArgumentException("Missing attribute name in selector: " + selector);
+                }
+            }
+            if (steps.isEmpty() || steps.stream().anyMatch(step -> step.isEmpty() || step.startsWith("@"))) {
+                throw new IllegalArgumentException("Malformed selector: " + selector);
+            }
+            return new Selector(steps.toArray(new String[0]), absolute, attribute);
+        }
+
+        boolean matches(String[] path, int depth) {
+            if (absolute ? depth != steps.length : depth < steps.length) {
+                return false;
+            }
+            for (int i = 1; i <= steps.length; i++) {
+                String step = steps[steps.length - i];
+                if (!step.equals("*") && !step.equals(path[depth - i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.testsuite.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Character-level diff of two long texts that reports every differing region in linear time.
+ * <p>
+ * Both texts are walked in lockstep. At each mismatch the walk resynchronizes on the nearest anchor:
+ * a block of the second text, indexed by a polynomial hash at fixed block boundaries, that reappears in
+ * the first text. The first text is scanned with a rolling (Rabin-Karp) hash, so each candidate position
+ * costs a constant amount of work regardless of the anchor length. Edits closer together than the anchor
+ * length are reported as one hunk.
+ */
+public final class AnchoredDiff {
+
+    /** Length of the blocks used to resynchronize; shorter anchors resync on coincidental matches */
+    static final int ANCHOR_LENGTH = 32;
+    /** Once an anchor is found, closer ones are only looked for within this many characters */
+    static final int SEARCH_WINDOW = 4096;
+
+    private static final long BASE = 1_000_003L;
+
+    private AnchoredDiff() {
+    }
+
+    /**
+     * Computes the hunks in which two texts differ
+     * @param a the first text
+     * @param b the second text
+     * @return the differing hunks in order, with character offsets, empty if the texts are equal
+     */
+    public static List<LineDiff.Hunk> diff(CharSequence a, CharSequence b) {
+        List<LineDiff.Hunk> hunks = new ArrayList<>();
+        BlockIndex blocks = new BlockIndex(b);
+        int n = a.length();
+        int m = b.length();
+        int i = 0, j = 0;
+
+        while (true) {
+            while (i < n && j < m && a.charAt(i) == b.charAt(j)) {
+                i++;
+                j++;
+            }
+            if (i == n || j == m) {
+                if (i < n || j < m) {
+                    addHunk(hunks, a, i, n, b, j, m);
+                }
+                return hunks;
+            }
+
+            long anchor = findAnchor(a, i, b, j, blocks);
+            if (anchor < 0) {
+                addHunk(hunks, a, i, n, b, j, m);
+                return hunks;
+            }
+            int anchorA = (int) (anchor >>> 32);
+            int anchorB = (int) anchor;
+            addHunk(hunks, a, i, anchorA, b, j, anchorB);
+            i = anchorA;
+            j = anchorB;
+        }
+    }
+
+    /**
+     * Finds the anchor closest to a mismatch, measured as the number of characters skipped in both texts
+     * @return the anchor's offsets in a and b packed into a long, or -1 if there is none
+     */
+    private static long findAnchor(CharSequence a, int i, CharSequence b, int j, BlockIndex blocks) {
+        int n = a.length();
+        if (n - i < ANCHOR_LENGTH) {
+            return -1;
+        }
+
+        long best = -1;
+        long bestCost = Long.MAX_VALUE;
+        long hash = hash(a, i, i + ANCHOR_LENGTH);
+        for (int p = i; ; p++) {
+            int skippedA = p - i;
+            if (skippedA >= bestCost || (best >= 0 && skippedA > SEARCH_WINDOW)) {
+                break;
+            }
+            for (int q = blocks.firstFrom(hash, j); q >= 0; q = blocks.next(q)) {
+                long cost = (long) skippedA + (q - j);
+                if (cost >= bestCost) {
+                    break; // Later blocks in the chain are only further away
+                }
+                if (regionMatches(a, p, b, q)) {
+                    best = ((long) p << 32) | q;
+                    bestCost = cost;
+                }
+            }
+            if (p + ANCHOR_LENGTH >= n) {
+                break;
+            }
+            hash = (hash - a.charAt(p) * BlockIndex.LEADING_FACTOR) * BASE + a.charAt(p + ANCHOR_LENGTH);
+        }
+        return best;
+    }
+
+    /**
+     * Adds a hunk after trimming the characters it has in common at its end, which appear when the
+     * anchor is found beyond the actual end of an edit
+     */
+    private static void addHunk(List<LineDiff.Hunk> hunks, CharSequence a, int aStart, int aEnd,
+            CharSequence b, int bStart, int bEnd) {
+        while (aEnd > aStart && bEnd > bStart && a.charAt(aEnd - 1) == b.charAt(bEnd - 1)) {
+            aEnd--;
+            bEnd--;
+        }
+        hunks.add(new LineDiff.Hunk(aStart, aEnd, bStart, bEnd));
+    }
+
+    private static boolean regionMatches(CharSequence a, int p, CharSequence b, int q) {
+        for (int k = 0; k < ANCHOR_LENGTH; k++) {
+            if (a.charAt(p + k) != b.charAt(q + k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long hash(CharSequence text, int start, int end) {
+        long hash = 0;
+        for (int k = start; k < end; k++) {
+            hash = hash * BASE + text.charAt(k);
+        }
+        return hash;
+    }
+
+    /**
+     * Hash table of the non-overlapping blocks of a text. Blocks with equal hashes are chained in
+     * ascending order of their offsets. Each chain has a cursor that only moves forward, so blocks the
+     * diff has passed are skipped once rather than on every lookup; on repetitive text, where most blocks
+     * share one chain, walking the chain from its head would make the scan quadratic.
+     */
+    private static class BlockIndex {
+        static final long LEADING_FACTOR = power(BASE, ANCHOR_LENGTH - 1);
+
+        private final int[] table;
+        private final int[] cursors;
+        private final long[] hashes;
+        private final int[] next;
+
+        BlockIndex(CharSequence text) {
+            int count = text.length() / ANCHOR_LENGTH;
+            hashes = new long[count];
+            next = new int[count];
+            table = new int[Integer.highestOneBit(Math.max(1, count) * 2) * 2];
+            Arrays.fill(table, -1);
+
+            int[] tails = new int[table.length];
+            for (int block = 0; block < count; block++) {
+                long hash = hash(text, block * ANCHOR_LENGTH, (block + 1) * ANCHOR_LENGTH);
+                hashes[block] = hash;
+                next[block] = -1;
+                int slot = slot(hash);
+                while (table[slot] >= 0 && hashes[table[slot]] != hash) {
+                    slot = (slot + 1) & (table.length - 1);
+                }
+                if (table[slot] < 0) {
+                    table[slot] = block;
+                } else {
+                    next[tails[slot]] = block;
+                }
+                tails[slot] = block;
+            }
+            cursors = table.clone();
+        }
+
+        /**
+         * Finds the first block with the given hash at or after an offset. The offset must not decrease
+         * from one call to the next.
+         * @return offset of the block, or -1
+         */
+        int firstFrom(long hash, int from) {
+            for (int slot = slot(hash); table[slot] >= 0; slot = (slot + 1) & (table.length - 1)) {
+                if (hashes[table[slot]] == hash) {
+                    int block = cursors[slot];
+                    while (block >= 0 && block * ANCHOR_LENGTH < from) {
+                        block = next[block];
+                    }
+                    cursors[slot] = block;
+                    return block < 0 ? -1 : block * ANCHOR_LENGTH;
+                }
+            }
+            return -1;
+        }
+
+        /** @return offset of the next block with the same hash as the block at an offset, or -1 */
+        int next(int offset) {
+            int block = next[offset / ANCHOR_LENGTH];
+            return block < 0 ? -1 : block * ANCHOR_LENGTH;
+        }
+
+        private int slot(long hash) {
+            long mixed = hash * 0x9E3779B97F4A7C15L;
+            return (int) (mixed >>> 40) & (table.length - 1);
+        }
+
+        private static long power(long base, int exponent) {
+            long result = 1;
+            for (int k = 0; k < exponent; k++) {
+                result *= base;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.testsuite.utils;
+
+import com.example.testsuite.utils.DocumentContentExtractor.ExtractedContent;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled ignore rules of one policy template: page regions left out of the visual and font comparisons,
+ * text patterns blanked before the text comparison, and fonts whose runs are not compared at all.
+ * <p>
+ * Masks are applied once per document rather than inside the compare loops: regions are painted over
+ * each rendered page before it is compared, and all text patterns are combined into a single regex that
+ * rewrites the extracted text in one pass. The comparators then run unchanged on the masked input.
+ * Instances are immutable and can be shared by concurrent comparisons.
+ */
+public class ComparisonMask {
+
+    /** Replaces every masked piece of text, so that masked values compare equal however long they are */
+    static final String TEXT_PLACEHOLDER = "[masked]";
+
+    public static final ComparisonMask NONE = new ComparisonMask(List.of(), null, Set.of());
+
+    private final List<Region> regions;
+    private final Pattern textPattern;
+    private final Set<String> exemptFonts;
+
+    /**
+     * @param regions regions to ignore
+     * @param textPattern matches all text to mask, or null to leave the text unchanged
+     * @param exemptFonts names of fonts whose runs are not compared, without subset prefixes
+     */
+    public ComparisonMask(List<Region> regions, Pattern textPattern, Set<String> exemptFonts) {
+        this.regions = List.copyOf(regions);
+        this.textPattern = textPattern;
+        this.exemptFonts = Set.copyOf(exemptFonts);
+    }
+
+    public List<Region> getRegions() { return regions; }
+    public Pattern getTextPattern() { return textPattern; }
+    public Set<String> getExemptFonts() { return exemptFonts; }
+
+    public boolean isEmpty() {
+        return regions.isEmpty() && textPattern == null && exemptFonts.isEmpty();
+    }
+
+    /**
+     * Paints the regions of a page white, so that both renderings of a page compare equal inside them
+     * @param image the rendered page, modified in place
+     * @param page zero-based page index
+     * @param dpi resolution the page was rendered at
+     */
+    public void maskImage(BufferedImage image, int page, float dpi) {
+        Graphics2D g2d = null;
+        float scale = dpi / 72f;
+        for (Region region : regions) {
+            if (!region.appliesTo(page)) {
+                continue;
+            }
+            if (g2d == null) {
+                g2d = image.createGraphics();
+                g2d.setColor(Color.WHITE);
+            }
+            int x = (int) Math.floor(region.getX() * scale);
+            int y = (int) Math.floor(region.getY() * scale);
+            g2d.fillRect(x, y, (int) Math.ceil((region.getX() + region.getWidth()) * scale) - x,
+                    (int) Math.ceil((region.getY() + region.getHeight()) * scale) - y);
+        }
+        if (g2d != null) {
+            g2d.dispose();
+        }
+    }
+
+    /**
+     * @param page zero-based page index
+     * @param x horizontal position in points
+     * @param y vertical position in points, measured from the top of the page
+     * @return whether the position lies in one of the regions
+     */
+    public boolean isMasked(int page, float x, float y) {
+        for (Region region : regions) {
+            if (region.appliesTo(page) && region.contains(x, y)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether a font is exempt from the font comparison, ignoring any subset prefix such as "ABCDEF+"
+     */
+    public boolean isFontExempt(String fontName) {
+        return !exemptFonts.isEmpty() && exemptFonts.contains(baseFontName(fontName));
+    }
+
+    /**
+     * Replaces every match of the text patterns with a placeholder, moving the page boundaries along
+     * @param content the extracted content
+     * @return the masked content, or the content itself if nothing matches
+     */
+    public ExtractedContent maskText(ExtractedContent content) {
+        if (textPattern == null) {
+            return content;
+        }
+        String text = content.getText();
+        Matcher matcher = textPattern.matcher(text);
+        if (!matcher.find()) {
+            return content;
+        }
+
+        int[] pageEnds = content.getPageEnds();
+        int page = 0;
+        StringBuilder masked = new StringBuilder(text.length());
+        int copied = 0;
+        do {
+            if (matcher.end() == matcher.start()) {
+                continue;
+            }
+            masked.append(text, copied, matcher.start());
+            // Page ends before the match move with the text; those inside it end after the placeholder
+            int shift = masked.length() - matcher.start();
+            for (; page < pageEnds.length && pageEnds[page] <= matcher.start(); page++) {
+                pageEnds[page] += shift;
+            }
+            masked.append(TEXT_PLACEHOLDER);
+            for (; page < pageEnds.length && pageEnds[page] < matcher.end(); page++) {
+                pageEnds[page] = masked.length();
+            }
+            copied = matcher.end();
+        } while (matcher.find());
+        int shift = masked.length() - copied;
+        masked.append(text, copied, text.length());
+        for (; page < pageEnds.length; page++) {
+            pageEnds[page] += shift;
+        }
+        return new ExtractedContent(masked.toString(), content.getFontRuns(), pageEnds);
+    }
+
+    static String baseFontName(String fontName) {
+        int plus = fontName.indexOf('+');
+        return plus == 6 ? fontName.substring(plus + 1) : fontName;
+    }
+
+    /**
+     * Merges the rules of several masks, e.g. the default rules with those of a template
+     */
+    public static ComparisonMask merge(ComparisonMask first, ComparisonMask second) {
+        if (first.isEmpty()) {
+            return second;
+        }
+        if (second.isEmpty()) {
+            return first;
+        }
+        List<Region> regions = new ArrayList<>(first.regions);
+        regions.addAll(second.regions);
+        Pattern textPattern = first.textPattern == null ? second.textPattern
+                : second.textPattern == null ? first.textPattern
+                : Pattern.compile("(?:" + first.textPattern.pattern() + ")|(?:" + second.textPattern.pattern() + ")");
+        Set<String> exemptFonts = new HashSet<>(first.exemptFonts);
+        exemptFonts.addAll(second.exemptFonts);
+        return new ComparisonMask(regions, textPattern, exemptFonts);
+    }
+
+    /**
+     * Rectangle on a page, in points from the top left corner of the page
+     */
+    public static class Region {
+        private final int page;
+        private final float x;
+        private final float y;
+        private final float width;
+        private final float height;
+
+        /**
+         * @param page zero-based page index, or -1 for every page
+         */
+        public Region(int page, float x, float y, float width, float height) {
+            this.page = page;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+
+        public int getPage() { return page; }
+        public float getX() { return x; }
+        public float getY() { return y; }
+        public float getWidth() { return width; }
+        public float getHeight() { return height; }
+
+        boolean appliesTo(int page) {
+            return this.page < 0 || this.page == page;
+        }
+
+        boolean contains(float px, float py) {
+            return px >= x && px < x + width && py >= y && py < y + height;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (%.0f, %.0f) %.0fx%.0f",
+                    page < 0 ? "Every page" : "Page " + (page + 1), x, y, width, height);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.testsuite.utils;
+
+import com.example.testsuite.utils.DocumentContentExtractor.ExtractedContent;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Holds a generated PDF and its gold copy for the duration of one comparison, so that each file is read
+ * and parsed at most once no matter how many comparators look at it. Text and font information are
+ * extracted together in a single pass, optionally spread over several threads by page range. Everything
+ * is loaded lazily; for the gold copy, extracted content is served from the GoldCopyCache and the file is
+ * only parsed on a cache miss.
+ * <p>
+ * The shared PDDocuments must only be used by one thread at a time. Workers that process a document
+ * concurrently take their own copy with {@link SessionDocument#loadCopy()}, which parses the bytes already
+ * held in memory instead of reading the file again.
+ */
+public class ComparisonSession implements AutoCloseable {
+
+    private final SessionDocument generated;
+    private final SessionDocument goldCopy;
+
+    private ComparisonSession(SessionDocument generated, SessionDocument goldCopy) {
+        this.generated = generated;
+        this.goldCopy = goldCopy;
+    }
+
+    /**
+     * Opens a session for a pair of PDFs
+     * @param generatedPdf the generated PDF file
+     * @param goldCopyPdf the gold copy PDF file
+     * @param goldCopyCache cache for content derived from the gold copy
+     * @return a new session, which must be closed
+     */
+    public static ComparisonSession open(File generatedPdf, File goldCopyPdf, GoldCopyCache goldCopyCache) {
+        return open(generatedPdf, goldCopyPdf, goldCopyCache, null);
+    }
+
+    /**
+     * Opens a session for a pair of PDFs whose content is extracted on several threads
+     * @param generatedPdf the generated PDF file
+     * @param goldCopyPdf the gold copy PDF file
+     * @param goldCopyCache cache for content derived from the gold copy
+     * @param contentExtractor extracts text and fonts page range by page range, or null to use a single thread
+     * @return a new session, which must be closed
+     */
+    public static ComparisonSession open(File generatedPdf, File goldCopyPdf, GoldCopyCache goldCopyCache,
+            ParallelContentExtractor contentExtractor) {
+        return new ComparisonSession(new SessionDocument(generatedPdf, null, contentExtractor),
+                new SessionDocument(goldCopyPdf, goldCopyCache, contentExtractor));
+    }
+
+    public SessionDocument getGenerated() { return generated; }
+    public SessionDocument getGoldCopy() { return goldCopy; }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            generated.close();
+        } finally {
+            goldCopy.close();
+        }
+    }
+
+    public static class SessionDocument {
+        private final File file;
+        private final GoldCopyCache goldCopyCache;
+        private final ParallelContentExtractor contentExtractor;
+        private byte[] bytes;
+        private PDDocument document;
+        private ExtractedContent content;
+
+        private SessionDocument(File file, GoldCopyCache goldCopyCache, ParallelContentExtractor contentExtractor) {
+            this.file = file;
+            this.goldCopyCache = goldCopyCache;
+            this.contentExtractor = contentExtractor;
+        }
+
+        public File getFile() { return file; }
+
+        public boolean isGoldCopy() { return goldCopyCache != null; }
+
+        /**
+         * @return the raw PDF bytes, read from disk on first use
+         * @throws IOException if the file cannot be read
+         */
+        public synchronized byte[] getBytes() throws IOException {
+            if (bytes == null) {
+                bytes = Files.readAllBytes(file.toPath());
+            }
+            return bytes;
+        }
+
+        /**
+         * @return the session's shared PDDocument, parsed on first use and closed with the session
+         * @throws IOException if the document cannot be parsed
+         */
+        public synchronized PDDocument getDocument() throws IOException {
+            if (document == null) {
+                document = PDDocument.load(getBytes());
+            }
+            return document;
+        }
+
+        /**
+         * Parses a private copy of the document for use on another thread
+         * @return a new PDDocument that the caller must close
+         * @throws IOException if the document cannot be parsed
+         */
+        public PDDocument loadCopy() throws IOException {
+            return PDDocument.load(getBytes());
+        }
+
+        /**
+         * @return the document's text and font information, extracted in one pass on first use
+         * @throws IOException if the document cannot be processed
+         */
+        public synchronized ExtractedContent getContent() throws IOException {
+            if (content == null) {
+                content = isGoldCopy()
+                        ? goldCopyCache.getObject(file, "content", this::extractContent)
+                        : extractContent();
+            }
+            return content;
+        }
+
+        private ExtractedContent extractContent() throws IOException {
+            return contentExtractor != null
+                    ? contentExtractor.extract(this)
+                    : new DocumentContentExtractor().extract(getDocument());
+        }
+
+        private synchronized void close() throws IOException {
+            if (document != null) {
+                document.close();
+                document = null;
+            }
+        }
+    }
+}
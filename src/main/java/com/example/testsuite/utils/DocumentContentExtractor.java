@@ -0,0 +1,112 @@
+package com.example.testsuite.utils;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.pdfbox.text.TextPosition;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Extracts the text of a document together with its font runs in a single pass,
+ * so the text and font comparisons don't each have to parse the content streams.
+ * A PDFTextStripper keeps per-document state, so a new extractor is needed for every extraction.
+ */
+public class DocumentContentExtractor extends PDFTextStripper {
+
+    private final FontRunIndex.Builder fontRuns = new FontRunIndex.Builder();
+    private final List<Integer> pageEnds = new ArrayList<>();
+    private StringWriter text;
+
+    public DocumentContentExtractor() throws IOException {
+        super();
+    }
+
+    /**
+     * Extracts text and font information from a document
+     * @param document the document to extract from
+     * @return the extracted content
+     * @throws IOException if there's an error processing the document
+     */
+    public ExtractedContent extract(PDDocument document) throws IOException {
+        text = new StringWriter();
+        writeText(document, text);
+        return new ExtractedContent(text.toString(), fontRuns.build(),
+                pageEnds.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    @Override
+    protected void processTextPosition(TextPosition text) {
+        super.processTextPosition(text);
+        fontRuns.add(text, getCurrentPageNo() - 1);
+    }
+
+    @Override
+    protected void endPage(PDPage page) throws IOException {
+        super.endPage(page);
+        pageEnds.add(text.getBuffer().length());
+    }
+
+    public static class ExtractedContent implements Serializable {
+        private static final long serialVersionUID = 3L;
+
+        private final String text;
+        private final FontRunIndex fontRuns;
+        private final int[] pageEnds;
+
+        /**
+         * @param pageEnds offset in the text at which each page ends
+         */
+        public ExtractedContent(String text, FontRunIndex fontRuns, int[] pageEnds) {
+            this.text = text;
+            this.fontRuns = fontRuns;
+            this.pageEnds = pageEnds;
+        }
+
+        public String getText() { return text; }
+        public FontRunIndex getFontRuns() { return fontRuns; }
+        public int[] getPageEnds() { return pageEnds.clone(); }
+        public int getPageCount() { return pageEnds.length; }
+
+        /** @return offset in the text at which a zero-based page starts */
+        public int getPageStart(int page) { return page == 0 ? 0 : pageEnds[page - 1]; }
+
+        /** @return offset in the text at which a zero-based page ends */
+        public int getPageEnd(int page) { return pageEnds[page]; }
+
+        /**
+         * Joins the content extracted from consecutive ranges of pages of one document
+         * @param parts the content of each range, in page order
+         * @return the content of all ranges together
+         */
+        public static ExtractedContent concat(List<ExtractedContent> parts) {
+            StringBuilder text = new StringBuilder();
+            FontRunIndex.Builder fontRuns = new FontRunIndex.Builder();
+            int[] pageEnds = new int[parts.stream().mapToInt(ExtractedContent::getPageCount).sum()];
+            int page = 0;
+            for (ExtractedContent part : parts) {
+                for (int pageEnd : part.pageEnds) {
+                    pageEnds[page++] = text.length() + pageEnd;
+                }
+                text.append(part.text);
+                fontRuns.append(part.fontRuns);
+            }
+            return new ExtractedContent(text.toString(), fontRuns.build(), pageEnds);
+        }
+
+        /**
+         * @return zero-based index of the page an offset in the text belongs to
+         */
+        public static int pageAt(int[] pageEnds, int offset) {
+            int index = Arrays.binarySearch(pageEnds, offset);
+            // An offset equal to a page end is the first character of the next page
+            int page = index >= 0 ? index + 1 : -index - 1;
+            return Math.min(page, Math.max(0, pageEnds.length - 1));
+        }
+    }
+}
@@ -1,28 +1,36 @@
 package com.example.testsuite.utils;
 
 import lombok.extern.slf4j.Slf4j;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.font.PDFont;
-import org.apache.pdfbox.text.PDFTextStripper;
-import org.apache.pdfbox.text.TextPosition;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Compares the fonts used in two PDFs. Fonts are compared per run of text, matched by page and position,
+ * so the same text set in different fonts in different places is reported correctly. The comparator
+ * itself holds no per-comparison state: font runs are extracted by a DocumentContentExtractor created
+ * for each document, so a single instance can serve any number of concurrent comparisons.
+ */
 @Slf4j
 @Component
-public class FontComparator extends PDFTextStripper {
+public class FontComparator {
 
-    private final List<FontDifference> differences = new ArrayList<>();
-    private Map<String, FontInfo> fontInfoMap = new HashMap<>();
-    public FontComparator() throws IOException {
-        super();
+    private static final int[] POSITION_OFFSETS = {0, -1, 1};
+
+    private final GoldCopyCache goldCopyCache;
+
+    @Autowired
+    public FontComparator(GoldCopyCache goldCopyCache) {
+        this.goldCopyCache = goldCopyCache;
     }
 
     /**
@@ -33,84 +41,121 @@ public class FontComparator extends PDFTextStripper {
      * @throws IOException if there's an error processing the PDFs
      */
     public List<FontDifference> compareFonts(File generatedPdf, File goldCopyPdf) throws IOException {
-        differences.clear();
-        fontInfoMap.clear();
-        
-        Map<String, FontInfo> generatedFontMap = extractFontInfo(generatedPdf, true);
-        Map<String, FontInfo> goldCopyFontMap = extractFontInfo(goldCopyPdf, false);
-
-        // Compare font usage
-        for (Map.Entry<String, FontInfo> entry : generatedFontMap.entrySet()) {
-            String text = entry.getKey();
-            FontInfo generatedFont = entry.getValue();
-            FontInfo goldCopyFont = goldCopyFontMap.get(text);
+        try (ComparisonSession session = ComparisonSession.open(generatedPdf, goldCopyPdf, goldCopyCache)) {
+            return compareFonts(session);
+        }
+    }
 
-            if (goldCopyFont == null) {
-                differences.add(new FontDifference(text, generatedFont, null));
-            } else if (!generatedFont.equals(goldCopyFont)) {
-                differences.add(new FontDifference(text, generatedFont, goldCopyFont));
+    /**
+     * Compares fonts using the font runs a ComparisonSession already extracted together with the text
+     * @param session the session holding both documents
+     * @return List of font differences found
+     * @throws IOException if there's an error processing the PDFs
+     */
+    public List<FontDifference> compareFonts(ComparisonSession session) throws IOException {
+        return compareFonts(session, ComparisonMask.NONE);
+    }
+
+    /**
+     * Compares fonts like {@link #compareFonts(ComparisonSession)}, skipping runs that start inside one of
+     * the mask's regions or are set in one of its exempt fonts
+     * @param session the session holding both documents
+     * @param mask regions and fonts to ignore
+     * @return List of font differences found
+     * @throws IOException if there's an error processing the PDFs
+     */
+    public List<FontDifference> compareFonts(ComparisonSession session, ComparisonMask mask) throws IOException {
+        return diffFontRuns(session.getGenerated().getContent().getFontRuns(),
+                session.getGoldCopy().getContent().getFontRuns(), mask);
+    }
+
+    /**
+     * Pairs the runs of both documents by page and start position and reports runs whose style differs,
+     * followed by runs that only exist in one of the documents. Runs at the same position with the same
+     * style but different text are left to the text comparison.
+     */
+    private List<FontDifference> diffFontRuns(FontRunIndex generatedRuns, FontRunIndex goldCopyRuns,
+            ComparisonMask mask) {
+        List<FontDifference> differences = new ArrayList<>();
+
+        // Masked gold copy runs are marked as matched up front, so they are neither paired nor reported
+        Map<Long, Integer> goldCopyByPosition = new HashMap<>(goldCopyRuns.size() * 2);
+        BitSet matchedGoldCopyRuns = new BitSet(goldCopyRuns.size());
+        for (int run = goldCopyRuns.size() - 1; run >= 0; run--) {
+            if (isMasked(goldCopyRuns, run, mask)) {
+                matchedGoldCopyRuns.set(run);
+            } else {
+                goldCopyByPosition.put(goldCopyRuns.getPositionKey(run), run);
             }
         }
 
-        // Check for text that only appears in gold copy
-        for (Map.Entry<String, FontInfo> entry : goldCopyFontMap.entrySet()) {
-            String text = entry.getKey();
-            if (!generatedFontMap.containsKey(text)) {
-                differences.add(new FontDifference(text, null, entry.getValue()));
+        for (int run = 0; run < generatedRuns.size(); run++) {
+            if (isMasked(generatedRuns, run, mask)) {
+                continue;
+            }
+            int goldCopyRun = findGoldCopyRun(generatedRuns, run, goldCopyByPosition, matchedGoldCopyRuns);
+            if (goldCopyRun < 0) {
+                differences.add(difference(generatedRuns, run, generatedRuns.getFontInfo(run), null));
+                continue;
+            }
+            matchedGoldCopyRuns.set(goldCopyRun);
+            if (!generatedRuns.hasSameStyle(run, goldCopyRuns, goldCopyRun)) {
+                differences.add(difference(generatedRuns, run,
+                        generatedRuns.getFontInfo(run), goldCopyRuns.getFontInfo(goldCopyRun)));
             }
         }
 
+        // Runs that only appear in gold copy
+        for (int run = matchedGoldCopyRuns.nextClearBit(0); run < goldCopyRuns.size();
+                run = matchedGoldCopyRuns.nextClearBit(run + 1)) {
+            differences.add(difference(goldCopyRuns, run, null, goldCopyRuns.getFontInfo(run)));
+        }
+
         return differences;
     }
 
-    private Map<String, FontInfo> extractFontInfo(File pdfFile, boolean isGenerated) throws IOException {
-        fontInfoMap.clear();
+    private static boolean isMasked(FontRunIndex runs, int run, ComparisonMask mask) {
+        return mask.isFontExempt(runs.getFontName(run))
+                || mask.isMasked(runs.getPage(run), runs.getX(run), runs.getY(run));
+    }
 
-        try (PDDocument document = PDDocument.load(pdfFile)) {
-            for (PDPage page : document.getPages()) {
-                processPage(page);
+    /**
+     * Looks up an unmatched gold copy run starting at the same position, allowing the rounded coordinates
+     * to be one point off so positions close to a rounding boundary still pair up. Each neighbouring key is
+     * built from its own coordinates, since offsetting a packed key at a coordinate of 0 would borrow from
+     * the neighbouring field.
+     */
+    private int findGoldCopyRun(FontRunIndex generatedRuns, int generatedRun,
+            Map<Long, Integer> goldCopyByPosition, BitSet matched) {
+        int page = generatedRuns.getPage(generatedRun);
+        int x = FontRunIndex.keyCoordinate(generatedRuns.getX(generatedRun));
+        int y = FontRunIndex.keyCoordinate(generatedRuns.getY(generatedRun));
+        for (int dx : POSITION_OFFSETS) {
+            for (int dy : POSITION_OFFSETS) {
+                if (!isKeyCoordinate(x + dx) || !isKeyCoordinate(y + dy)) {
+                    continue;
+                }
+                Integer run = goldCopyByPosition.get(FontRunIndex.positionKey(page, x + dx, y + dy));
+                if (run != null && !matched.get(run)) {
+                    return run;
+                }
             }
         }
-        return new HashMap<>(fontInfoMap);
+        return -1;
     }
 
-    @Override
-    protected void processTextPosition(TextPosition text) {
-        PDFont font = text.getFont();
-        String textContent = text.getUnicode();
-        
-        // Create font info for the current text
-        FontInfo fontInfo = new FontInfo(
-            font.getName(),
-            text.getFontSizeInPt(),
-            getFontWeight(font),
-            isItalicFont(font)
-        );
-
-        // Store or update font information for this text
-        fontInfoMap.put(textContent, fontInfo);
+    private static boolean isKeyCoordinate(int coordinate) {
+        return coordinate >= 0 && coordinate <= FontRunIndex.MAX_KEY_COORDINATE;
     }
 
-    private float getFontWeight(PDFont font) {
-        try {
-            return font.getFontDescriptor() != null ? 
-                   font.getFontDescriptor().getFontWeight() : 
-                   400f; // Default weight if not specified
-        } catch (Exception e) {
-            return 400f;
-        }
+    private static FontDifference difference(FontRunIndex runs, int run, FontInfo generatedFont, FontInfo goldCopyFont) {
+        return new FontDifference(runs.getText(run), generatedFont, goldCopyFont,
+                runs.getPage(run), runs.getX(run), runs.getY(run));
     }
 
-    private boolean isItalicFont(PDFont font) {
-        try {
-            return font.getFontDescriptor() != null && 
-                   font.getFontDescriptor().isItalic();
-        } catch (Exception e) {
-            return false;
-        }
-    }
+    public static class FontInfo implements Serializable {
+        private static final long serialVersionUID = 1L;
 
-    public static class FontInfo {
         private final String fontName;
         private final float fontSize;
         private final float fontWeight;
@@ -123,6 +168,25 @@ public class FontComparator extends PDFTextStripper {
             this.isItalic = isItalic;
         }
 
+        static float getFontWeight(PDFont font) {
+            try {
+                return font.getFontDescriptor() != null ?
+                       font.getFontDescriptor().getFontWeight() :
+                       400f; // Default weight if not specified
+            } catch (Exception e) {
+                return 400f;
+            }
+        }
+
+        static boolean isItalicFont(PDFont font) {
+            try {
+                return font.getFontDescriptor() != null &&
+                       font.getFontDescriptor().isItalic();
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
         public String getFontName() { return fontName; }
         public float getFontSize() { return fontSize; }
         public float getFontWeight() { return fontWeight; }
@@ -161,28 +225,47 @@ public class FontComparator extends PDFTextStripper {
         private final String text;
         private final FontInfo generatedFont;
         private final FontInfo goldCopyFont;
+        private final int page;
+        private final float x;
+        private final float y;
 
         public FontDifference(String text, FontInfo generatedFont, FontInfo goldCopyFont) {
+            this(text, generatedFont, goldCopyFont, -1, 0, 0);
+        }
+
+        /**
+         * @param page zero-based page index of the run, or -1 if unknown
+         * @param x horizontal start position of the run in points
+         * @param y vertical start position of the run in points, measured from the top of the page
+         */
+        public FontDifference(String text, FontInfo generatedFont, FontInfo goldCopyFont, int page, float x, float y) {
             this.text = text;
             this.generatedFont = generatedFont;
             this.goldCopyFont = goldCopyFont;
+            this.page = page;
+            this.x = x;
+            this.y = y;
         }
 
         public String getText() { return text; }
         public FontInfo getGeneratedFont() { return generatedFont; }
         public FontInfo getGoldCopyFont() { return goldCopyFont; }
+        public int getPage() { return page; }
+        public float getX() { return x; }
+        public float getY() { return y; }
 
         @Override
         public String toString() {
+            String location = page >= 0 ? String.format(" on page %d at (%.0f, %.0f)", page + 1, x, y) : "";
             if (goldCopyFont == null) {
-                return String.format("Text \"%s\" appears only in generated PDF with font: %s",
-                        text, generatedFont);
+                return String.format("Text \"%s\"%s appears only in generated PDF with font: %s",
+                        text, location, generatedFont);
             } else if (generatedFont == null) {
-                return String.format("Text \"%s\" appears only in gold copy with font: %s",
-                        text, goldCopyFont);
+                return String.format("Text \"%s\"%s appears only in gold copy with font: %s",
+                        text, location, goldCopyFont);
             } else {
-                return String.format("Text \"%s\" has different fonts - Generated: %s, Gold Copy: %s",
-                        text, generatedFont, goldCopyFont);
+                return String.format("Text \"%s\"%s has different fonts - Generated: %s, Gold Copy: %s",
+                        text, location, generatedFont, goldCopyFont);
             }
         }
     }
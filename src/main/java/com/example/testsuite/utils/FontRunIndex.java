@@ -0,0 +1,226 @@
+package com.example.testsuite.utils;
+
+import com.example.testsuite.utils.FontComparator.FontInfo;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.text.TextPosition;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Font usage of a document as a sequence of runs: consecutive glyphs on the same page and line that
+ * share a font and size. Runs are stored in parallel primitive arrays and refer to an interned style
+ * table, so a document costs a few bytes per run instead of an object per glyph. The texts of all runs
+ * are kept in one string.
+ */
+public class FontRunIndex implements Serializable {
+    private static final long serialVersionUID = 1L;
+    /** Largest coordinate, in whole points, that fits a 20-bit field of a position key */
+    public static final int MAX_KEY_COORDINATE = 0xFFFFF;
+
+    private final String text;
+    private final String[] fontNames;
+    private final int[] styleFont;
+    private final float[] styleSize;
+    private final float[] styleWeight;
+    private final boolean[] styleItalic;
+    private final int[] runPage;
+    private final float[] runX;
+    private final float[] runY;
+    private final int[] runStyle;
+    private final int[] runTextEnd;
+
+    private FontRunIndex(Builder builder) {
+        this.text = builder.text.toString();
+        this.fontNames = builder.fontNames.toArray(new String[0]);
+        int styles = builder.styleCount;
+        this.styleFont = Arrays.copyOf(builder.styleFont, styles);
+        this.styleSize = Arrays.copyOf(builder.styleSize, styles);
+        this.styleWeight = Arrays.copyOf(builder.styleWeight, styles);
+        this.styleItalic = Arrays.copyOf(builder.styleItalic, styles);
+        int runs = builder.runCount;
+        this.runPage = Arrays.copyOf(builder.runPage, runs);
+        this.runX = Arrays.copyOf(builder.runX, runs);
+        this.runY = Arrays.copyOf(builder.runY, runs);
+        this.runStyle = Arrays.copyOf(builder.runStyle, runs);
+        this.runTextEnd = Arrays.copyOf(builder.runTextEnd, runs);
+    }
+
+    public int size() { return runPage.length; }
+
+    /** @return zero-based page index of a run */
+    public int getPage(int run) { return runPage[run]; }
+    public float getX(int run) { return runX[run]; }
+    public float getY(int run) { return runY[run]; }
+
+    public String getText(int run) {
+        return text.substring(run == 0 ? 0 : runTextEnd[run - 1], runTextEnd[run]);
+    }
+
+    public String getFontName(int run) {
+        return fontNames[styleFont[runStyle[run]]];
+    }
+
+    /**
+     * @return the font of a run, materialized as a FontInfo
+     */
+    public FontInfo getFontInfo(int run) {
+        int style = runStyle[run];
+        return new FontInfo(fontNames[styleFont[style]], styleSize[style], styleWeight[style], styleItalic[style]);
+    }
+
+    /**
+     * Key identifying where a run starts: its page and its position rounded to whole points
+     */
+    public long getPositionKey(int run) {
+        return positionKey(runPage[run], keyCoordinate(runX[run]), keyCoordinate(runY[run]));
+    }
+
+    /**
+     * @return a coordinate rounded to whole points and clamped to the range a position key can hold
+     */
+    public static int keyCoordinate(float coordinate) {
+        return (int) Math.max(0, Math.min(MAX_KEY_COORDINATE, Math.round(coordinate)));
+    }
+
+    /**
+     * Packs a page and a position into a key; each coordinate must lie between 0 and MAX_KEY_COORDINATE
+     */
+    public static long positionKey(int page, int x, int y) {
+        return ((long) page << 40) | ((long) x << 20) | y;
+    }
+
+    /**
+     * Compares the style of a run with a run of another index, using the same tolerances as FontInfo
+     */
+    public boolean hasSameStyle(int run, FontRunIndex other, int otherRun) {
+        int style = runStyle[run];
+        int otherStyle = other.runStyle[otherRun];
+        return fontNames[styleFont[style]].equals(other.fontNames[other.styleFont[otherStyle]])
+                && Math.abs(styleSize[style] - other.styleSize[otherStyle]) < 0.1
+                && Math.abs(styleWeight[style] - other.styleWeight[otherStyle]) < 0.1
+                && styleItalic[style] == other.styleItalic[otherStyle];
+    }
+
+    /**
+     * Collects text positions into runs. Style lookups only happen when a glyph's font or size differs
+     * from the previous glyph, so the cost per glyph is a few comparisons and one append.
+     */
+    public static class Builder {
+        private final StringBuilder text = new StringBuilder();
+        private final List<String> fontNames = new ArrayList<>();
+        private final Map<String, Integer> fontIds = new HashMap<>();
+        private final Map<String, Integer> styleIds = new HashMap<>();
+        private int styleCount;
+        private int[] styleFont = new int[8];
+        private float[] styleSize = new float[8];
+        private float[] styleWeight = new float[8];
+        private boolean[] styleItalic = new boolean[8];
+        private int runCount;
+        private int[] runPage = new int[64];
+        private float[] runX = new float[64];
+        private float[] runY = new float[64];
+        private int[] runStyle = new int[64];
+        private int[] runTextEnd = new int[64];
+
+        private PDFont currentFont;
+        private float currentSize;
+
+        /**
+         * Adds a glyph, extending the current run or starting a new one
+         * @param position the glyph's text position
+         * @param page zero-based index of the page the glyph is on
+         */
+        public void add(TextPosition position, int page) {
+            PDFont font = position.getFont();
+            float size = position.getFontSizeInPt();
+            float y = position.getYDirAdj();
+            float lineTolerance = Math.max(1f, position.getHeightDir() / 2);
+
+            boolean continuesRun = runCount > 0
+                    && runPage[runCount - 1] == page
+                    && font == currentFont
+                    && size == currentSize
+                    && Math.abs(y - runY[runCount - 1]) < lineTolerance;
+            if (!continuesRun) {
+                startRun(page, position.getXDirAdj(), y, styleId(font, size));
+                currentFont = font;
+                currentSize = size;
+            }
+            text.append(position.getUnicode());
+            runTextEnd[runCount - 1] = text.length();
+        }
+
+        /**
+         * Appends all runs of another index, e.g. one extracted from a later range of pages
+         * @param index the index to append
+         */
+        public void append(FontRunIndex index) {
+            for (int run = 0; run < index.size(); run++) {
+                int style = index.runStyle[run];
+                startRun(index.runPage[run], index.runX[run], index.runY[run],
+                        styleId(index.fontNames[index.styleFont[style]], index.styleSize[style],
+                                index.styleWeight[style], index.styleItalic[style]));
+                text.append(index.text, run == 0 ? 0 : index.runTextEnd[run - 1], index.runTextEnd[run]);
+                runTextEnd[runCount - 1] = text.length();
+            }
+            // Never extend an appended run with glyphs added afterwards
+            currentFont = null;
+        }
+
+        public FontRunIndex build() {
+            return new FontRunIndex(this);
+        }
+
+        private void startRun(int page, float x, float y, int style) {
+            if (runCount == runPage.length) {
+                int capacity = runCount * 2;
+                runPage = Arrays.copyOf(runPage, capacity);
+                runX = Arrays.copyOf(runX, capacity);
+                runY = Arrays.copyOf(runY, capacity);
+                runStyle = Arrays.copyOf(runStyle, capacity);
+                runTextEnd = Arrays.copyOf(runTextEnd, capacity);
+            }
+            runPage[runCount] = page;
+            runX[runCount] = x;
+            runY[runCount] = y;
+            runStyle[runCount] = style;
+            runTextEnd[runCount] = text.length();
+            runCount++;
+        }
+
+        private int styleId(PDFont font, float size) {
+            String fontName = font.getName() != null ? font.getName() : "";
+            return styleId(fontName, size, FontInfo.getFontWeight(font), FontInfo.isItalicFont(font));
+        }
+
+        private int styleId(String fontName, float size, float weight, boolean italic) {
+            String key = fontName + '|' + size + '|' + weight + '|' + italic;
+
+            Integer known = styleIds.get(key);
+            if (known != null) {
+                return known;
+            }
+            if (styleCount == styleFont.length) {
+                int capacity = styleCount * 2;
+                styleFont = Arrays.copyOf(styleFont, capacity);
+                styleSize = Arrays.copyOf(styleSize, capacity);
+                styleWeight = Arrays.copyOf(styleWeight, capacity);
+                styleItalic = Arrays.copyOf(styleItalic, capacity);
+            }
+            styleFont[styleCount] = fontIds.computeIfAbsent(fontName, name -> {
+                fontNames.add(name);
+                return fontNames.size() - 1;
+            });
+            styleSize[styleCount] = size;
+            styleWeight[styleCount] = weight;
+            styleItalic[styleCount] = italic;
+            styleIds.put(key, styleCount);
+            return styleCount++;
+        }
+    }
+}
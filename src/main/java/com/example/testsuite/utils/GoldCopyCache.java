@@ -0,0 +1,348 @@
+package com.example.testsuite.utils;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Disk-backed cache of everything derived from gold copy PDFs: rendered page rasters, page digests,
+ * extracted text and font metadata. Entries of one gold copy live in a directory named after the
+ * SHA-256 of the PDF, so a changed gold copy never hits stale entries. Render settings are part of each
+ * entry name.
+ * <p>
+ * The total size is bounded; when it is exceeded, the gold copies that were least recently read are
+ * evicted as a whole. Entries are written to a temporary file and moved into place, so concurrent
+ * readers never see partial entries.
+ */
+@Slf4j
+@Component
+public class GoldCopyCache {
+
+    @Value("${document.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${document.cache.directory:target/gold-copy-cache}")
+    private String directory;
+
+    @Value("${document.cache.max-size-mb:2048}")
+    private long maxSizeMb;
+
+    private Path cacheRoot;
+    private final AtomicLong cacheSize = new AtomicLong();
+    private final Map<Path, FileDigest> fileDigests = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        cacheRoot = Paths.get(directory);
+        Files.createDirectories(cacheRoot);
+        try (Stream<Path> files = Files.walk(cacheRoot)) {
+            cacheSize.set(files.filter(Files::isRegularFile).mapToLong(this::sizeOf).sum());
+        }
+        log.info("Gold copy cache at {} holds {} MB (limit {} MB)", cacheRoot, cacheSize.get() >> 20, maxSizeMb);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns a rendered page of a gold copy, rendering and storing it on a cache miss
+     * @param goldCopyPdf the gold copy PDF file
+     * @param page zero-based page index
+     * @param renderSettings description of everything that affects the raster, e.g. DPI and image type
+     * @param renderer renders the page on a cache miss
+     * @return the rendered page
+     * @throws IOException if the page can neither be read from the cache nor rendered
+     */
+    public BufferedImage getPageImage(File goldCopyPdf, int page, String renderSettings,
+            Loader<BufferedImage> renderer) throws IOException {
+        return get(goldCopyPdf, "page-" + page + "-" + renderSettings + ".raster", renderer,
+                GoldCopyCache::readImage, GoldCopyCache::writeImage);
+    }
+
+    /**
+     * Returns a serializable value derived from a gold copy, such as extracted text or font metadata
+     * @param goldCopyPdf the gold copy PDF file
+     * @param name unique name of the value, including any settings that affect it
+     * @param loader computes the value on a cache miss
+     * @return the cached or freshly computed value
+     * @throws IOException if the value can neither be read from the cache nor computed
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Serializable> T getObject(File goldCopyPdf, String name, Loader<T> loader) throws IOException {
+        return get(goldCopyPdf, name + ".ser", loader, in -> {
+            try (ObjectInputStream objectIn = new ObjectInputStream(new InflaterInputStream(in))) {
+                return (T) objectIn.readObject();
+            } catch (ClassNotFoundException | ClassCastException e) {
+                throw new IOException("Incompatible cache entry", e);
+            }
+        }, (value, out) -> {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                DeflaterOutputStream deflaterOut = new DeflaterOutputStream(out, deflater);
+                ObjectOutputStream objectOut = new ObjectOutputStream(deflaterOut);
+                objectOut.writeObject(value);
+                objectOut.flush();
+                deflaterOut.finish();
+            } finally {
+                deflater.end();
+            }
+        });
+    }
+
+    private <T> T get(File goldCopyPdf, String entryName, Loader<T> loader, EntryReader<T> reader,
+            EntryWriter<T> writer) throws IOException {
+        if (!enabled) {
+            return loader.load();
+        }
+
+        Path goldCopyDir = cacheRoot.resolve(digestOf(goldCopyPdf));
+        Path entry = goldCopyDir.resolve(entryName);
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(entry))) {
+            T value = reader.read(in);
+            touch(goldCopyDir);
+            return value;
+        } catch (NoSuchFileException e) {
+            // Cache miss
+        } catch (IOException e) {
+            log.warn("Discarding unreadable gold copy cache entry {}", entry, e);
+        }
+
+        T value = loader.load();
+        store(goldCopyDir, entry, value, writer);
+        return value;
+    }
+
+    private <T> void store(Path goldCopyDir, Path entry, T value, EntryWriter<T> writer) {
+        try {
+            Files.createDirectories(goldCopyDir);
+            Path temp = Files.createTempFile(goldCopyDir, entry.getFileName().toString(), ".tmp");
+            try {
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                    writer.write(value, out);
+                }
+                long previousSize = Files.exists(entry) ? sizeOf(entry) : 0;
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                cacheSize.addAndGet(sizeOf(entry) - previousSize);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            touch(goldCopyDir);
+            evictIfNeeded(goldCopyDir);
+        } catch (IOException e) {
+            // A cache that cannot be written only costs performance, never the comparison itself
+            log.warn("Failed to write gold copy cache entry {}", entry, e);
+        }
+    }
+
+    /**
+     * Evicts whole gold copy directories, least recently used first, until the cache fits its limit
+     */
+    private synchronized void evictIfNeeded(Path keep) throws IOException {
+        long limit = maxSizeMb << 20;
+        if (cacheSize.get() <= limit) {
+            return;
+        }
+
+        List<Path> goldCopyDirs = new ArrayList<>();
+        try (Stream<Path> dirs = Files.list(cacheRoot)) {
+            dirs.filter(Files::isDirectory).filter(dir -> !dir.equals(keep)).forEach(goldCopyDirs::add);
+        }
+        goldCopyDirs.sort(Comparator.comparing(this::lastModified));
+
+        for (Path dir : goldCopyDirs) {
+            if (cacheSize.get() <= limit) {
+                break;
+            }
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    long size = Files.isRegularFile(file) ? sizeOf(file) : 0;
+                    if (Files.deleteIfExists(file)) {
+                        cacheSize.addAndGet(-size);
+                    }
+                }
+            }
+            log.debug("Evicted gold copy cache directory {}", dir);
+        }
+    }
+
+    private void touch(Path goldCopyDir) {
+        try {
+            Files.setLastModifiedTime(goldCopyDir, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            log.debug("Failed to update access time of {}", goldCopyDir, e);
+        }
+    }
+
+    /**
+     * Returns the SHA-256 of a file, only re-reading the file when its size or modification time changed
+     */
+    private String digestOf(File file) throws IOException {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        long size = Files.size(path);
+        long modified = Files.getLastModifiedTime(path).toMillis();
+
+        FileDigest known = fileDigests.get(path);
+        if (known != null && known.size == size && known.modified == modified) {
+            return known.digest;
+        }
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        try (InputStream in = new DigestInputStream(Files.newInputStream(path), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        String hex = HexFormat.of().formatHex(digest.digest());
+        fileDigests.put(path, new FileDigest(size, modified, hex));
+        return hex;
+    }
+
+    private long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * Stores int and byte rasters as their dimensions and type followed by the deflated pixel array
+     */
+    private static void writeImage(BufferedImage image, OutputStream out) throws IOException {
+        int type = image.getType() == BufferedImage.TYPE_BYTE_GRAY || image.getType() == BufferedImage.TYPE_INT_ARGB
+                ? image.getType() : BufferedImage.TYPE_INT_RGB;
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(image.getWidth());
+        header.writeInt(image.getHeight());
+        header.writeInt(type);
+        header.flush();
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            DeflaterOutputStream deflaterOut = new DeflaterOutputStream(out, deflater, 65536);
+            if (type == BufferedImage.TYPE_BYTE_GRAY) {
+                deflaterOut.write(((DataBufferByte) image.getRaster().getDataBuffer()).getData(),
+                        0, image.getWidth() * image.getHeight());
+            } else {
+                int width = image.getWidth();
+                int[] pixels = RasterComparator.rgbPixels(image);
+                ByteBuffer row = ByteBuffer.allocate(width * Integer.BYTES);
+                for (int y = 0; y < image.getHeight(); y++) {
+                    row.clear();
+                    row.asIntBuffer().put(pixels, y * width, width);
+                    deflaterOut.write(row.array());
+                }
+            }
+            deflaterOut.finish();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static BufferedImage readImage(InputStream in) throws IOException {
+        DataInputStream header = new DataInputStream(in);
+        int width = header.readInt();
+        int height = header.readInt();
+        int type = header.readInt();
+
+        Inflater inflater = new Inflater();
+        try {
+            DataInputStream data = new DataInputStream(new InflaterInputStream(in, inflater, 65536));
+            BufferedImage image = new BufferedImage(width, height, type);
+            if (type == BufferedImage.TYPE_BYTE_GRAY) {
+                data.readFully(((DataBufferByte) image.getRaster().getDataBuffer()).getData(), 0, width * height);
+                return image;
+            }
+
+            int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            byte[] row = new byte[width * Integer.BYTES];
+            for (int y = 0; y < height; y++) {
+                data.readFully(row);
+                ByteBuffer.wrap(row).asIntBuffer().get(pixels, y * width, width);
+            }
+            return image;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load() throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface EntryReader<T> {
+        T read(InputStream in) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface EntryWriter<T> {
+        void write(T value, OutputStream out) throws IOException;
+    }
+
+    private static class FileDigest {
+        private final long size;
+        private final long modified;
+        private final String digest;
+
+        FileDigest(long size, long modified, String digest) {
+            this.size = size;
+            this.modified = modified;
+            this.digest = digest;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.testsuite.utils;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Finds the regions in which two rendered pages differ.
+ * A pixel only counts as changed when one of its colour channels differs by more than the configured
+ * tolerance. Optionally, changed pixels that are just anti-aliased edges shifted by a pixel are ignored.
+ * The remaining pixels are clustered into connected components on a grid whose cell size is the merge
+ * distance, so nearby changes such as the glyphs of one word end up in a single bounding box.
+ */
+public final class ImageDiffer {
+
+    private static final int RGB_MASK = 0x00FFFFFF;
+
+    private final int channelTolerance;
+    private final boolean ignoreAntiAliasing;
+    private final int cellSize;
+
+    /**
+     * @param channelTolerance largest per-channel difference (0-255) that is still treated as equal
+     * @param ignoreAntiAliasing whether to suppress changed pixels that match a neighbour in the other image
+     * @param mergeDistance changed pixels closer than this many pixels are reported as one region
+     */
+    public ImageDiffer(int channelTolerance, boolean ignoreAntiAliasing, int mergeDistance) {
+        this.channelTolerance = Math.max(0, channelTolerance);
+        this.ignoreAntiAliasing = ignoreAntiAliasing;
+        this.cellSize = Math.max(0, mergeDistance) + 1;
+    }
+
+    /**
+     * Finds the difference regions of two page images
+     * @param page zero-based index of the page the images belong to
+     * @param img1 the first image
+     * @param img2 the second image
+     * @param fromRow first row that may contain differences, e.g. the row of the first exact mismatch
+     * @return the difference regions in row-major order, empty if all differences are within tolerance
+     */
+    public List<DiffRegion> findRegions(int page, BufferedImage img1, BufferedImage img2, int fromRow) {
+        if (img1.getWidth() != img2.getWidth() || img1.getHeight() != img2.getHeight()) {
+            int width = Math.max(img1.getWidth(), img2.getWidth());
+            int height = Math.max(img1.getHeight(), img2.getHeight());
+            return List.of(new DiffRegion(page, 0, 0, width, height, width * height));
+        }
+
+        int width = img1.getWidth();
+        int height = img1.getHeight();
+        int[] pixels1 = RasterComparator.rgbPixels(img1);
+        int[] pixels2 = RasterComparator.rgbPixels(img2);
+
+        int gridWidth = (width + cellSize - 1) / cellSize;
+        BitSet changedPixels = new BitSet(width * height);
+        BitSet changedCells = new BitSet(gridWidth * ((height + cellSize - 1) / cellSize));
+
+        int length = width * height;
+        int from = Math.max(0, fromRow) * width;
+        while (from < length) {
+            int offset = Arrays.mismatch(pixels1, from, length, pixels2, from, length);
+            if (offset < 0) {
+                break;
+            }
+            int index = from + offset;
+            from = index + 1;
+
+            int pixel1 = pixels1[index];
+            int pixel2 = pixels2[index];
+            if (((pixel1 ^ pixel2) & RGB_MASK) == 0 || withinTolerance(pixel1, pixel2)) {
+                continue;
+            }
+            int x = index % width;
+            int y = index / width;
+            if (ignoreAntiAliasing && isAntiAliased(pixels1, pixels2, x, y, width, height)) {
+                continue;
+            }
+            changedPixels.set(index);
+            changedCells.set((y / cellSize) * gridWidth + x / cellSize);
+        }
+
+        return cluster(page, changedPixels, changedCells, width, height, gridWidth);
+    }
+
+    /**
+     * Counts the pixels whose colour differs by more than the channel tolerance, without clustering.
+     * Used to judge low-resolution renderings where only the amount of change matters.
+     * @param img1 the first image
+     * @param img2 the second image
+     * @return the number of changed pixels, or every pixel if the image sizes differ
+     */
+    public long countChangedPixels(BufferedImage img1, BufferedImage img2) {
+        if (img1.getWidth() != img2.getWidth() || img1.getHeight() != img2.getHeight()) {
+            return (long) Math.max(img1.getWidth(), img2.getWidth()) * Math.max(img1.getHeight(), img2.getHeight());
+        }
+
+        int[] pixels1 = RasterComparator.rgbPixels(img1);
+        int[] pixels2 = RasterComparator.rgbPixels(img2);
+        int length = img1.getWidth() * img1.getHeight();
+        long changed = 0;
+        int from = 0;
+        while (from < length) {
+            int offset = Arrays.mismatch(pixels1, from, length, pixels2, from, length);
+            if (offset < 0) {
+                break;
+            }
+            int index = from + offset;
+            from = index + 1;
+            if (((pixels1[index] ^ pixels2[index]) & RGB_MASK) != 0 && !withinTolerance(pixels1[index], pixels2[index])) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    private boolean withinTolerance(int pixel1, int pixel2) {
+        return Math.abs(((pixel1 >> 16) & 0xFF) - ((pixel2 >> 16) & 0xFF)) <= channelTolerance
+                && Math.abs(((pixel1 >> 8) & 0xFF) - ((pixel2 >> 8) & 0xFF)) <= channelTolerance
+                && Math.abs((pixel1 & 0xFF) - (pixel2 & 0xFF)) <= channelTolerance;
+    }
+
+    /**
+     * Treats a changed pixel as anti-aliasing noise when each image's pixel is matched, within tolerance,
+     * by one of the surrounding pixels of the other image. This is what a sub-pixel shift of an edge
+     * looks like, whereas real content changes have no matching counterpart nearby.
+     */
+    private boolean isAntiAliased(int[] pixels1, int[] pixels2, int x, int y, int width, int height) {
+        return hasMatchingNeighbour(pixels1[y * width + x], pixels2, x, y, width, height)
+                && hasMatchingNeighbour(pixels2[y * width + x], pixels1, x, y, width, height);
+    }
+
+    private boolean hasMatchingNeighbour(int pixel, int[] pixels, int x, int y, int width, int height) {
+        for (int ny = Math.max(0, y - 1); ny <= Math.min(height - 1, y + 1); ny++) {
+            for (int nx = Math.max(0, x - 1); nx <= Math.min(width - 1, x + 1); nx++) {
+                if ((nx != x || ny != y) && withinTolerance(pixel, pixels[ny * width + nx])) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Groups changed cells into 8-connected components and measures the exact pixel bounds of each
+     */
+    private List<DiffRegion> cluster(int page, BitSet changedPixels, BitSet changedCells,
+            int width, int height, int gridWidth) {
+        List<DiffRegion> regions = new ArrayList<>();
+        int gridHeight = (height + cellSize - 1) / cellSize;
+        int[] stack = new int[64];
+
+        for (int seed = changedCells.nextSetBit(0); seed >= 0; seed = changedCells.nextSetBit(seed + 1)) {
+            int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = -1, maxY = -1, pixelCount = 0;
+            int size = 0;
+            stack[size++] = seed;
+            changedCells.clear(seed);
+
+            while (size > 0) {
+                int cell = stack[--size];
+                int cellX = cell % gridWidth;
+                int cellY = cell / gridWidth;
+
+                for (int y = cellY * cellSize; y < Math.min(height, (cellY + 1) * cellSize); y++) {
+                    int rowStart = y * width;
+                    int x = changedPixels.nextSetBit(rowStart + cellX * cellSize);
+                    int cellEnd = rowStart + Math.min(width, (cellX + 1) * cellSize);
+                    for (; x >= 0 && x < cellEnd; x = changedPixels.nextSetBit(x + 1)) {
+                        int px = x - rowStart;
+                        minX = Math.min(minX, px);
+                        maxX = Math.max(maxX, px);
+                        minY = Math.min(minY, y);
+                        maxY = Math.max(maxY, y);
+                        pixelCount++;
+                    }
+                }
+
+                for (int ny = Math.max(0, cellY - 1); ny <= Math.min(gridHeight - 1, cellY + 1); ny++) {
+                    for (int nx = Math.max(0, cellX - 1); nx <= Math.min(gridWidth - 1, cellX + 1); nx++) {
+                        int neighbour = ny * gridWidth + nx;
+                        if (changedCells.get(neighbour)) {
+                            changedCells.clear(neighbour);
+                            if (size == stack.length) {
+                                stack = Arrays.copyOf(stack, size * 2);
+                            }
+                            stack[size++] = neighbour;
+                        }
+                    }
+                }
+            }
+
+            regions.add(new DiffRegion(page, minX, minY, maxX - minX + 1, maxY - minY + 1, pixelCount));
+        }
+        return regions;
+    }
+
+    public static class DiffRegion {
+        private final int page;
+        private final int x;
+        private final int y;
+        private final int width;
+        private final int height;
+        private final int pixelCount;
+
+        public DiffRegion(int page, int x, int y, int width, int height, int pixelCount) {
+            this.page = page;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.pixelCount = pixelCount;
+        }
+
+        public int getPage() { return page; }
+        public int getX() { return x; }
+        public int getY() { return y; }
+        public int getWidth() { return width; }
+        public int getHeight() { return height; }
+        public int getPixelCount() { return pixelCount; }
+
+        @Override
+        public String toString() {
+            return String.format("Page %d: %d changed pixels in region %dx%d at (%d, %d)",
+                    page + 1, pixelCount, width, height, x, y);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.testsuite.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Minimal diff of two sequences of line ids, using Myers' O(ND) algorithm in its linear-space,
+ * divide-and-conquer form: each step searches for the middle of the shortest edit path from both ends
+ * and recurses on the two halves. Common prefixes and suffixes are stripped before every step, so
+ * documents with few changes are diffed in close to linear time.
+ * <p>
+ * The search for the middle is abandoned once its edit distance exceeds a cost limit of about the square
+ * root of the number of lines, at least {@value #MIN_COST_LIMIT}. The sequences are then split at the
+ * furthest point either search has reached, so heavily changed documents are diffed in about
+ * O(N * sqrt(N)) time at the price of an edit script that is no longer guaranteed to be minimal.
+ * <p>
+ * Lines are compared by id only; callers map equal lines to equal ids, e.g. by interning their text.
+ */
+public final class LineDiff {
+
+    /** Lower bound of the edit distance searched for before splitting at the furthest point reached */
+    static final int MIN_COST_LIMIT = 256;
+
+    private LineDiff() {
+    }
+
+    /**
+     * Computes the hunks in which two sequences differ
+     * @param a ids of the first sequence
+     * @param b ids of the second sequence
+     * @return the differing hunks in order, empty if the sequences are equal
+     */
+    public static List<Hunk> diff(int[] a, int[] b) {
+        List<Hunk> hunks = new ArrayList<>();
+        diff(a, 0, a.length, b, 0, b.length, hunks);
+        return hunks;
+    }
+
+    private static void diff(int[] a, int aStart, int aEnd, int[] b, int bStart, int bEnd, List<Hunk> hunks) {
+        while (aStart < aEnd && bStart < bEnd && a[aStart] == b[bStart]) {
+            aStart++;
+            bStart++;
+        }
+        while (aStart < aEnd && bStart < bEnd && a[aEnd - 1] == b[bEnd - 1]) {
+            aEnd--;
+            bEnd--;
+        }
+
+        if (aStart == aEnd || bStart == bEnd) {
+            if (aStart != aEnd || bStart != bEnd) {
+                addHunk(hunks, aStart, aEnd, bStart, bEnd);
+            }
+            return;
+        }
+
+        int n = aEnd - aStart;
+        int m = bEnd - bStart;
+        int maxD = (n + m + 1) / 2;
+        int limit = Math.min(maxD, Math.max(MIN_COST_LIMIT, (int) Math.sqrt(n + m)));
+        int offset = limit;
+        int[] forward = new int[2 * limit + 2];
+        int[] backward = new int[2 * limit + 2];
+        Arrays.fill(forward, -1);
+        Arrays.fill(backward, -1);
+        forward[offset + 1] = 0;
+        backward[offset + 1] = 0;
+
+        int delta = n - m;
+        // With an odd delta the forward and backward paths can only meet after a forward step
+        boolean front = (delta & 1) != 0;
+        int kForwardStart = 0, kForwardEnd = 0, kBackwardStart = 0, kBackwardEnd = 0;
+        // Furthest point reached from either end, as the x of the diagonal it lies on
+        int bestX = 0, bestY = 0, bestProgress = 0;
+
+        for (int d = 0; d < limit; d++) {
+            for (int k = -d + kForwardStart; k <= d - kForwardEnd; k += 2) {
+                int index = offset + k;
+                int x = k == -d || (k != d && forward[index - 1] < forward[index + 1])
+                        ? forward[index + 1] : forward[index - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && a[aStart + x] == b[bStart + y]) {
+                    x++;
+                    y++;
+                }
+                forward[index] = x;
+                if (x > n) {
+                    kForwardEnd += 2; // Ran off the right edge
+                } else if (y > m) {
+                    kForwardStart += 2; // Ran off the bottom edge
+                } else {
+                    if (x + y > bestProgress) {
+                        bestX = x;
+                        bestY = y;
+                        bestProgress = x + y;
+                    }
+                    if (!front) {
+                        continue;
+                    }
+                    int backwardIndex = offset + delta - k;
+                    if (backwardIndex >= 0 && backwardIndex < backward.length && backward[backwardIndex] != -1
+                            && x >= n - backward[backwardIndex]) {
+                        split(a, aStart, aEnd, b, bStart, bEnd, x, y, hunks);
+                        return;
+                    }
+                }
+            }
+
+            for (int k = -d + kBackwardStart; k <= d - kBackwardEnd; k += 2) {
+                int index = offset + k;
+                int x = k == -d || (k != d && backward[index - 1] < backward[index + 1])
+                        ? backward[index + 1] : backward[index - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && a[aEnd - x - 1] == b[bEnd - y - 1]) {
+                    x++;
+                    y++;
+                }
+                backward[index] = x;
+                if (x > n) {
+                    kBackwardEnd += 2;
+                } else if (y > m) {
+                    kBackwardStart += 2;
+                } else {
+                    if (x + y > bestProgress) {
+                        bestX = n - x;
+                        bestY = m - y;
+                        bestProgress = x + y;
+                    }
+                    if (front) {
+                        continue;
+                    }
+                    int forwardIndex = offset + delta - k;
+                    if (forwardIndex >= 0 && forwardIndex < forward.length && forward[forwardIndex] != -1) {
+                        int forwardX = forward[forwardIndex];
+                        int forwardY = offset + forwardX - forwardIndex;
+                        if (forwardX >= n - x) {
+                            split(a, aStart, aEnd, b, bStart, bEnd, forwardX, forwardY, hunks);
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+
+        if (limit < maxD && bestProgress > 0 && bestProgress < n + m) {
+            // Cost limit reached: settle for the furthest point found
+            split(a, aStart, aEnd, b, bStart, bEnd, bestX, bestY, hunks);
+            return;
+        }
+        // No common lines at all
+        addHunk(hunks, aStart, aEnd, bStart, bEnd);
+    }
+
+    private static void split(int[] a, int aStart, int aEnd, int[] b, int bStart, int bEnd, int x, int y,
+            List<Hunk> hunks) {
+        diff(a, aStart, aStart + x, b, bStart, bStart + y, hunks);
+        diff(a, aStart + x, aEnd, b, bStart + y, bEnd, hunks);
+    }
+
+    /**
+     * Appends a hunk, merging it into the previous one when the two touch
+     */
+    private static void addHunk(List<Hunk> hunks, int aStart, int aEnd, int bStart, int bEnd) {
+        if (!hunks.isEmpty()) {
+            Hunk last = hunks.get(hunks.size() - 1);
+            if (last.aEnd == aStart && last.bEnd == bStart) {
+                hunks.set(hunks.size() - 1, new Hunk(last.aStart, aEnd, last.bStart, bEnd));
+                return;
+            }
+        }
+        hunks.add(new Hunk(aStart, aEnd, bStart, bEnd));
+    }
+
+    /**
+     * A range of lines of the first sequence replaced by a range of lines of the second.
+     * Either range may be empty; bounds are zero-based, ends exclusive.
+     */
+    public static class Hunk {
+        private final int aStart;
+        private final int aEnd;
+        private final int bStart;
+        private final int bEnd;
+
+        public Hunk(int aStart, int aEnd, int bStart, int bEnd) {
+            this.aStart = aStart;
+            this.aEnd = aEnd;
+            this.bStart = bStart;
+            this.bEnd = bEnd;
+        }
+
+        public int getAStart() { return aStart; }
+        public int getAEnd() { return aEnd; }
+        public int getBStart() { return bStart; }
+        public int getBEnd() { return bEnd; }
+
+        @Override
+        public String toString() {
+            return String.format("a[%d, %d) -> b[%d, %d)", aStart, aEnd, bStart, bEnd);
+        }
+    }
+}
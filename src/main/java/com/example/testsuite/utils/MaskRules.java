@@ -0,0 +1,135 @@
+package com.example.testsuite.utils;
+
+import com.example.testsuite.utils.ComparisonMask.Region;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Ignore rules for dynamic content such as dates, generated ids and barcodes, keyed by policy template.
+ * The rule file is read and compiled once at startup; an invalid rule fails the startup rather than a
+ * comparison. The rules of the "default" template apply to every template.
+ * <p>
+ * Each template may define:
+ * <ul>
+ *   <li>{@code regions}: rectangles in points from the top left of the page, with an optional one-based
+ *   {@code page} (every page if omitted), that are ignored by the visual and font comparisons</li>
+ *   <li>{@code text}: {@code regex} or literal {@code token} entries, optionally {@code ignore-case},
+ *   whose matches are replaced by a placeholder before the text comparison</li>
+ *   <li>{@code fonts}: names of fonts whose runs are not compared</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class MaskRules {
+
+    public static final String DEFAULT_TEMPLATE = "default";
+
+    @Value("${document.compare.masks.file:classpath:comparison-masks.yml}")
+    private Resource rulesFile;
+
+    private Map<String, ComparisonMask> masks = Map.of();
+
+    @PostConstruct
+    void init() throws IOException {
+        if (!rulesFile.exists()) {
+            log.info("No comparison mask rules found at {}, comparing documents unmasked", rulesFile);
+            return;
+        }
+        try (InputStream in = rulesFile.getInputStream()) {
+            Map<String, Object> rules = new Yaml().load(in);
+            masks = compile(rules == null ? Map.of() : rules);
+        }
+        log.info("Loaded comparison mask rules for templates {}", masks.keySet());
+    }
+
+    /**
+     * @param template name of the policy template, such as the document type; null for the default rules
+     * @return the default rules combined with those of the template
+     */
+    public ComparisonMask forTemplate(String template) {
+        ComparisonMask mask = template == null ? null : masks.get(template);
+        return mask != null ? mask : masks.getOrDefault(DEFAULT_TEMPLATE, ComparisonMask.NONE);
+    }
+
+    /**
+     * Compiles the rules of every template and merges the default rules into each of them
+     */
+    static Map<String, ComparisonMask> compile(Map<String, Object> rules) {
+        Map<String, ComparisonMask> compiled = new HashMap<>();
+        for (Map.Entry<String, Object> template : rules.entrySet()) {
+            compiled.put(template.getKey(), compileTemplate(template.getKey(), asMap(template.getValue())));
+        }
+        ComparisonMask defaults = compiled.getOrDefault(DEFAULT_TEMPLATE, ComparisonMask.NONE);
+        compiled.replaceAll((template, mask) ->
+                template.equals(DEFAULT_TEMPLATE) ? mask : ComparisonMask.merge(defaults, mask));
+        return Map.copyOf(compiled);
+    }
+
+    private static ComparisonMask compileTemplate(String template, Map<String, Object> rules) {
+        List<Region> regions = new ArrayList<>();
+        for (Object entry : asList(rules.get("regions"))) {
+            Map<String, Object> region = asMap(entry);
+            Object page = region.get("page");
+            regions.add(new Region(page == null ? -1 : ((Number) page).intValue() - 1,
+                    number(template, region, "x"), number(template, region, "y"),
+                    number(template, region, "width"), number(template, region, "height")));
+        }
+
+        List<String> alternatives = new ArrayList<>();
+        for (Object entry : asList(rules.get("text"))) {
+            Map<String, Object> rule = asMap(entry);
+            String expression = rule.containsKey("token") ? Pattern.quote(String.valueOf(rule.get("token")))
+                    : String.valueOf(rule.get("regex"));
+            if (Boolean.TRUE.equals(rule.get("ignore-case"))) {
+                expression = "(?i:" + expression + ")";
+            }
+            alternatives.add("(?:" + expression + ")");
+        }
+        Pattern textPattern = null;
+        if (!alternatives.isEmpty()) {
+            try {
+                textPattern = Pattern.compile(String.join("|", alternatives));
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("Invalid text mask for template " + template, e);
+            }
+        }
+
+        Set<String> fonts = new HashSet<>();
+        for (Object font : asList(rules.get("fonts"))) {
+            fonts.add(ComparisonMask.baseFontName(String.valueOf(font)));
+        }
+        return new ComparisonMask(regions, textPattern, fonts);
+    }
+
+    private static float number(String template, Map<String, Object> region, String key) {
+        if (!(region.get(key) instanceof Number)) {
+            throw new IllegalArgumentException("Region of template " + template + " is missing " + key);
+        }
+        return ((Number) region.get(key)).floatValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(Object value) {
+        return value == null ? Map.of() : (Map<String, Object>) value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> asList(Object value) {
+        return value == null ? List.of() : (List<Object>) value;
+    }
+}
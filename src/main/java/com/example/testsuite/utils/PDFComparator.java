@@ -1,17 +1,12 @@
 package com.example.testsuite.utils;
 
 import lombok.extern.slf4j.Slf4j;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.rendering.PDFRenderer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.awt.*;
-import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
-import javax.imageio.ImageIO;
 
 @Slf4j
 @Component
@@ -19,11 +14,21 @@ public class PDFComparator {
 
     private final TextComparator textComparator;
     private final FontComparator fontComparator;
+    private final VisualComparator visualComparator;
+    private final GoldCopyCache goldCopyCache;
+    private final ParallelContentExtractor contentExtractor;
+    private final MaskRules maskRules;
 
     @Autowired
-    public PDFComparator(TextComparator textComparator, FontComparator fontComparator) {
+    public PDFComparator(TextComparator textComparator, FontComparator fontComparator,
+            VisualComparator visualComparator, GoldCopyCache goldCopyCache,
+            ParallelContentExtractor contentExtractor, MaskRules maskRules) {
         this.textComparator = textComparator;
         this.fontComparator = fontComparator;
+        this.visualComparator = visualComparator;
+        this.goldCopyCache = goldCopyCache;
+        this.contentExtractor = contentExtractor;
+        this.maskRules = maskRules;
     }
 
     /**
@@ -53,23 +58,48 @@ public class PDFComparator {
      */
     public ComparisonResult compare(File generatedPdf, File goldCopyPdf, File outputDir,
             TextComparator.ComparisonMode mode, boolean deepDetect) throws IOException {
+        return compare(generatedPdf, goldCopyPdf, outputDir, mode, deepDetect, MaskRules.DEFAULT_TEMPLATE);
+    }
+
+    /**
+     * Compare PDFs like {@link #compare(File, File, File, TextComparator.ComparisonMode, boolean)}, ignoring
+     * the regions, text and fonts masked for a policy template
+     * @param generatedPdf the generated PDF file
+     * @param goldCopyPdf the gold copy PDF file
+     * @param outputDir directory to save diff outputs
+     * @param mode the text comparison mode to use
+     * @param deepDetect when true, considers whitespace differences as changes
+     * @param template the policy template whose mask rules apply, such as the document type
+     * @return ComparisonResult containing all differences found
+     * @throws IOException if there's an error processing the PDFs
+     */
+    public ComparisonResult compare(File generatedPdf, File goldCopyPdf, File outputDir,
+            TextComparator.ComparisonMode mode, boolean deepDetect, String template) throws IOException {
         if (!outputDir.exists() && !outputDir.mkdirs()) {
             throw new IOException("Failed to create output directory: " + outputDir);
         }
 
         ComparisonResult result = new ComparisonResult();
-
-        // Visual comparison
-        File diffImage = new File(outputDir, "visual-diff.png");
-        result.setVisuallyIdentical(compareAndGenerateDiff(generatedPdf, goldCopyPdf, diffImage));
-        
-        // Text comparison with specified mode
-        List<TextComparator.TextDifference> textDiffs = textComparator.compareContent(generatedPdf, goldCopyPdf, mode, deepDetect);
-        result.setTextDifferences(textDiffs);
-        
-        // Font comparison
-        List<FontComparator.FontDifference> fontDiffs = fontComparator.compareFonts(generatedPdf, goldCopyPdf);
-        result.setFontDifferences(fontDiffs);
+        ComparisonMask mask = maskRules.forTemplate(template);
+
+        // Each PDF is read and parsed once and shared by all comparisons
+        try (ComparisonSession session = ComparisonSession.open(generatedPdf, goldCopyPdf, goldCopyCache,
+                contentExtractor)) {
+            // Visual comparison
+            File diffImage = new File(outputDir, "visual-diff.png");
+            VisualComparator.VisualResult visualResult = visualComparator.compareAndGenerateDiff(session, diffImage, mask);
+            result.setVisuallyIdentical(visualResult.isIdentical());
+            result.setVisualDifferences(visualResult.getRegions());
+            result.setPageDecisions(visualResult.getPageDecisions());
+
+            // Text comparison with specified mode
+            List<TextComparator.TextDifference> textDiffs = textComparator.compareContent(session, mode, deepDetect, mask);
+            result.setTextDifferences(textDiffs);
+
+            // Font comparison
+            List<FontComparator.FontDifference> fontDiffs = fontComparator.compareFonts(session, mask);
+            result.setFontDifferences(fontDiffs);
+        }
 
         // Generate report
         generateReport(result, new File(outputDir, "comparison-report.txt"));
@@ -77,81 +107,6 @@ public class PDFComparator {
         return result;
     }
 
-    private boolean compareAndGenerateDiff(File generatedPdf, File goldCopyPdf, File diffOutputFile) throws IOException {
-        try (PDDocument generatedDoc = PDDocument.load(generatedPdf);
-             PDDocument goldCopyDoc = PDDocument.load(goldCopyPdf)) {
-
-            if (generatedDoc.getNumberOfPages() != goldCopyDoc.getNumberOfPages()) {
-                log.warn("PDFs have different number of pages: Generated={}, GoldCopy={}",
-                        generatedDoc.getNumberOfPages(), goldCopyDoc.getNumberOfPages());
-                return false;
-            }
-
-            PDFRenderer generatedRenderer = new PDFRenderer(generatedDoc);
-            PDFRenderer goldCopyRenderer = new PDFRenderer(goldCopyDoc);
-
-            boolean differencesFound = false;
-
-            for (int page = 0; page < generatedDoc.getNumberOfPages(); page++) {
-                BufferedImage generatedImage = generatedRenderer.renderImageWithDPI(page, 300);
-                BufferedImage goldCopyImage = goldCopyRenderer.renderImageWithDPI(page, 300);
-
-                if (!compareImages(generatedImage, goldCopyImage)) {
-                    differencesFound = true;
-                    BufferedImage diffImage = generateVisualDiff(generatedImage, goldCopyImage);
-                    ImageIO.write(diffImage, "PNG", diffOutputFile);
-                    break; // Stop at first difference found
-                }
-            }
-
-            return !differencesFound;
-        }
-    }
-
-    private boolean compareImages(BufferedImage img1, BufferedImage img2) {
-        if (img1.getWidth() != img2.getWidth() || img1.getHeight() != img2.getHeight()) {
-            return false;
-        }
-
-        for (int x = 0; x < img1.getWidth(); x++) {
-            for (int y = 0; y < img1.getHeight(); y++) {
-                if (img1.getRGB(x, y) != img2.getRGB(x, y)) {
-                    return false;
-                }
-            }
-        }
-        return true;
-    }
-
-    private BufferedImage generateVisualDiff(BufferedImage img1, BufferedImage img2) {
-        int width = Math.max(img1.getWidth(), img2.getWidth());
-        int height = Math.max(img1.getHeight(), img2.getHeight());
-
-        BufferedImage diffImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2d = diffImage.createGraphics();
-
-        // Draw the first image as the base
-        g2d.drawImage(img1, 0, 0, null);
-
-        // Set up for drawing differences
-        g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.5f));
-        g2d.setColor(Color.RED);
-
-        // Draw only the different pixels in red
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                if (x < img1.getWidth() && y < img1.getHeight() &&
-                    x < img2.getWidth() && y < img2.getHeight() &&
-                    img1.getRGB(x, y) != img2.getRGB(x, y)) {
-                    g2d.fillRect(x, y, 1, 1);
-                }
-            }
-        }
-        g2d.dispose();
-
-        return diffImage;
-    }
-
     private void generateReport(ComparisonResult result, File reportFile) throws IOException {
         StringBuilder report = new StringBuilder();
         report.append("PDF Comparison Report\n")
@@ -159,8 +114,14 @@ public class PDFComparator {
 
         // Visual differences
         report.append("Visual Comparison:\n")
-              .append(result.isVisuallyIdentical() ? "No visual differences found\n" : "Visual differences found\n")
-              .append("\n");
+              .append(result.isVisuallyIdentical() ? "No visual differences found\n" : "Visual differences found\n");
+        for (ImageDiffer.DiffRegion region : result.getVisualDifferences()) {
+            report.append(region.toString()).append("\n");
+        }
+        for (VisualComparator.PageDecision decision : result.getPageDecisions()) {
+            report.append(decision.toString()).append("\n");
+        }
+        report.append("\n");
 
         // Text differences
         report.append("Text Differences:\n");
@@ -189,16 +150,26 @@ public class PDFComparator {
 
     public static class ComparisonResult {
         private boolean visuallyIdentical;
+        private List<ImageDiffer.DiffRegion> visualDifferences = List.of();
+        private List<VisualComparator.PageDecision> pageDecisions = List.of();
         private List<TextComparator.TextDifference> textDifferences;
         private List<FontComparator.FontDifference> fontDifferences;
 
         public boolean isVisuallyIdentical() { return visuallyIdentical; }
+        public List<ImageDiffer.DiffRegion> getVisualDifferences() { return visualDifferences; }
+        public List<VisualComparator.PageDecision> getPageDecisions() { return pageDecisions; }
         public List<TextComparator.TextDifference> getTextDifferences() { return textDifferences; }
         public List<FontComparator.FontDifference> getFontDifferences() { return fontDifferences; }
 
         public void setVisuallyIdentical(boolean visuallyIdentical) { 
             this.visuallyIdentical = visuallyIdentical; 
         }
+        public void setVisualDifferences(List<ImageDiffer.DiffRegion> visualDifferences) {
+            this.visualDifferences = visualDifferences;
+        }
+        public void setPageDecisions(List<VisualComparator.PageDecision> pageDecisions) {
+            this.pageDecisions = pageDecisions;
+        }
         public void setTextDifferences(List<TextComparator.TextDifference> textDifferences) { 
             this.textDifferences = textDifferences; 
         }
@@ -0,0 +1,198 @@
+package com.example.testsuite.utils;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSBoolean;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSFloat;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes a SHA-256 digest of everything that determines how a page renders: its decoded content
+ * streams, the resources it references (fonts, XObjects, images, patterns, ...), its annotations and
+ * its page boxes and rotation. Two pages with equal digests render identically, so their rasters do not
+ * need to be compared.
+ * <p>
+ * Object numbers and stream filters are ignored, so re-saving or re-compressing a document does not
+ * change the digest. An instance caches stream digests and must only be used for a single document,
+ * from a single thread; shared resources such as embedded fonts are then only hashed once.
+ */
+public class PageDigester {
+
+    /** Back-references to the page tree that would otherwise pull every other page into the digest */
+    private static final Set<COSName> IGNORED_KEYS = Set.of(COSName.PARENT, COSName.P);
+    /** Stream keys that only describe the encoding of data that is hashed in decoded form */
+    private static final Set<COSName> ENCODING_KEYS = Set.of(COSName.LENGTH, COSName.FILTER, COSName.DECODE_PARMS);
+
+    private final Map<COSStream, byte[]> streamDigests = new IdentityHashMap<>();
+    private final Map<COSBase, Boolean> inProgress = new IdentityHashMap<>();
+    private final byte[] buffer = new byte[8192];
+
+    /**
+     * Computes the render digest of a page
+     * @param page the page to digest
+     * @return the SHA-256 digest
+     * @throws IOException if a stream of the page cannot be decoded
+     */
+    public byte[] digest(PDPage page) throws IOException {
+        MessageDigest digest = newDigest();
+        updateRectangle(digest, page.getMediaBox());
+        updateRectangle(digest, page.getCropBox());
+        updateLong(digest, page.getRotation());
+
+        digest.update((byte) 'C');
+        if (page.hasContents()) {
+            try (InputStream contents = page.getContents()) {
+                updateStream(digest, contents);
+            }
+        }
+
+        digest.update((byte) 'R');
+        if (page.getResources() != null) {
+            update(digest, page.getResources().getCOSObject());
+        }
+        digest.update((byte) 'A');
+        update(digest, page.getCOSObject().getDictionaryObject(COSName.ANNOTS));
+        return digest.digest();
+    }
+
+    private void update(MessageDigest digest, COSBase base) throws IOException {
+        if (base instanceof COSObject) {
+            base = ((COSObject) base).getObject();
+        }
+
+        if (base == null) {
+            digest.update((byte) 'n');
+        } else if (base instanceof COSStream) {
+            digest.update((byte) 'S');
+            digest.update(streamDigest((COSStream) base));
+        } else if (base instanceof COSDictionary) {
+            updateDictionary(digest, (COSDictionary) base, IGNORED_KEYS);
+        } else if (base instanceof COSArray) {
+            if (inProgress.put(base, Boolean.TRUE) != null) {
+                digest.update((byte) 'r'); // Cyclic reference
+                return;
+            }
+            COSArray array = (COSArray) base;
+            digest.update((byte) '[');
+            updateLong(digest, array.size());
+            for (int i = 0; i < array.size(); i++) {
+                update(digest, array.get(i));
+            }
+            inProgress.remove(base);
+        } else if (base instanceof COSName) {
+            digest.update((byte) '/');
+            updateString(digest, ((COSName) base).getName());
+        } else if (base instanceof COSString) {
+            byte[] bytes = ((COSString) base).getBytes();
+            digest.update((byte) '(');
+            updateLong(digest, bytes.length);
+            digest.update(bytes);
+        } else if (base instanceof COSInteger) {
+            digest.update((byte) 'i');
+            updateLong(digest, ((COSInteger) base).longValue());
+        } else if (base instanceof COSFloat) {
+            digest.update((byte) 'f');
+            updateLong(digest, Float.floatToIntBits(((COSFloat) base).floatValue()));
+        } else if (base instanceof COSBoolean) {
+            digest.update((byte) (((COSBoolean) base).getValue() ? 'T' : 'F'));
+        } else {
+            digest.update((byte) '0');
+        }
+    }
+
+    private void updateDictionary(MessageDigest digest, COSDictionary dictionary, Set<COSName> skippedKeys)
+            throws IOException {
+        if (inProgress.put(dictionary, Boolean.TRUE) != null) {
+            digest.update((byte) 'r'); // Cyclic reference
+            return;
+        }
+
+        // Dictionary entries are unordered, so hash them sorted by key
+        List<COSName> keys = new ArrayList<>(dictionary.keySet());
+        keys.sort(null);
+        digest.update((byte) '<');
+        for (COSName key : keys) {
+            if (IGNORED_KEYS.contains(key) || skippedKeys.contains(key)) {
+                continue;
+            }
+            updateString(digest, key.getName());
+            update(digest, dictionary.getItem(key));
+        }
+        digest.update((byte) '>');
+        inProgress.remove(dictionary);
+    }
+
+    private byte[] streamDigest(COSStream stream) throws IOException {
+        byte[] cached = streamDigests.get(stream);
+        if (cached != null) {
+            return cached;
+        }
+        if (inProgress.containsKey(stream)) {
+            return new byte[] {'r'}; // Cyclic reference, e.g. a form XObject drawing itself
+        }
+
+        MessageDigest digest = newDigest();
+        updateDictionary(digest, stream, ENCODING_KEYS);
+        inProgress.put(stream, Boolean.TRUE);
+        try (InputStream data = stream.createInputStream()) {
+            updateStream(digest, data);
+        } finally {
+            inProgress.remove(stream);
+        }
+        byte[] result = digest.digest();
+        streamDigests.put(stream, result);
+        return result;
+    }
+
+    private void updateStream(MessageDigest digest, InputStream data) throws IOException {
+        int read;
+        while ((read = data.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+    }
+
+    private void updateRectangle(MessageDigest digest, PDRectangle rectangle) {
+        updateLong(digest, Float.floatToIntBits(rectangle.getLowerLeftX()));
+        updateLong(digest, Float.floatToIntBits(rectangle.getLowerLeftY()));
+        updateLong(digest, Float.floatToIntBits(rectangle.getUpperRightX()));
+        updateLong(digest, Float.floatToIntBits(rectangle.getUpperRightY()));
+    }
+
+    private void updateString(MessageDigest digest, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        updateLong(digest, bytes.length);
+        digest.update(bytes);
+    }
+
+    private void updateLong(MessageDigest digest, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            digest.update((byte) (value >>> shift));
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
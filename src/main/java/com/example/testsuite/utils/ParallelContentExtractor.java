@@ -0,0 +1,133 @@
+package com.example.testsuite.utils;
+
+import com.example.testsuite.utils.ComparisonSession.SessionDocument;
+import com.example.testsuite.utils.DocumentContentExtractor.ExtractedContent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Extracts the text and font runs of a document on several threads. The pages are split into contiguous
+ * ranges, and each range is extracted by its own DocumentContentExtractor limited to the range with
+ * setStartPage/setEndPage. The calling thread extracts the first range from the session's document;
+ * the other workers parse their own copy, since PDFBox documents are not thread-safe.
+ * The joined result is the same as that of a single extractor over the whole document.
+ */
+@Slf4j
+@Component
+public class ParallelContentExtractor {
+
+    @Value("${document.compare.text.parallelism:0}")
+    private int parallelism;
+
+    @Value("${document.compare.text.min-pages-per-worker:4}")
+    private int minPagesPerWorker;
+
+    private ExecutorService extractionPool;
+
+    @PostConstruct
+    void init() {
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        // The calling thread always extracts one range itself, so the pool only needs the rest
+        if (parallelism > 1) {
+            AtomicInteger threadCount = new AtomicInteger();
+            extractionPool = Executors.newFixedThreadPool(parallelism - 1, runnable -> {
+                Thread thread = new Thread(runnable, "text-extract-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        log.debug("Text extraction configured with parallelism {} and at least {} pages per worker",
+                parallelism, minPagesPerWorker);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (extractionPool != null) {
+            extractionPool.shutdownNow();
+        }
+    }
+
+    /**
+     * Extracts the content of a session document, spreading its pages over the configured number of workers
+     * @param document the document to extract
+     * @return the extracted content
+     * @throws IOException if the document cannot be processed
+     */
+    public ExtractedContent extract(SessionDocument document) throws IOException {
+        PDDocument sharedDocument = document.getDocument();
+        int pageCount = sharedDocument.getNumberOfPages();
+        int workers = extractionPool == null ? 1
+                : Math.max(1, Math.min(parallelism, pageCount / Math.max(1, minPagesPerWorker)));
+        if (workers == 1) {
+            return new DocumentContentExtractor().extract(sharedDocument);
+        }
+
+        // Read on this thread: the caller may hold the session document's lock while waiting for the workers
+        byte[] bytes = document.getBytes();
+        List<Future<ExtractedContent>> futures = new ArrayList<>();
+        for (int worker = 1; worker < workers; worker++) {
+            int firstPage = firstPage(worker, workers, pageCount);
+            int lastPage = firstPage(worker + 1, workers, pageCount) - 1;
+            futures.add(extractionPool.submit(() -> {
+                try (PDDocument workerDocument = PDDocument.load(bytes)) {
+                    return extractRange(workerDocument, firstPage, lastPage);
+                }
+            }));
+        }
+
+        try {
+            List<ExtractedContent> parts = new ArrayList<>();
+            parts.add(extractRange(sharedDocument, 1, firstPage(1, workers, pageCount) - 1));
+            for (Future<ExtractedContent> future : futures) {
+                parts.add(await(future));
+            }
+            return ExtractedContent.concat(parts);
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    /**
+     * @return one-based number of the first page of a worker's range
+     */
+    private static int firstPage(int worker, int workers, int pageCount) {
+        return (int) ((long) pageCount * worker / workers) + 1;
+    }
+
+    private static ExtractedContent extractRange(PDDocument document, int firstPage, int lastPage)
+            throws IOException {
+        DocumentContentExtractor extractor = new DocumentContentExtractor();
+        extractor.setStartPage(firstPage);
+        extractor.setEndPage(lastPage);
+        return extractor.extract(document);
+    }
+
+    private static ExtractedContent await(Future<ExtractedContent> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for text extraction", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Text extraction failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.testsuite.utils;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+/**
+ * Compares rendered page images by scanning their backing arrays row-major in bulk.
+ * PDFRenderer produces TYPE_INT_RGB or TYPE_BYTE_GRAY images whose pixels sit in a single
+ * contiguous array, so a whole page can be compared with one Arrays.mismatch call instead of
+ * one getRGB call per pixel. Other image layouts fall back to comparing one row at a time.
+ */
+public final class RasterComparator {
+
+    private static final int RGB_MASK = 0x00FFFFFF;
+
+    private RasterComparator() {
+    }
+
+    /**
+     * Finds the first pixel, in row-major order, that differs between two images
+     * @param img1 the first image
+     * @param img2 the second image
+     * @return coordinates of the first differing pixel, or null if the images are identical
+     */
+    public static Point findFirstMismatch(BufferedImage img1, BufferedImage img2) {
+        if (img1.getWidth() != img2.getWidth() || img1.getHeight() != img2.getHeight()) {
+            return new Point(0, 0);
+        }
+
+        int width = img1.getWidth();
+        int index = img1.getType() == img2.getType() ? mismatchInBackingArrays(img1, img2) : -2;
+        if (index == -2) {
+            return mismatchByRows(img1, img2);
+        }
+        return index < 0 ? null : new Point(index % width, index / width);
+    }
+
+    /**
+     * @return index of the first differing pixel, -1 if identical, or -2 if the images are not backed
+     * by a contiguous array that can be compared directly
+     */
+    private static int mismatchInBackingArrays(BufferedImage img1, BufferedImage img2) {
+        if (!isContiguous(img1) || !isContiguous(img2)) {
+            return -2;
+        }
+
+        int length = img1.getWidth() * img1.getHeight();
+        DataBuffer buffer1 = img1.getRaster().getDataBuffer();
+        DataBuffer buffer2 = img2.getRaster().getDataBuffer();
+        int offset1 = buffer1.getOffset();
+        int offset2 = buffer2.getOffset();
+
+        if (buffer1 instanceof DataBufferInt && buffer2 instanceof DataBufferInt) {
+            int[] pixels1 = ((DataBufferInt) buffer1).getData();
+            int[] pixels2 = ((DataBufferInt) buffer2).getData();
+            // TYPE_INT_RGB leaves the top byte undefined, so only a difference in the low 24 bits counts
+            int mask = img1.getType() == BufferedImage.TYPE_INT_RGB ? RGB_MASK : -1;
+            int from = 0;
+            while (from < length) {
+                int index = Arrays.mismatch(pixels1, offset1 + from, offset1 + length,
+                        pixels2, offset2 + from, offset2 + length);
+                if (index < 0) {
+                    return -1;
+                }
+                int pixel = from + index;
+                if (((pixels1[offset1 + pixel] ^ pixels2[offset2 + pixel]) & mask) != 0) {
+                    return pixel;
+                }
+                from = pixel + 1;
+            }
+            return -1;
+        }
+
+        if (buffer1 instanceof DataBufferByte && buffer2 instanceof DataBufferByte
+                && img1.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            byte[] pixels1 = ((DataBufferByte) buffer1).getData();
+            byte[] pixels2 = ((DataBufferByte) buffer2).getData();
+            return Arrays.mismatch(pixels1, offset1, offset1 + length, pixels2, offset2, offset2 + length);
+        }
+
+        return -2;
+    }
+
+    /**
+     * Checks that the image stores exactly one pixel per array element, with no row padding and no
+     * parent raster offset
+     */
+    private static boolean isContiguous(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        if (raster.getParent() != null || raster.getSampleModelTranslateX() != 0
+                || raster.getSampleModelTranslateY() != 0 || raster.getDataBuffer().getNumBanks() != 1) {
+            return false;
+        }
+
+        SampleModel sampleModel = raster.getSampleModel();
+        if (sampleModel instanceof SinglePixelPackedSampleModel) {
+            return ((SinglePixelPackedSampleModel) sampleModel).getScanlineStride() == image.getWidth();
+        }
+        if (sampleModel instanceof ComponentSampleModel) {
+            ComponentSampleModel componentModel = (ComponentSampleModel) sampleModel;
+            return componentModel.getNumBands() == 1
+                    && componentModel.getPixelStride() == 1
+                    && componentModel.getScanlineStride() == image.getWidth();
+        }
+        return false;
+    }
+
+    /**
+     * Returns the pixels of an image as packed RGB ints in row-major order. Contiguous int images are
+     * returned without copying, so callers must not modify the array.
+     * @param image the image to read
+     * @return an array of width * height pixels
+     */
+    static int[] rgbPixels(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        if (buffer instanceof DataBufferInt && buffer.getOffset() == 0 && isContiguous(image)
+                && (image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_INT_ARGB)) {
+            return ((DataBufferInt) buffer).getData();
+        }
+        int width = image.getWidth();
+        return image.getRGB(0, 0, width, image.getHeight(), null, 0, width);
+    }
+
+    private static Point mismatchByRows(BufferedImage img1, BufferedImage img2) {
+        int width = img1.getWidth();
+        int[] row1 = new int[width];
+        int[] row2 = new int[width];
+
+        for (int y = 0; y < img1.getHeight(); y++) {
+            img1.getRGB(0, y, width, 1, row1, 0, width);
+            img2.getRGB(0, y, width, 1, row2, 0, width);
+            int x = Arrays.mismatch(row1, row2);
+            if (x >= 0) {
+                return new Point(x, y);
+            }
+        }
+        return null;
+    }
+}
@@ -1,8 +1,8 @@
 package com.example.testsuite.utils;
 
+import com.example.testsuite.utils.DocumentContentExtractor.ExtractedContent;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
@@ -14,9 +14,20 @@ import java.util.List;
 @Component
 public class TextComparator {
 
+    private final GoldCopyCache goldCopyCache;
+    private final ParallelContentExtractor contentExtractor;
+
+    @Autowired
+    public TextComparator(GoldCopyCache goldCopyCache, ParallelContentExtractor contentExtractor) {
+        this.goldCopyCache = goldCopyCache;
+        this.contentExtractor = contentExtractor;
+    }
+
     public enum ComparisonMode {
         LINE_BY_LINE,
-        WHOLE_DOCUMENT
+        WHOLE_DOCUMENT,
+        /** Minimal line diff, so inserted or removed lines don't shift every following line */
+        SEQUENCE_DIFF
     }
 
     /**
@@ -30,17 +41,43 @@ public class TextComparator {
      */
     public List<TextDifference> compareContent(File generatedPdf, File goldCopyPdf,
             ComparisonMode mode, boolean deepDetect) throws IOException {
-        try (PDDocument generatedDoc = PDDocument.load(generatedPdf);
-             PDDocument goldCopyDoc = PDDocument.load(goldCopyPdf)) {
+        try (ComparisonSession session = ComparisonSession.open(generatedPdf, goldCopyPdf, goldCopyCache,
+                contentExtractor)) {
+            return compareContent(session, mode, deepDetect);
+        }
+    }
 
-            PDFTextStripper stripper = new PDFTextStripper();
-            String generatedText = stripper.getText(generatedDoc);
-            String goldCopyText = stripper.getText(goldCopyDoc);
+    /**
+     * Compares the text a ComparisonSession extracted from both PDFs using the specified comparison mode
+     * @param session the session holding both documents
+     * @param mode the comparison mode to use
+     * @param deepDetect when true, considers whitespace differences as changes
+     * @return List of text differences found
+     * @throws IOException if there's an error processing the PDFs
+     */
+    public List<TextDifference> compareContent(ComparisonSession session, ComparisonMode mode,
+            boolean deepDetect) throws IOException {
+        return compareContent(session, mode, deepDetect, ComparisonMask.NONE);
+    }
 
-            return mode == ComparisonMode.LINE_BY_LINE ?
-                findLineByLineDifferences(generatedText, goldCopyText, deepDetect) :
-                findDocumentDifferences(generatedText, goldCopyText, deepDetect);
-        }
+    /**
+     * Compares the text of both PDFs after replacing everything the mask's text patterns match with a
+     * placeholder, so masked values never show up as differences
+     * @param session the session holding both documents
+     * @param mode the comparison mode to use
+     * @param deepDetect when true, considers whitespace differences as changes
+     * @param mask text patterns to ignore
+     * @return List of text differences found
+     * @throws IOException if there's an error processing the PDFs
+     */
+    public List<TextDifference> compareContent(ComparisonSession session, ComparisonMode mode,
+            boolean deepDetect, ComparisonMask mask) throws IOException {
+        ExtractedContent generated = mask.maskText(session.getGenerated().getContent());
+        ExtractedContent goldCopy = mask.maskText(session.getGoldCopy().getContent());
+
+        return mode == ComparisonMode.WHOLE_DOCUMENT ?
+            findDocumentDifferences(generated, goldCopy, deepDetect) :
+            findPageDifferences(generated, goldCopy, mode, deepDetect);
     }
 
     /**
@@ -52,15 +89,7 @@ public class TextComparator {
      * @throws IOException if there's an error processing the PDFs
      */
     public List<TextDifference> compareContent(File generatedPdf, File goldCopyPdf, boolean deepDetect) throws IOException {
-        try (PDDocument generatedDoc = PDDocument.load(generatedPdf);
-             PDDocument goldCopyDoc = PDDocument.load(goldCopyPdf)) {
-
-            PDFTextStripper stripper = new PDFTextStripper();
-            String generatedText = stripper.getText(generatedDoc);
-            String goldCopyText = stripper.getText(goldCopyDoc);
-
-            return findLineByLineDifferences(generatedText, goldCopyText, deepDetect);
-        }
+        return compareContent(generatedPdf, goldCopyPdf, ComparisonMode.LINE_BY_LINE, deepDetect);
     }
 
     /**
@@ -70,93 +99,190 @@ public class TextComparator {
         return compareContent(generatedPdf, goldCopyPdf, false);
     }
 
-    private List<TextDifference> findLineByLineDifferences(String text1, String text2, boolean deepDetect) {
+    /**
+     * Compares the lines of both documents page by page, so that every difference carries its page and
+     * pages with identical text are skipped without looking at their lines. Line numbers still count from
+     * the start of the document.
+     */
+    private List<TextDifference> findPageDifferences(ExtractedContent generated, ExtractedContent goldCopy,
+            ComparisonMode mode, boolean deepDetect) {
         List<TextDifference> differences = new ArrayList<>();
-        String[] lines1 = text1.split("\\r?\\n");
-        String[] lines2 = text2.split("\\r?\\n");
+        // Equal lines get equal ids, so the sequence diff only compares ints
+        TextLines.Interner interner = new TextLines.Interner(deepDetect);
+        int lines1 = 0, lines2 = 0;
 
-        int i = 0, j = 0;
-        while (i < lines1.length && j < lines2.length) {
-            String line1 = deepDetect ? lines1[i] : normalizeWhitespace(lines1[i]);
-            String line2 = deepDetect ? lines2[j] : normalizeWhitespace(lines2[j]);
+        int pageCount = Math.max(generated.getPageCount(), goldCopy.getPageCount());
+        for (int page = 0; page < pageCount; page++) {
+            if (!hasSamePageText(generated, goldCopy, page)) {
+                if (mode == ComparisonMode.LINE_BY_LINE) {
+                    findLineByLineDifferences(pageLines(generated, page, lines1), pageLines(goldCopy, page, lines2),
+                            page, deepDetect, differences);
+                } else {
+                    findSequenceDifferences(generated, goldCopy, page, lines1, lines2, interner, differences);
+                }
+            }
+            lines1 = lineCount(generated, page, lines1);
+            lines2 = lineCount(goldCopy, page, lines2);
+        }
+        return differences;
+    }
 
-            if (!line1.equals(line2)) {
+    private void findLineByLineDifferences(TextLines.Cursor lines1, TextLines.Cursor lines2, int page,
+            boolean deepDetect, List<TextDifference> differences) {
+        boolean hasLine1 = lines1.next();
+        boolean hasLine2 = lines2.next();
+        while (hasLine1 && hasLine2) {
+            if (!TextLines.equals(lines1.text(), lines1.start(), lines1.end(),
+                    lines2.text(), lines2.start(), lines2.end(), deepDetect)) {
                 differences.add(new TextDifference(
-                    i + 1,
-                    j + 1,
-                    lines1[i],
-                    lines2[j],
-                    TextDifference.DiffType.MODIFIED
+                    lines1.lineNumber(),
+                    lines2.lineNumber(),
+                    lines1.line(),
+                    lines2.line(),
+                    TextDifference.DiffType.MODIFIED,
+                    -1, -1, page, page
                 ));
             }
-            i++;
-            j++;
+            hasLine1 = lines1.next();
+            hasLine2 = lines2.next();
         }
 
-        // Handle remaining lines in either document
-        while (i < lines1.length) {
+        // Handle remaining lines of the page in either document
+        for (; hasLine1; hasLine1 = lines1.next()) {
             differences.add(new TextDifference(
-                i + 1,
+                lines1.lineNumber(),
                 -1,
-                lines1[i],
+                lines1.line(),
                 "",
-                TextDifference.DiffType.ADDED
+                TextDifference.DiffType.ADDED,
+                -1, -1, page, -1
             ));
-            i++;
         }
 
-        while (j < lines2.length) {
+        for (; hasLine2; hasLine2 = lines2.next()) {
             differences.add(new TextDifference(
                 -1,
-                j + 1,
+                lines2.lineNumber(),
                 "",
-                lines2[j],
-                TextDifference.DiffType.DELETED
+                lines2.line(),
+                TextDifference.DiffType.DELETED,
+                -1, -1, -1, page
             ));
-            j++;
         }
-
-        return differences;
     }
 
-    private List<TextDifference> findDocumentDifferences(String text1, String text2, boolean deepDetect) {
-        String doc1 = deepDetect ? text1 : normalizeWhitespace(text1);
-        String doc2 = deepDetect ? text2 : normalizeWhitespace(text2);
+    /**
+     * Diffs the lines of a page and reports each hunk's lines: replaced lines pairwise as MODIFIED,
+     * and the surplus of either side as ADDED or DELETED
+     */
+    private void findSequenceDifferences(ExtractedContent generated, ExtractedContent goldCopy, int page,
+            int lines1, int lines2, TextLines.Interner interner, List<TextDifference> differences) {
+        int[] ids1 = interner.internLines(pageLines(generated, page, lines1));
+        int[] ids2 = interner.internLines(pageLines(goldCopy, page, lines2));
 
-        List<TextDifference> differences = new ArrayList<>();
-        if (!doc1.equals(doc2)) {
-            // Find the first differing character position
-            int pos = 0;
-            while (pos < doc1.length() && pos < doc2.length() && doc1.charAt(pos) == doc2.charAt(pos)) {
-                pos++;
+        // Hunks are ordered, so a second pass over the page picks up the lines to report
+        TextLines.Cursor cursor1 = pageLines(generated, page, lines1);
+        TextLines.Cursor cursor2 = pageLines(goldCopy, page, lines2);
+        for (LineDiff.Hunk hunk : LineDiff.diff(ids1, ids2)) {
+            int i = lines1 + hunk.getAStart();
+            int j = lines2 + hunk.getBStart();
+            int end1 = lines1 + hunk.getAEnd();
+            int end2 = lines2 + hunk.getBEnd();
+            while (i < end1 && j < end2) {
+                differences.add(new TextDifference(i + 1, j + 1, lineAt(cursor1, i), lineAt(cursor2, j),
+                        TextDifference.DiffType.MODIFIED, -1, -1, page, page));
+                i++;
+                j++;
+            }
+            for (; i < end1; i++) {
+                differences.add(new TextDifference(i + 1, -1, lineAt(cursor1, i), "",
+                        TextDifference.DiffType.ADDED, -1, -1, page, -1));
             }
+            for (; j < end2; j++) {
+                differences.add(new TextDifference(-1, j + 1, "", lineAt(cursor2, j),
+                        TextDifference.DiffType.DELETED, -1, -1, -1, page));
+            }
+        }
+    }
 
-            // Extract context around the difference
-            int contextStart = Math.max(0, pos - 50);
-            int contextEnd1 = Math.min(doc1.length(), pos + 50);
-            int contextEnd2 = Math.min(doc2.length(), pos + 50);
+    private boolean hasSamePageText(ExtractedContent generated, ExtractedContent goldCopy, int page) {
+        if (page >= generated.getPageCount() || page >= goldCopy.getPageCount()) {
+            return false;
+        }
+        int start1 = generated.getPageStart(page);
+        int start2 = goldCopy.getPageStart(page);
+        int length = generated.getPageEnd(page) - start1;
+        return length == goldCopy.getPageEnd(page) - start2
+                && generated.getText().regionMatches(start1, goldCopy.getText(), start2, length);
+    }
+
+    /**
+     * @param linesBefore number of lines of the document before the page
+     * @return a cursor over the lines of a page, which has none if the document is shorter
+     */
+    private TextLines.Cursor pageLines(ExtractedContent content, int page, int linesBefore) {
+        return page < content.getPageCount()
+                ? new TextLines.Cursor(content.getText(), content.getPageStart(page), content.getPageEnd(page), linesBefore)
+                : new TextLines.Cursor(content.getText(), 0, 0, linesBefore);
+    }
 
-            String context1 = doc1.substring(contextStart, contextEnd1);
-            String context2 = doc2.substring(contextStart, contextEnd2);
+    /**
+     * @return number of lines of the document up to and including a page
+     */
+    private int lineCount(ExtractedContent content, int page, int linesBefore) {
+        TextLines.Cursor lines = pageLines(content, page, linesBefore);
+        while (lines.next()) {
+            // Only counting
+        }
+        return lines.lineNumber();
+    }
+
+    /**
+     * Moves a cursor forward to a zero-based line index and returns that line
+     */
+    private String lineAt(TextLines.Cursor cursor, int index) {
+        while (cursor.lineNumber() <= index) {
+            cursor.next();
+        }
+        return cursor.line();
+    }
+
+    /**
+     * Compares the texts as a whole and reports every differing region with its character offsets and
+     * pages. Offsets refer to the compared text, i.e. the normalized text unless deepDetect is set.
+     */
+    private List<TextDifference> findDocumentDifferences(ExtractedContent generated, ExtractedContent goldCopy,
+            boolean deepDetect) {
+        int[] pageEnds1 = generated.getPageEnds();
+        int[] pageEnds2 = goldCopy.getPageEnds();
+        String doc1 = deepDetect ? generated.getText() : normalizeWhitespace(generated.getText(), pageEnds1);
+        String doc2 = deepDetect ? goldCopy.getText() : normalizeWhitespace(goldCopy.getText(), pageEnds2);
+
+        List<TextDifference> differences = new ArrayList<>();
+        for (LineDiff.Hunk hunk : AnchoredDiff.diff(doc1, doc2)) {
+            String text1 = doc1.substring(hunk.getAStart(), hunk.getAEnd());
+            String text2 = doc2.substring(hunk.getBStart(), hunk.getBEnd());
+            TextDifference.DiffType type = text2.isEmpty() ? TextDifference.DiffType.ADDED
+                    : text1.isEmpty() ? TextDifference.DiffType.DELETED
+                    : TextDifference.DiffType.MODIFIED;
 
             differences.add(new TextDifference(
                 0, // Use 0 for whole document comparison
                 0,
-                context1,
-                context2,
-                TextDifference.DiffType.MODIFIED
+                text1,
+                text2,
+                type,
+                hunk.getAStart(),
+                hunk.getBStart(),
+                ExtractedContent.pageAt(pageEnds1, hunk.getAStart()),
+                ExtractedContent.pageAt(pageEnds2, hunk.getBStart())
             ));
         }
         return differences;
     }
 
-    /**
-     * Normalizes whitespace in a string by:
-     * 1. Trimming leading/trailing whitespace
-     * 2. Replacing multiple spaces between words with a single space
-     */
-    private String normalizeWhitespace(String text) {
-        return text.trim().replaceAll("\\s+", " ");
+    private String normalizeWhitespace(String text, int[] pageEnds) {
+        return TextLines.normalizeWhitespace(text, 0, text.length(), pageEnds);
     }
 
     public static class TextDifference {
@@ -169,14 +295,34 @@ public class TextComparator {
         private final String generatedText;
         private final String goldCopyText;
         private final DiffType type;
+        private final int generatedOffset;
+        private final int goldCopyOffset;
+        private final int generatedPage;
+        private final int goldCopyPage;
 
         public TextDifference(int generatedLine, int goldCopyLine, String generatedText, 
                             String goldCopyText, DiffType type) {
+            this(generatedLine, goldCopyLine, generatedText, goldCopyText, type, -1, -1, -1, -1);
+        }
+
+        /**
+         * @param generatedOffset character offset of the difference in the generated text, or -1 if unknown
+         * @param goldCopyOffset character offset of the difference in the gold copy text, or -1 if unknown
+         * @param generatedPage zero-based page of the difference in the generated PDF, or -1 if unknown
+         * @param goldCopyPage zero-based page of the difference in the gold copy, or -1 if unknown
+         */
+        public TextDifference(int generatedLine, int goldCopyLine, String generatedText, String goldCopyText,
+                            DiffType type, int generatedOffset, int goldCopyOffset, int generatedPage,
+                            int goldCopyPage) {
             this.generatedLine = generatedLine;
             this.goldCopyLine = goldCopyLine;
             this.generatedText = generatedText;
             this.goldCopyText = goldCopyText;
             this.type = type;
+            this.generatedOffset = generatedOffset;
+            this.goldCopyOffset = goldCopyOffset;
+            this.generatedPage = generatedPage;
+            this.goldCopyPage = goldCopyPage;
         }
 
         public int getGeneratedLine() { return generatedLine; }
@@ -184,9 +330,21 @@ public class TextComparator {
         public String getGeneratedText() { return generatedText; }
         public String getGoldCopyText() { return goldCopyText; }
         public DiffType getType() { return type; }
+        public int getGeneratedOffset() { return generatedOffset; }
+        public int getGoldCopyOffset() { return goldCopyOffset; }
+        public int getGeneratedPage() { return generatedPage; }
+        public int getGoldCopyPage() { return goldCopyPage; }
 
         @Override
         public String toString() {
+            if (generatedOffset >= 0) {
+                return toLocatedString();
+            }
+            int page = type == DiffType.DELETED ? goldCopyPage : generatedPage;
+            return page >= 0 ? String.format("Page %d, %s", page + 1, toLineString()) : toLineString();
+        }
+
+        private String toLineString() {
             switch (type) {
                 case ADDED:
                     return String.format("Line %d: Added \"%s\"", generatedLine, generatedText);
@@ -199,5 +357,22 @@ public class TextComparator {
                     return "Unknown difference type";
             }
         }
+
+        private String toLocatedString() {
+            switch (type) {
+                case ADDED:
+                    return String.format("Page %d, offset %d: Added \"%s\"",
+                            generatedPage + 1, generatedOffset, generatedText);
+                case DELETED:
+                    return String.format("Page %d, offset %d: Deleted \"%s\"",
+                            goldCopyPage + 1, goldCopyOffset, goldCopyText);
+                case MODIFIED:
+                    return String.format("Page %d vs %d, offset %d vs %d: Changed from \"%s\" to \"%s\"",
+                            goldCopyPage + 1, generatedPage + 1, goldCopyOffset, generatedOffset,
+                            goldCopyText, generatedText);
+                default:
+                    return "Unknown difference type";
+            }
+        }
     }
 }
\ No newline at end of file
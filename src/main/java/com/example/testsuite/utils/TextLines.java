@@ -0,0 +1,329 @@
+package com.example.testsuite.utils;
+
+import java.util.Arrays;
+
+/**
+ * Allocation-free line handling for extracted text. Lines are scanned in place as offset ranges of the
+ * original CharSequence, and whitespace normalization is applied on the fly while hashing and comparing,
+ * so neither a String per line nor a normalized copy of the text is created. Only lines that end up in a
+ * report are turned into Strings.
+ * <p>
+ * Normalization is equivalent to {@code line.trim().replaceAll("\\s+", " ")}: characters up to U+0020 are
+ * trimmed from both ends and every run of {@code [ \t\n\x0B\f\r]} is replaced by a single space.
+ */
+public final class TextLines {
+
+    private TextLines() {
+    }
+
+    /**
+     * Returns the normalized form of a range of text
+     * @param text the text
+     * @param start start of the range, inclusive
+     * @param end end of the range, exclusive
+     * @return the range with trimmed ends and collapsed whitespace
+     */
+    public static String normalizeWhitespace(CharSequence text, int start, int end) {
+        return normalizeWhitespace(text, start, end, new int[0]);
+    }
+
+    /**
+     * Returns the normalized form of a range of text and maps offsets into the range to the corresponding
+     * offsets in the normalized text, e.g. to keep track of page boundaries
+     * @param text the text
+     * @param start start of the range, inclusive
+     * @param end end of the range, exclusive
+     * @param offsets ascending offsets into the text, replaced in place by their normalized offsets
+     * @return the range with trimmed ends and collapsed whitespace
+     */
+    public static String normalizeWhitespace(CharSequence text, int start, int end, int[] offsets) {
+        start = trimStart(text, start, end);
+        end = trimEnd(text, start, end);
+        StringBuilder normalized = new StringBuilder(end - start);
+        int offset = 0;
+        for (int i = start; i < end; ) {
+            for (; offset < offsets.length && offsets[offset] <= i; offset++) {
+                offsets[offset] = normalized.length();
+            }
+            if (isWhitespace(text.charAt(i))) {
+                normalized.append(' ');
+                i = skipWhitespace(text, i, end);
+            } else {
+                normalized.append(text.charAt(i++));
+            }
+        }
+        for (; offset < offsets.length; offset++) {
+            offsets[offset] = normalized.length();
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Hashes a range of text, as normalized unless {@code exact} is set
+     */
+    public static int hash(CharSequence text, int start, int end, boolean exact) {
+        int hash = 0;
+        if (exact) {
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + text.charAt(i);
+            }
+            return hash;
+        }
+
+        start = trimStart(text, start, end);
+        end = trimEnd(text, start, end);
+        for (int i = start; i < end; ) {
+            char c = text.charAt(i);
+            if (isWhitespace(c)) {
+                c = ' ';
+                i = skipWhitespace(text, i, end);
+            } else {
+                i++;
+            }
+            hash = 31 * hash + c;
+        }
+        return hash;
+    }
+
+    /**
+     * Compares two ranges of text, as normalized unless {@code exact} is set
+     */
+    public static boolean equals(CharSequence text1, int start1, int end1,
+            CharSequence text2, int start2, int end2, boolean exact) {
+        if (exact) {
+            if (end1 - start1 != end2 - start2) {
+                return false;
+            }
+            for (int i = start1, j = start2; i < end1; i++, j++) {
+                if (text1.charAt(i) != text2.charAt(j)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        start1 = trimStart(text1, start1, end1);
+        end1 = trimEnd(text1, start1, end1);
+        start2 = trimStart(text2, start2, end2);
+        end2 = trimEnd(text2, start2, end2);
+        int i = start1, j = start2;
+        while (i < end1 && j < end2) {
+            char c1 = text1.charAt(i);
+            char c2 = text2.charAt(j);
+            boolean space1 = isWhitespace(c1);
+            if (space1 != isWhitespace(c2)) {
+                return false;
+            }
+            if (space1) {
+                i = skipWhitespace(text1, i, end1);
+                j = skipWhitespace(text2, j, end2);
+            } else if (c1 != c2) {
+                return false;
+            } else {
+                i++;
+                j++;
+            }
+        }
+        return i == end1 && j == end2;
+    }
+
+    static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static int skipWhitespace(CharSequence text, int i, int end) {
+        while (i < end && isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int trimStart(CharSequence text, int start, int end) {
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(CharSequence text, int start, int end) {
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Iterates over the lines of a text without copying them. Lines are split exactly like
+     * {@code text.split("\\r?\\n")}, including the removal of trailing empty lines.
+     */
+    public static class Cursor {
+        private final CharSequence text;
+        private final int limit;
+        private final int to;
+        private int next;
+        private int start = -1;
+        private int end = -1;
+        private int lineNumber;
+
+        public Cursor(CharSequence text) {
+            this(text, 0, Integer.MAX_VALUE, 0);
+            // String.split returns the empty string itself as its only line, but no lines for e.g. "\n"
+            if (limit == 0 && text.length() > 0) {
+                next = 1;
+            }
+        }
+
+        /**
+         * Creates a cursor over the lines of a text that start within a range, such as the lines of a page.
+         * Lines and their numbers are the same as those of a cursor over the whole text.
+         * @param text the text
+         * @param from offset of the first line
+         * @param to end of the range, exclusive
+         * @param lineNumber number of lines in the text before the first line of the range
+         */
+        public Cursor(CharSequence text, int from, int to, int lineNumber) {
+            this.text = text;
+            int limit = text.length();
+            while (limit > 0 && text.charAt(limit - 1) == '\n') {
+                limit -= limit > 1 && text.charAt(limit - 2) == '\r' ? 2 : 1;
+            }
+            this.limit = limit;
+            this.to = to;
+            this.next = from;
+            this.lineNumber = lineNumber;
+        }
+
+        /**
+         * Advances to the next line
+         * @return false if there are no more lines
+         */
+        public boolean next() {
+            if (next > limit || next >= to) {
+                return false;
+            }
+            start = next;
+            int newline = start;
+            while (newline < limit && text.charAt(newline) != '\n') {
+                newline++;
+            }
+            // A carriage return only belongs to the separator when a line feed follows it
+            end = newline < limit && newline > start && text.charAt(newline - 1) == '\r' ? newline - 1 : newline;
+            next = newline + 1;
+            lineNumber++;
+            return true;
+        }
+
+        public CharSequence text() { return text; }
+        public int start() { return start; }
+        public int end() { return end; }
+
+        /** @return one-based number of the current line */
+        public int lineNumber() { return lineNumber; }
+
+        public String line() {
+            return text.subSequence(start, end).toString();
+        }
+    }
+
+    /**
+     * Assigns equal ids to equal lines, across any number of texts. Only line hashes, ranges and a
+     * reference to the text of each distinct line's first occurrence are stored.
+     */
+    public static class Interner {
+        private final boolean exact;
+        private int[] table = new int[1024];
+        private int size;
+        private int[] hashes = new int[256];
+        private int[] starts = new int[256];
+        private int[] ends = new int[256];
+        private CharSequence[] texts = new CharSequence[256];
+
+        /**
+         * @param exact whether lines must be equal character by character rather than after normalization
+         */
+        public Interner(boolean exact) {
+            this.exact = exact;
+        }
+
+        /**
+         * Interns all lines of a text
+         * @param text the text
+         * @return the id of every line
+         */
+        public int[] internLines(CharSequence text) {
+            return internLines(new Cursor(text));
+        }
+
+        /**
+         * Interns the remaining lines of a cursor
+         * @param cursor the cursor, which is moved past its last line
+         * @return the id of every line
+         */
+        public int[] internLines(Cursor cursor) {
+            int[] ids = new int[64];
+            int count = 0;
+            while (cursor.next()) {
+                if (count == ids.length) {
+                    ids = Arrays.copyOf(ids, count * 2);
+                }
+                ids[count++] = intern(cursor.text(), cursor.start(), cursor.end());
+            }
+            return Arrays.copyOf(ids, count);
+        }
+
+        /**
+         * @return the id of a line, the same for all lines that are equal
+         */
+        public int intern(CharSequence text, int start, int end) {
+            int hash = hash(text, start, end, exact);
+            int mask = table.length - 1;
+            for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+                int entry = table[slot] - 1;
+                if (entry < 0) {
+                    return add(slot, hash, text, start, end);
+                }
+                if (hashes[entry] == hash && TextLines.equals(texts[entry], starts[entry], ends[entry],
+                        text, start, end, exact)) {
+                    return entry;
+                }
+            }
+        }
+
+        private int add(int slot, int hash, CharSequence text, int start, int end) {
+            if (size == hashes.length) {
+                int capacity = size * 2;
+                hashes = Arrays.copyOf(hashes, capacity);
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                texts = Arrays.copyOf(texts, capacity);
+            }
+            int id = size++;
+            hashes[id] = hash;
+            starts[id] = start;
+            ends[id] = end;
+            texts[id] = text;
+            table[slot] = id + 1;
+            if (size * 2 > table.length) {
+                rehash();
+            }
+            return id;
+        }
+
+        private void rehash() {
+            table = new int[table.length * 2];
+            int mask = table.length - 1;
+            for (int id = 0; id < size; id++) {
+                int slot = mix(hashes[id]) & mask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = id + 1;
+            }
+        }
+
+        private static int mix(int hash) {
+            hash *= 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
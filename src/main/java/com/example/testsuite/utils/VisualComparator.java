@@ -0,0 +1,471 @@
+package com.example.testsuite.utils;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import com.example.testsuite.utils.ComparisonSession.SessionDocument;
+import com.example.testsuite.utils.ImageDiffer.DiffRegion;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+
+@Slf4j
+@Component
+public class VisualComparator {
+
+    private final GoldCopyCache goldCopyCache;
+
+    @Value("${document.compare.visual.dpi:300}")
+    private float dpi;
+
+    @Value("${document.compare.visual.image-type:RGB}")
+    private ImageType imageType;
+
+    @Value("${document.compare.visual.parallelism:0}")
+    private int parallelism;
+
+    @Value("${document.compare.visual.channel-tolerance:0}")
+    private int channelTolerance;
+
+    @Value("${document.compare.visual.ignore-anti-aliasing:false}")
+    private boolean ignoreAntiAliasing;
+
+    @Value("${document.compare.visual.region-merge-distance:10}")
+    private int regionMergeDistance;
+
+    @Value("${document.compare.visual.content-hash-short-circuit:true}")
+    private boolean contentHashShortCircuit;
+
+    @Value("${document.compare.visual.tiers.enabled:false}")
+    private boolean tiersEnabled;
+
+    @Value("${document.compare.visual.tiers.coarse-dpis:72}")
+    private float[] coarseDpis;
+
+    @Value("${document.compare.visual.tiers.escalation-threshold:0}")
+    private double escalationThreshold;
+
+    private ExecutorService renderPool;
+    private ImageDiffer imageDiffer;
+
+    @Autowired
+    public VisualComparator(GoldCopyCache goldCopyCache) {
+        this.goldCopyCache = goldCopyCache;
+    }
+
+    @PostConstruct
+    void init() {
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        // The calling thread always scans one share of the pages itself, so the pool only needs the rest
+        if (parallelism > 1) {
+            AtomicInteger threadCount = new AtomicInteger();
+            renderPool = Executors.newFixedThreadPool(parallelism - 1, runnable -> {
+                Thread thread = new Thread(runnable, "visual-compare-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        imageDiffer = new ImageDiffer(channelTolerance, ignoreAntiAliasing, regionMergeDistance);
+        if (!tiersEnabled) {
+            coarseDpis = new float[0];
+        }
+        log.debug("Visual comparison configured with {} DPI, {} images, parallelism {} and coarse tiers {}",
+                dpi, imageType, parallelism, coarseDpis);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (renderPool != null) {
+            renderPool.shutdownNow();
+        }
+    }
+
+    /**
+     * Renders and compares two PDFs page by page
+     * @param generatedPdf the generated PDF file
+     * @param goldCopyPdf the gold copy PDF file
+     * @param diffOutputFile file to write the visual diff of the first differing page to
+     * @return VisualResult with the difference regions of the first differing page
+     * @throws IOException if there's an error processing the PDFs
+     */
+    public VisualResult compareAndGenerateDiff(File generatedPdf, File goldCopyPdf, File diffOutputFile) throws IOException {
+        try (ComparisonSession session = ComparisonSession.open(generatedPdf, goldCopyPdf, goldCopyCache)) {
+            return compareAndGenerateDiff(session, diffOutputFile);
+        }
+    }
+
+    /**
+     * Renders and compares both PDFs page by page, spreading the pages over the configured number of workers.
+     * Each worker holds its own PDDocument and PDFRenderer since PDFBox renderers are not thread-safe;
+     * the calling thread uses the session's documents and the other workers parse copies of them.
+     * Gold copy page counts, digests and rasters come from the GoldCopyCache when available, in which
+     * case the gold copy is not even parsed.
+     * Regardless of scheduling, the diff image written is always the one for the lowest differing page.
+     * Pages whose content streams and resources hash identically are not rendered at all.
+     * When coarse tiers are enabled, each page is first compared at the low resolutions and only
+     * escalated to the full DPI when the low-resolution renderings differ by more than the threshold.
+     * @param session the session holding both documents
+     * @param diffOutputFile file to write the visual diff of the first differing page to
+     * @return VisualResult with the difference regions of the first differing page
+     * @throws IOException if there's an error processing the PDFs
+     */
+    public VisualResult compareAndGenerateDiff(ComparisonSession session, File diffOutputFile) throws IOException {
+        return compareAndGenerateDiff(session, diffOutputFile, ComparisonMask.NONE);
+    }
+
+    /**
+     * Compares both PDFs like {@link #compareAndGenerateDiff(ComparisonSession, File)}, ignoring the regions
+     * of a mask. The regions are painted over both renderings of a page, at every tier, before they are compared.
+     * @param session the session holding both documents
+     * @param diffOutputFile file to write the visual diff of the first differing page to
+     * @param mask regions to ignore
+     * @return VisualResult with the difference regions of the first differing page
+     * @throws IOException if there's an error processing the PDFs
+     */
+    public VisualResult compareAndGenerateDiff(ComparisonSession session, File diffOutputFile, ComparisonMask mask)
+            throws IOException {
+        PageScan scan;
+        PDDocument generatedDoc = session.getGenerated().getDocument();
+        try (GoldCopyPages goldCopyPages = new GoldCopyPages(session.getGoldCopy(), true)) {
+
+            if (generatedDoc.getNumberOfPages() != goldCopyPages.getPageCount()) {
+                log.warn("PDFs have different number of pages: Generated={}, GoldCopy={}",
+                        generatedDoc.getNumberOfPages(), goldCopyPages.getPageCount());
+                return new VisualResult(false, List.of(), List.of());
+            }
+
+            int pageCount = generatedDoc.getNumberOfPages();
+            int workers = Math.max(1, Math.min(parallelism, pageCount));
+            scan = new PageScan();
+
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int worker = 1; worker < workers; worker++) {
+                int firstPage = worker;
+                futures.add(renderPool.submit(() -> {
+                    try (PDDocument workerGeneratedDoc = session.getGenerated().loadCopy();
+                         GoldCopyPages workerGoldCopyPages = new GoldCopyPages(session.getGoldCopy(), false)) {
+                        scanPages(workerGeneratedDoc, workerGoldCopyPages, firstPage, workers, mask, scan);
+                    }
+                    return null;
+                }));
+            }
+
+            try {
+                scanPages(generatedDoc, goldCopyPages, 0, workers, mask, scan);
+                awaitWorkers(futures);
+            } finally {
+                futures.forEach(future -> future.cancel(true));
+            }
+        }
+
+        if (scan.getFirstDifferentPage() == Integer.MAX_VALUE) {
+            return new VisualResult(true, List.of(), scan.getDecisions());
+        }
+        log.info("First visual difference found on page {} in {} region(s)",
+                scan.getFirstDifferentPage() + 1, scan.getRegions().size());
+        ImageIO.write(scan.getDiffImage(), "PNG", diffOutputFile);
+        return new VisualResult(false, scan.getRegions(), scan.getDecisions());
+    }
+
+    /**
+     * Scans every stride-th page starting at firstPage, skipping pages beyond the lowest difference
+     * already found by any worker
+     */
+    private void scanPages(PDDocument generatedDoc, GoldCopyPages goldCopyPages, int firstPage, int stride,
+            ComparisonMask mask, PageScan scan) throws IOException {
+        PDFRenderer generatedRenderer = new PDFRenderer(generatedDoc);
+        PageDigester generatedDigester = new PageDigester();
+        int pageCount = generatedDoc.getNumberOfPages();
+
+        for (int page = firstPage; page < pageCount && page < scan.getFirstDifferentPage(); page += stride) {
+            if (contentHashShortCircuit && Arrays.equals(
+                    generatedDigester.digest(generatedDoc.getPage(page)), goldCopyPages.digest(page))) {
+                scan.recordDecision(PageDecision.byContentHash(page));
+                continue;
+            }
+            if (passesCoarseTiers(generatedRenderer, goldCopyPages, page, mask, scan)) {
+                continue;
+            }
+
+            BufferedImage generatedImage = generatedRenderer.renderImageWithDPI(page, dpi, imageType);
+            BufferedImage goldCopyImage = goldCopyPages.render(page, dpi);
+            mask.maskImage(generatedImage, page, dpi);
+            mask.maskImage(goldCopyImage, page, dpi);
+
+            List<DiffRegion> regions = compareImages(page, generatedImage, goldCopyImage);
+            scan.recordDecision(new PageDecision(page, regions.isEmpty(), dpi));
+            if (!regions.isEmpty()) {
+                scan.recordDifference(page, regions, generateVisualDiff(generatedImage, regions));
+                return; // Later pages of this worker can no longer be the first difference
+            }
+        }
+    }
+
+    /**
+     * Compares a page at each coarse DPI tier in turn
+     * @return true if a tier found the page identical (within the escalation threshold), false if the
+     * page has to be compared at full resolution
+     */
+    private boolean passesCoarseTiers(PDFRenderer generatedRenderer, GoldCopyPages goldCopyPages, int page,
+            ComparisonMask mask, PageScan scan) throws IOException {
+        for (float coarseDpi : coarseDpis) {
+            BufferedImage generatedImage = generatedRenderer.renderImageWithDPI(page, coarseDpi, imageType);
+            BufferedImage goldCopyImage = goldCopyPages.render(page, coarseDpi);
+            mask.maskImage(generatedImage, page, coarseDpi);
+            mask.maskImage(goldCopyImage, page, coarseDpi);
+
+            boolean passes = RasterComparator.findFirstMismatch(generatedImage, goldCopyImage) == null;
+            if (!passes && escalationThreshold > 0) {
+                double changedFraction = (double) imageDiffer.countChangedPixels(generatedImage, goldCopyImage)
+                        / ((long) generatedImage.getWidth() * generatedImage.getHeight());
+                passes = changedFraction <= escalationThreshold;
+            }
+            if (passes) {
+                scan.recordDecision(new PageDecision(page, true, coarseDpi));
+                return true;
+            }
+            log.debug("Page {} differs at {} DPI, escalating", page + 1, coarseDpi);
+        }
+        return false;
+    }
+
+    private void awaitWorkers(List<Future<Void>> futures) throws IOException {
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for page comparison", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Page comparison failed", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Compares two page images, only running the tolerance-aware region search when the exact
+     * comparison finds a mismatch
+     */
+    private List<DiffRegion> compareImages(int page, BufferedImage img1, BufferedImage img2) {
+        Point mismatch = RasterComparator.findFirstMismatch(img1, img2);
+        if (mismatch == null) {
+            return List.of();
+        }
+        log.debug("Page {} first differs at pixel ({}, {})", page + 1, mismatch.x, mismatch.y);
+        return imageDiffer.findRegions(page, img1, img2, mismatch.y);
+    }
+
+    private BufferedImage generateVisualDiff(BufferedImage img1, List<DiffRegion> regions) {
+        int width = img1.getWidth();
+        int height = img1.getHeight();
+        for (DiffRegion region : regions) {
+            width = Math.max(width, region.getX() + region.getWidth());
+            height = Math.max(height, region.getY() + region.getHeight());
+        }
+
+        BufferedImage diffImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = diffImage.createGraphics();
+
+        // Draw the first image as the base
+        g2d.drawImage(img1, 0, 0, null);
+
+        // Highlight each difference region with a translucent fill and a solid outline
+        g2d.setColor(Color.RED);
+        for (DiffRegion region : regions) {
+            g2d.drawRect(region.getX(), region.getY(), region.getWidth() - 1, region.getHeight() - 1);
+        }
+        g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.5f));
+        for (DiffRegion region : regions) {
+            g2d.fillRect(region.getX(), region.getY(), region.getWidth(), region.getHeight());
+        }
+        g2d.dispose();
+
+        return diffImage;
+    }
+
+    /**
+     * Per-worker view of the gold copy that serves page counts, digests and rasters from the
+     * GoldCopyCache and only parses the gold copy on a cache miss
+     */
+    private class GoldCopyPages implements AutoCloseable {
+        private final SessionDocument goldCopy;
+        private final File goldCopyPdf;
+        private final boolean shared;
+        private PDDocument document;
+        private PDFRenderer renderer;
+        private final PageDigester digester = new PageDigester();
+
+        /**
+         * @param goldCopy the session's gold copy
+         * @param shared whether to use the session's own PDDocument rather than a private copy
+         */
+        GoldCopyPages(SessionDocument goldCopy, boolean shared) {
+            this.goldCopy = goldCopy;
+            this.goldCopyPdf = goldCopy.getFile();
+            this.shared = shared;
+        }
+
+        int getPageCount() throws IOException {
+            return goldCopyCache.getObject(goldCopyPdf, "page-count", () -> document().getNumberOfPages());
+        }
+
+        byte[] digest(int page) throws IOException {
+            return goldCopyCache.getObject(goldCopyPdf, "page-digest-" + page,
+                    () -> digester.digest(document().getPage(page)));
+        }
+
+        BufferedImage render(int page, float renderDpi) throws IOException {
+            return goldCopyCache.getPageImage(goldCopyPdf, page, renderDpi + "dpi-" + imageType,
+                    () -> renderer().renderImageWithDPI(page, renderDpi, imageType));
+        }
+
+        private PDDocument document() throws IOException {
+            if (document == null) {
+                document = shared ? goldCopy.getDocument() : goldCopy.loadCopy();
+            }
+            return document;
+        }
+
+        private PDFRenderer renderer() throws IOException {
+            if (renderer == null) {
+                renderer = new PDFRenderer(document());
+            }
+            return renderer;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (document != null && !shared) {
+                document.close();
+            }
+        }
+    }
+
+    /**
+     * Result of a page scan shared between workers. Only the lowest differing page is kept, which makes
+     * the merged result independent of the order in which workers finish.
+     */
+    private static class PageScan {
+        private volatile int firstDifferentPage = Integer.MAX_VALUE;
+        private List<DiffRegion> regions = List.of();
+        private BufferedImage diffImage;
+        private final List<PageDecision> decisions = new ArrayList<>();
+
+        int getFirstDifferentPage() { return firstDifferentPage; }
+
+        synchronized List<DiffRegion> getRegions() { return regions; }
+
+        synchronized BufferedImage getDiffImage() { return diffImage; }
+
+        /**
+         * Returns the decisions for the pages up to and including the first differing page. Every such page
+         * is scanned whatever the timing, whereas whether a worker got to a later page before it learnt of the
+         * difference is not, so decisions for later pages are left out.
+         */
+        synchronized List<PageDecision> getDecisions() {
+            List<PageDecision> sorted = new ArrayList<>();
+            for (PageDecision decision : decisions) {
+                if (decision.getPage() <= firstDifferentPage) {
+                    sorted.add(decision);
+                }
+            }
+            sorted.sort(Comparator.comparingInt(PageDecision::getPage));
+            return sorted;
+        }
+
+        synchronized void recordDecision(PageDecision decision) {
+            decisions.add(decision);
+        }
+
+        synchronized void recordDifference(int page, List<DiffRegion> pageRegions, BufferedImage pageDiffImage) {
+            if (page < firstDifferentPage) {
+                firstDifferentPage = page;
+                regions = pageRegions;
+                diffImage = pageDiffImage;
+            }
+        }
+    }
+
+    public static class VisualResult {
+        private final boolean identical;
+        private final List<DiffRegion> regions;
+        private final List<PageDecision> pageDecisions;
+
+        public VisualResult(boolean identical, List<DiffRegion> regions, List<PageDecision> pageDecisions) {
+            this.identical = identical;
+            this.regions = regions;
+            this.pageDecisions = pageDecisions;
+        }
+
+        public boolean isIdentical() { return identical; }
+        public List<DiffRegion> getRegions() { return regions; }
+        /** @return one decision per page up to and including the first differing page, in page order */
+        public List<PageDecision> getPageDecisions() { return pageDecisions; }
+    }
+
+    /**
+     * Records which stage, and for rendered pages which resolution, decided the outcome of a page
+     */
+    public static class PageDecision {
+        public enum Stage {
+            CONTENT_HASH, RASTER
+        }
+
+        private final int page;
+        private final boolean identical;
+        private final Stage stage;
+        private final float dpi;
+
+        public PageDecision(int page, boolean identical, float dpi) {
+            this(page, identical, Stage.RASTER, dpi);
+        }
+
+        private PageDecision(int page, boolean identical, Stage stage, float dpi) {
+            this.page = page;
+            this.identical = identical;
+            this.stage = stage;
+            this.dpi = dpi;
+        }
+
+        static PageDecision byContentHash(int page) {
+            return new PageDecision(page, true, Stage.CONTENT_HASH, 0);
+        }
+
+        public int getPage() { return page; }
+        public boolean isIdentical() { return identical; }
+        public Stage getStage() { return stage; }
+        /** @return the DPI the page was rendered at, or 0 if it was decided by content hash */
+        public float getDpi() { return dpi; }
+
+        @Override
+        public String toString() {
+            if (stage == Stage.CONTENT_HASH) {
+                return String.format("Page %d: identical content streams and resources", page + 1);
+            }
+            return String.format("Page %d: %s at %.0f DPI", page + 1, identical ? "identical" : "different", dpi);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.testsuite.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import com.example.testsuite.controller.HttpPoolController;
+import com.sun.net.httpserver.HttpServer;
+
+public class WebConfigTest {
+
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+    private HttpServer server;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+    private RestTemplate restTemplate;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/pdf", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            byte[] body = "%PDF".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+
+        WebConfig config = new WebConfig();
+        ReflectionTestUtils.setField(config, "maxConnections", 20);
+        ReflectionTestUtils.setField(config, "maxConnectionsPerRoute", 10);
+        ReflectionTestUtils.setField(config, "connectTimeoutMillis", 1000L);
+        ReflectionTestUtils.setField(config, "responseTimeoutMillis", 5000L);
+        ReflectionTestUtils.setField(config, "keepAliveSeconds", 30L);
+        ReflectionTestUtils.setField(config, "timeToLiveSeconds", 300L);
+        ReflectionTestUtils.setField(config, "validateAfterInactivityMillis", 2000L);
+        connectionManager = config.httpConnectionManager();
+        httpClient = config.httpClient(connectionManager);
+        restTemplate = config.restTemplate(httpClient);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        httpClient.close();
+        server.stop(0);
+    }
+
+    @Test
+    void sequentialRequestsReuseOneKeptAliveConnection() {
+        String url = "http://localhost:" + server.getAddress().getPort() + "/pdf";
+        for (int i = 0; i < 10; i++) {
+            assertEquals("%PDF", new String(restTemplate.getForObject(url, byte[].class), StandardCharsets.UTF_8));
+        }
+
+        assertEquals(1, clientPorts.size(), "Connections opened from ports " + clientPorts);
+        assertEquals(0, connectionManager.getTotalStats().getLeased());
+        assertEquals(1, connectionManager.getTotalStats().getAvailable());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void poolStatsAreReportedPerRoute() {
+        restTemplate.getForObject("http://localhost:" + server.getAddress().getPort() + "/pdf", byte[].class);
+
+        Map<String, Object> stats = new HttpPoolController(connectionManager).getPoolStats();
+
+        assertEquals(20, stats.get("max"));
+        assertEquals(1, stats.get("available"));
+        Map<String, Object> routes = (Map<String, Object>) stats.get("routes");
+        Map<String, Object> route = (Map<String, Object>) routes.get("http://localhost:" + server.getAddress().getPort());
+        assertNotNull(route, "Routes " + routes.keySet());
+        assertEquals(10, route.get("max"));
+        assertEquals(0, route.get("pending"));
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.testsuite.processor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import com.example.testsuite.processor.SoapEnvelopProcessor.SoapEnvelope;
+
+public class AsyncSoapSubmitterTest {
+
+    private static final SoapEnvelope ENVELOPE = out -> out.write("<soapenv:Envelope/>".getBytes());
+
+    private final DocumentMessageProcessor messageProcessor = mock(DocumentMessageProcessor.class);
+    private AsyncSoapSubmitter submitter;
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(submitter, "shutdown");
+    }
+
+    @Test
+    void neverExceedsTheMaximumInFlight() throws Exception {
+        AtomicInteger current = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        when(messageProcessor.postSoapEnvelope(any())).thenAnswer(invocation -> {
+            peak.accumulateAndGet(current.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            current.decrementAndGet();
+            return "<accepted/>";
+        });
+        submitter = createSubmitter(4, 0, 1);
+
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            futures.add(submitter.submitAsync(ENVELOPE));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+        assertEquals(4, peak.get());
+        assertEquals("<accepted/>", futures.get(39).get());
+        assertEquals(0, submitter.getInFlightCount());
+        assertEquals(0, submitter.getQueuedCount());
+    }
+
+    @Test
+    void startsRequestsAtTheConfiguredRate() throws Exception {
+        when(messageProcessor.postSoapEnvelope(any())).thenReturn("<accepted/>");
+        submitter = createSubmitter(8, 100, 1);
+
+        long start = System.nanoTime();
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 31; i++) {
+            futures.add(submitter.submitAsync(ENVELOPE));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // The first request takes the only token, the other 30 wait 10 ms each
+        assertTrue(elapsedMillis >= 290, "Took " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void retriesTransientFailuresOnly() throws Exception {
+        when(messageProcessor.postSoapEnvelope(any()))
+                .thenThrow(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE))
+                .thenThrow(new ResourceAccessException("Connection refused", new ConnectException()))
+                .thenReturn("<accepted/>");
+        submitter = createSubmitter(2, 0, 3);
+
+        assertEquals("<accepted/>", submitter.submitAsync(ENVELOPE).get(5, TimeUnit.SECONDS));
+        verify(messageProcessor, times(3)).postSoapEnvelope(ENVELOPE);
+
+        when(messageProcessor.postSoapEnvelope(any()))
+                .thenThrow(new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR, "SOAP fault"));
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> submitter.submitAsync(ENVELOPE).get(5, TimeUnit.SECONDS));
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, ((HttpServerErrorException) e.getCause()).getStatusCode());
+        verify(messageProcessor, times(4)).postSoapEnvelope(ENVELOPE);
+
+        // The service may still process a request it did not answer in time
+        when(messageProcessor.postSoapEnvelope(any()))
+                .thenThrow(new ResourceAccessException("Read timed out", new SocketTimeoutException()));
+        e = assertThrows(ExecutionException.class, () -> submitter.submitAsync(ENVELOPE).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(SocketTimeoutException.class, e.getCause().getCause());
+        verify(messageProcessor, times(5)).postSoapEnvelope(ENVELOPE);
+    }
+
+    @Test
+    void failsWithTheLastErrorOnceAttemptsAreExhausted() {
+        when(messageProcessor.postSoapEnvelope(any()))
+                .thenThrow(new ResourceAccessException("Connection refused", new ConnectException()));
+        submitter = createSubmitter(2, 0, 3);
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> submitter.submitAsync(ENVELOPE).get(5, TimeUnit.SECONDS));
+
+        assertInstanceOf(ResourceAccessException.class, e.getCause());
+        verify(messageProcessor, times(3)).postSoapEnvelope(ENVELOPE);
+    }
+
+    private AsyncSoapSubmitter createSubmitter(int maxInFlight, double ratePerSecond, int maxAttempts) {
+        AsyncSoapSubmitter created = new AsyncSoapSubmitter(messageProcessor);
+        ReflectionTestUtils.setField(created, "maxInFlight", maxInFlight);
+        ReflectionTestUtils.setField(created, "ratePerSecond", ratePerSecond);
+        ReflectionTestUtils.setField(created, "burst", 1);
+        ReflectionTestUtils.setField(created, "maxAttempts", maxAttempts);
+        ReflectionTestUtils.setField(created, "initialBackoffMillis", 10L);
+        ReflectionTestUtils.setField(created, "maxBackoffMillis", 100L);
+        ReflectionTestUtils.setField(created, "backoffMultiplier", 2.0);
+        ReflectionTestUtils.setField(created, "jitter", 0.2);
+        ReflectionTestUtils.invokeMethod(created, "init");
+        return created;
+    }
+}
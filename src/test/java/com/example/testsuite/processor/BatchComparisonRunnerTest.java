@@ -0,0 +1,162 @@
+package com.example.testsuite.processor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.testsuite.processor.BatchComparisonRunner.BatchSummary;
+import com.example.testsuite.processor.BatchComparisonRunner.PairResult;
+import com.example.testsuite.processor.BatchComparisonRunner.Status;
+import com.example.testsuite.utils.PDFComparator;
+import com.example.testsuite.utils.PDFComparator.ComparisonResult;
+import com.example.testsuite.utils.TextComparator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class BatchComparisonRunnerTest {
+
+    @TempDir
+    File tempDir;
+
+    private File generatedDir;
+    private File goldCopyDir;
+    private PDFComparator pdfComparator;
+    private BatchComparisonRunner runner;
+
+    @BeforeEach
+    void setUp() {
+        generatedDir = new File(tempDir, "generated");
+        goldCopyDir = new File(tempDir, "gold");
+        generatedDir.mkdirs();
+        goldCopyDir.mkdirs();
+        pdfComparator = mock(PDFComparator.class);
+        runner = new BatchComparisonRunner(pdfComparator);
+        ReflectionTestUtils.setField(runner, "parallelism", 2);
+        ReflectionTestUtils.setField(runner, "maxPending", 2);
+        ReflectionTestUtils.setField(runner, "textMode", TextComparator.ComparisonMode.LINE_BY_LINE);
+        ReflectionTestUtils.invokeMethod(runner, "init");
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(runner, "shutdown");
+    }
+
+    @Test
+    void pairsFilesByPolicyNumberAndWritesSummaries() throws IOException {
+        createPdfs(generatedDir, "generated_", "POL-1", "POL-2", "POL-3");
+        createPdfs(goldCopyDir, "gold_", "POL-1", "POL-2", "POL-4");
+        when(pdfComparator.compare(any(), any(), any(), any(), anyBoolean(), anyString()))
+                .thenReturn(identical());
+        when(pdfComparator.compare(argThat(file -> file.getName().contains("POL-2")), any(), any(), any(),
+                anyBoolean(), anyString())).thenThrow(new IOException("Corrupt PDF"));
+
+        File outputDir = new File(tempDir, "output");
+        BatchSummary summary = runner.run(generatedDir, goldCopyDir, outputDir);
+
+        List<PairResult> pairs = summary.getPairs();
+        assertEquals(List.of("POL-1", "POL-2", "POL-3", "POL-4"),
+                pairs.stream().map(PairResult::getPolicyNumber).toList());
+        assertEquals(List.of(Status.IDENTICAL, Status.FAILED, Status.MISSING_GOLD_COPY, Status.MISSING_GENERATED),
+                pairs.stream().map(PairResult::getStatus).toList());
+        assertEquals("POL-1/comparison-report.txt", pairs.get(0).getReport());
+        assertTrue(pairs.get(1).getError().contains("Corrupt PDF"));
+        assertFalse(summary.isPassed());
+
+        JsonNode json = new ObjectMapper().readTree(new File(outputDir, "batch-summary.json"));
+        assertEquals(4, json.get("pairCount").asInt());
+        assertEquals(1, json.get("statusCounts").get("FAILED").asInt());
+        String html = Files.readString(new File(outputDir, "batch-summary.html").toPath());
+        assertTrue(html.contains("<a href=\"POL-1/comparison-report.txt\">"), html);
+    }
+
+    @Test
+    void runsAtMostParallelismComparisonsAtOnce() throws IOException {
+        String[] policies = new String[20];
+        for (int i = 0; i < policies.length; i++) {
+            policies[i] = "POL-" + i;
+        }
+        createPdfs(generatedDir, "generated_", policies);
+        createPdfs(goldCopyDir, "gold_", policies);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        when(pdfComparator.compare(any(), any(), any(), any(), anyBoolean(), anyString())).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(10);
+            running.decrementAndGet();
+            return identical();
+        });
+
+        BatchSummary summary = runner.run(generatedDir, goldCopyDir, new File(tempDir, "output"));
+
+        assertTrue(summary.isPassed());
+        assertEquals(20, summary.getPairCount());
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    void recordsPairsThePoolRejectsAndFinishesTheBatch() throws IOException {
+        createPdfs(generatedDir, "generated_", "POL-1", "POL-2", "POL-3");
+        createPdfs(goldCopyDir, "gold_", "POL-1", "POL-2", "POL-3");
+        when(pdfComparator.compare(any(), any(), any(), any(), anyBoolean(), anyString()))
+                .thenReturn(identical());
+        ReflectionTestUtils.invokeMethod(runner, "shutdown");
+        AtomicInteger submissions = new AtomicInteger();
+        ReflectionTestUtils.setField(runner, "comparisonPool", new ThreadPoolExecutor(2, 2, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>()) {
+            @Override
+            public void execute(Runnable command) {
+                if (submissions.incrementAndGet() == 2) {
+                    throw new RejectedExecutionException("Pool saturated");
+                }
+                super.execute(command);
+            }
+        });
+
+        // A slot leaked by the rejected pair would block the batch forever
+        BatchSummary summary = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> runner.run(generatedDir, goldCopyDir, new File(tempDir, "output")));
+
+        assertEquals(3, summary.getPairCount());
+        List<PairResult> failed = summary.getPairs().stream()
+                .filter(pair -> pair.getStatus() == Status.FAILED).toList();
+        assertEquals(1, failed.size());
+        assertTrue(failed.get(0).getError().contains("Pool saturated"));
+        assertEquals(2, summary.getStatusCounts().get(Status.IDENTICAL));
+    }
+
+    private static ComparisonResult identical() {
+        ComparisonResult result = new ComparisonResult();
+        result.setVisuallyIdentical(true);
+        result.setTextDifferences(List.of());
+        result.setFontDifferences(List.of());
+        return result;
+    }
+
+    private static void createPdfs(File dir, String prefix, String... policies) throws IOException {
+        for (String policy : policies) {
+            Files.createFile(new File(dir, prefix + policy + ".pdf").toPath());
+        }
+    }
+}
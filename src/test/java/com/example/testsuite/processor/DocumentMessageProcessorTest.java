@@ -0,0 +1,194 @@
+package com.example.testsuite.processor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpServer;
+
+public class DocumentMessageProcessorTest {
+
+    /** Serves each policy's PDF once it has been polled a given number of times */
+    private final Map<String, AtomicInteger> polls = new ConcurrentHashMap<>();
+    private final Map<String, Integer> pollsUntilReady = new ConcurrentHashMap<>();
+    private final Set<String> pollingThreads = ConcurrentHashMap.newKeySet();
+
+    private DocumentMessageProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        RestTemplate restTemplate = new RestTemplate() {
+            @Override
+            public <T> ResponseEntity<T> getForEntity(String url, Class<T> responseType, Object... uriVariables) {
+                pollingThreads.add(Thread.currentThread().getName());
+                String policyNumber = url.substring(url.indexOf("policyNumber=") + "policyNumber=".length());
+                if (policyNumber.equals("BROKEN")) {
+                    throw new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR);
+                }
+                int count = polls.computeIfAbsent(policyNumber, key -> new AtomicInteger()).incrementAndGet();
+                if (count < pollsUntilReady.getOrDefault(policyNumber, 1)) {
+                    throw new HttpClientErrorException(HttpStatus.NOT_FOUND);
+                }
+                return ResponseEntity.ok(responseType.cast(policyNumber.getBytes(StandardCharsets.UTF_8)));
+            }
+        };
+        processor = new DocumentMessageProcessor(null, restTemplate, new DocumentReplyListener(null));
+        ReflectionTestUtils.setField(processor, "apiBaseUrl", "http://localhost");
+        ReflectionTestUtils.setField(processor, "pdfEndpoint", "/pdf");
+        ReflectionTestUtils.setField(processor, "timeoutMinutes", 1);
+        ReflectionTestUtils.setField(processor, "intervalSeconds", 1);
+        ReflectionTestUtils.setField(processor, "initialIntervalMillis", 5L);
+        ReflectionTestUtils.setField(processor, "backoffMultiplier", 2.0);
+        ReflectionTestUtils.setField(processor, "jitter", 0.2);
+        ReflectionTestUtils.setField(processor, "schedulerThreads", 2);
+        ReflectionTestUtils.setField(processor, "requestThreads", 4);
+        ReflectionTestUtils.invokeMethod(processor, "init");
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(processor, "shutdown");
+    }
+
+    @Test
+    void pollsWithBackoffUntilThePdfIsAvailable() {
+        pollsUntilReady.put("POL-1", 4);
+
+        long start = System.nanoTime();
+        byte[] pdf = processor.retrievePDF("POL-1");
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals("POL-1", new String(pdf, StandardCharsets.UTF_8));
+        assertEquals(4, polls.get("POL-1").get());
+        // Three waits of roughly 5, 10 and 20 ms
+        assertTrue(elapsedMillis >= 28, "Waited " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void manyOutstandingRetrievalsShareTheScheduler() throws Exception {
+        List<CompletableFuture<byte[]>> futures = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            pollsUntilReady.put("POL-" + i, 1 + i % 5);
+            futures.add(processor.retrievePDFAsync("POL-" + i));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals("POL-" + i, new String(futures.get(i).get(), StandardCharsets.UTF_8));
+        }
+        long pollThreads = Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith("pdf-poll-")).count();
+        assertTrue(pollThreads <= 2, pollThreads + " poll threads");
+        // The scheduler only times the polls, the requests run on the request threads
+        assertTrue(pollingThreads.stream().allMatch(name -> name.startsWith("pdf-request-")),
+                pollingThreads.toString());
+        assertTrue(pollingThreads.size() <= 4, pollingThreads.toString());
+    }
+
+    @Test
+    void failedRequestCompletesTheRetrievalExceptionally() {
+        CompletableFuture<byte[]> future = processor.retrievePDFAsync("BROKEN");
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(HttpServerErrorException.class, e.getCause());
+        assertThrows(HttpServerErrorException.class, () -> processor.retrievePDF("BROKEN"));
+    }
+
+    @Test
+    void soapEnvelopeIsStreamedIntoTheRequestBody() throws Exception {
+        Map<String, Headers> requestHeaders = new ConcurrentHashMap<>();
+        ByteArrayOutputStream requestBody = new ByteArrayOutputStream();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/forms", exchange -> {
+            requestHeaders.put("request", exchange.getRequestHeaders());
+            exchange.getRequestBody().transferTo(requestBody);
+            byte[] response = "<submitResponse>accepted</submitResponse>".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        server.start();
+        try {
+            DocumentMessageProcessor webServiceProcessor = new DocumentMessageProcessor(null,
+                    new RestTemplate(new HttpComponentsClientHttpRequestFactory()), new DocumentReplyListener(null));
+            ReflectionTestUtils.setField(webServiceProcessor, "webserviceBaseUrl",
+                    "http://localhost:" + server.getAddress().getPort());
+            ReflectionTestUtils.setField(webServiceProcessor, "webserviceResource", "forms");
+            String envelope = new SoapEnvelopProcessor().createSoapEnvelope("PK0001", "ETE", "fake@email.com",
+                    "<policy><policyNumber>POL-1</policyNumber></policy>");
+
+            String response = webServiceProcessor.sendToWebService(envelope);
+
+            assertEquals("<submitResponse>accepted</submitResponse>", response);
+            assertEquals(envelope, requestBody.toString(StandardCharsets.UTF_8));
+            Headers headers = requestHeaders.get("request");
+            assertEquals("chunked", headers.getFirst("Transfer-Encoding"));
+            assertNull(headers.getFirst("Content-Length"));
+            assertTrue(headers.getFirst("Content-Type").startsWith("text/xml"));
+            assertEquals("\"\"", headers.getFirst("SOAPAction"));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void envelopeIsSentAsIsAndTheWholeResponseEnvelopeIsReturned() throws Exception {
+        String responseEnvelope = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+                + "<soap:Body><submitResponse>accepted</submitResponse></soap:Body></soap:Envelope>";
+        ByteArrayOutputStream requestBody = new ByteArrayOutputStream();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/forms", exchange -> {
+            exchange.getRequestBody().transferTo(requestBody);
+            byte[] response = responseEnvelope.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=utf-8");
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        server.start();
+        try {
+            DocumentMessageProcessor webServiceProcessor = new DocumentMessageProcessor(null,
+                    new RestTemplate(new HttpComponentsClientHttpRequestFactory()), new DocumentReplyListener(null));
+            ReflectionTestUtils.setField(webServiceProcessor, "webserviceBaseUrl",
+                    "http://localhost:" + server.getAddress().getPort());
+            ReflectionTestUtils.setField(webServiceProcessor, "webserviceResource", "forms");
+            String envelope = new SoapEnvelopProcessor().createSoapEnvelope("PK0001", "ETE", "fake@email.com",
+                    "<policy><policyNumber>POL-1</policyNumber></policy>");
+
+            String response = webServiceProcessor.sendToWebService(envelope);
+
+            // One envelope on the wire, and the response envelope is not unwrapped to its body
+            String sent = requestBody.toString(StandardCharsets.UTF_8);
+            assertEquals(envelope, sent);
+            assertEquals(sent.indexOf("<soapenv:Envelope"), sent.lastIndexOf("<soapenv:Envelope"));
+            assertEquals(responseEnvelope, response);
+        } finally {
+            server.stop(0);
+        }
+    }
+}
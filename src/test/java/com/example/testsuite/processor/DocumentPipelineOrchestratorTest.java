@@ -0,0 +1,175 @@
+package com.example.testsuite.processor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.testsuite.processor.DocumentPipelineOrchestrator.PolicyResult;
+import com.example.testsuite.processor.DocumentPipelineOrchestrator.Stage;
+import com.example.testsuite.processor.SoapEnvelopProcessor.SoapEnvelope;
+import com.example.testsuite.utils.PDFComparator;
+import com.example.testsuite.utils.PDFComparator.ComparisonResult;
+
+public class DocumentPipelineOrchestratorTest {
+
+    private static final int POLICIES = 100;
+    private static final long GENERATION_MILLIS = 200;
+
+    @TempDir
+    File tempDir;
+
+    private DocumentMessageProcessor messageProcessor;
+    private PDFComparator pdfComparator;
+    private XmlCorpusIndex corpusIndex;
+    private DocumentPipelineOrchestrator orchestrator;
+
+    @BeforeEach
+    void setUp() {
+        messageProcessor = mock(DocumentMessageProcessor.class);
+        pdfComparator = mock(PDFComparator.class);
+        corpusIndex = new XmlCorpusIndex();
+        ReflectionTestUtils.setField(corpusIndex, "persist", true);
+        ReflectionTestUtils.setField(corpusIndex, "indexDirectory", new File(tempDir, "index").getPath());
+        orchestrator = new DocumentPipelineOrchestrator(corpusIndex, new SoapEnvelopProcessor(), messageProcessor,
+                pdfComparator);
+        ReflectionTestUtils.setField(orchestrator, "goldCopiesFolderPath", tempDir.getPath());
+        ReflectionTestUtils.setField(orchestrator, "submitConcurrency", 8);
+        ReflectionTestUtils.setField(orchestrator, "compareParallelism", 2);
+        ReflectionTestUtils.invokeMethod(orchestrator, "init");
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(orchestrator, "shutdown");
+    }
+
+    @Test
+    void totalTimeIsCloseToTheSlowestDocument() throws IOException {
+        when(messageProcessor.sendToWebService(any(SoapEnvelope.class))).thenReturn("<accepted/>");
+        when(messageProcessor.retrievePDFAsync(anyString())).thenAnswer(invocation -> CompletableFuture.supplyAsync(
+                () -> new byte[] {'%'}, CompletableFuture.delayedExecutor(GENERATION_MILLIS, TimeUnit.MILLISECONDS)));
+        when(pdfComparator.compare(any(), any(), any())).thenReturn(identical());
+
+        long start = System.nanoTime();
+        List<PolicyResult> results = orchestrator.run(createXmlFiles(), new File(tempDir, "output"));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(POLICIES, results.size());
+        assertTrue(results.stream().allMatch(PolicyResult::isPassed));
+        assertTrue(elapsedMillis < POLICIES * GENERATION_MILLIS / 10, "Took " + elapsedMillis + " ms");
+        assertEquals(POLICIES, new File(tempDir, "output").list((dir, name) -> name.startsWith("generated_")).length);
+    }
+
+    @Test
+    void failuresAreReportedWithTheirStage() throws IOException {
+        when(messageProcessor.sendToWebService(any(SoapEnvelope.class))).thenAnswer(invocation -> {
+            ByteArrayOutputStream envelope = new ByteArrayOutputStream();
+            invocation.getArgument(0, SoapEnvelope.class).writeTo(envelope);
+            return envelope.toString(StandardCharsets.UTF_8).contains("POL-1<") ? "<error/>" : "<accepted/>";
+        });
+        when(messageProcessor.retrievePDFAsync(anyString())).thenAnswer(invocation ->
+                invocation.getArgument(0, String.class).endsWith("POL-2")
+                        ? CompletableFuture.failedFuture(new IllegalStateException("Timed out"))
+                        : CompletableFuture.completedFuture(new byte[] {'%'}));
+        when(pdfComparator.compare(any(), any(), any())).thenReturn(identical());
+
+        List<PolicyResult> results = orchestrator.run(createXmlFiles().subList(0, 4), new File(tempDir, "output"));
+
+        assertNull(results.get(0).getFailedStage());
+        assertEquals(Stage.SUBMIT, results.get(1).getFailedStage());
+        assertEquals(Stage.RETRIEVE, results.get(2).getFailedStage());
+        assertEquals("Timed out", results.get(2).getError().getMessage());
+        assertTrue(results.get(3).isPassed());
+    }
+
+    @Test
+    void runsTheInputFolderThroughThePersistedIndex() throws IOException {
+        File corpus = new File(tempDir, "corpus");
+        corpus.mkdirs();
+        for (int i = 0; i < 3; i++) {
+            Files.writeString(new File(corpus, "policy-" + i + ".xml").toPath(),
+                    "<?xml version=\"1.0\"?>\n<policy><policyNumber>POL-" + i + "</policyNumber></policy>\n");
+        }
+        ReflectionTestUtils.setField(corpusIndex, "xmlFolderPath", corpus.getPath());
+        List<String> envelopes = new CopyOnWriteArrayList<>();
+        when(messageProcessor.sendToWebService(any(SoapEnvelope.class))).thenAnswer(invocation -> {
+            ByteArrayOutputStream envelope = new ByteArrayOutputStream();
+            invocation.getArgument(0, SoapEnvelope.class).writeTo(envelope);
+            envelopes.add(envelope.toString(StandardCharsets.UTF_8));
+            return "<accepted/>";
+        });
+        when(messageProcessor.retrievePDFAsync(anyString()))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(new byte[] {'%'}));
+        when(pdfComparator.compare(any(), any(), any())).thenReturn(identical());
+
+        List<PolicyResult> results = orchestrator.run(new File(tempDir, "output"));
+
+        assertEquals(List.of("POL-0", "POL-1", "POL-2"),
+                results.stream().map(PolicyResult::getPolicyNumber).toList());
+        assertTrue(results.stream().allMatch(PolicyResult::isPassed));
+        assertEquals(new File(corpus, "policy-1.xml"), results.get(1).getXmlFile());
+        // The payload is sent without the file's XML declaration
+        assertTrue(envelopes.stream().allMatch(envelope -> envelope.contains("<policy><policyNumber>POL-")
+                && envelope.indexOf("<?xml") == envelope.lastIndexOf("<?xml")), envelopes::toString);
+        assertEquals(1, new File(tempDir, "index").list().length);
+    }
+
+    @Test
+    void fileWithoutPolicyNumberFailsInTheSubmitStage() throws IOException {
+        List<File> xmlFiles = new ArrayList<>(createXmlFiles().subList(0, 2));
+        File broken = new File(tempDir, "broken.xml");
+        Files.writeString(broken.toPath(), "<policy></policy>");
+        xmlFiles.add(1, broken);
+        when(messageProcessor.sendToWebService(any(SoapEnvelope.class))).thenReturn("<accepted/>");
+        when(messageProcessor.retrievePDFAsync(anyString()))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(new byte[] {'%'}));
+        when(pdfComparator.compare(any(), any(), any())).thenReturn(identical());
+
+        List<PolicyResult> results = orchestrator.run(xmlFiles, new File(tempDir, "output"));
+
+        assertTrue(results.get(0).isPassed());
+        assertEquals(Stage.SUBMIT, results.get(1).getFailedStage());
+        assertEquals("broken.xml", results.get(1).getPolicyNumber());
+        assertInstanceOf(IllegalArgumentException.class, results.get(1).getError());
+        assertTrue(results.get(2).isPassed());
+    }
+
+    private static ComparisonResult identical() {
+        ComparisonResult result = new ComparisonResult();
+        result.setVisuallyIdentical(true);
+        result.setTextDifferences(List.of());
+        result.setFontDifferences(List.of());
+        return result;
+    }
+
+    private List<File> createXmlFiles() throws IOException {
+        File inputDir = new File(tempDir, "input");
+        inputDir.mkdirs();
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < POLICIES; i++) {
+            File file = new File(inputDir, "policy-" + i + ".xml");
+            Files.writeString(file.toPath(), "<policy><policyNumber>POL-" + i + "</policyNumber></policy>");
+            files.add(file);
+        }
+        return files;
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.testsuite.processor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jms.connection.CachingConnectionFactory;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import jakarta.jms.BytesMessage;
+import jakarta.jms.Message;
+
+public class DocumentReplyListenerTest {
+
+    private static final String REPLY_QUEUE = "DOC.GEN.REPLY.QUEUE";
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private EmbeddedActiveMQ broker;
+    private ActiveMQConnectionFactory connectionFactory;
+    private CachingConnectionFactory producerConnectionFactory;
+    private DocumentReplyListener listener;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        broker = new EmbeddedActiveMQ();
+        broker.setConfiguration(new ConfigurationImpl()
+                .setPersistenceEnabled(false)
+                .setSecurityEnabled(false)
+                .addAcceptorConfiguration("invm", "vm://0"));
+        broker.start();
+        connectionFactory = new ActiveMQConnectionFactory("vm://0");
+        producerConnectionFactory = new CachingConnectionFactory(connectionFactory);
+
+        listener = new DocumentReplyListener(connectionFactory);
+        ReflectionTestUtils.setField(listener, "enabled", true);
+        ReflectionTestUtils.setField(listener, "replyQueueName", REPLY_QUEUE);
+        ReflectionTestUtils.setField(listener, "concurrency", "2-4");
+        ReflectionTestUtils.invokeMethod(listener, "init");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        ReflectionTestUtils.invokeMethod(listener, "shutdown");
+        producerConnectionFactory.destroy();
+        connectionFactory.close();
+        broker.stop();
+    }
+
+    @Test
+    void completesEachPolicyWithItsOwnReply() throws Exception {
+        List<CompletableFuture<byte[]>> replies = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            replies.add(listener.awaitPDF("POL-" + i, TIMEOUT));
+        }
+        for (int i = 19; i >= 0; i--) {
+            sendPdf("POL-" + i);
+        }
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals("%PDF POL-" + i, new String(replies.get(i).get(10, TimeUnit.SECONDS)));
+        }
+        assertEquals(0, listener.getPendingCount());
+    }
+
+    @Test
+    void keepsRepliesThatArriveBeforeTheyAreAwaited() throws Exception {
+        sendPdf("POL-EARLY");
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (listener.getPendingCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals("%PDF POL-EARLY", new String(listener.awaitPDF("POL-EARLY", TIMEOUT).get(10, TimeUnit.SECONDS)));
+    }
+
+    @Test
+    void failureRepliesAndTimeoutsCompleteExceptionally() {
+        CompletableFuture<byte[]> failed = listener.awaitPDF("POL-FAIL", TIMEOUT);
+        CompletableFuture<byte[]> missing = listener.awaitPDF("POL-MISSING", Duration.ofMillis(50));
+        new JmsTemplate(producerConnectionFactory).send(REPLY_QUEUE, session -> {
+            Message message = session.createTextMessage("Template not found");
+            message.setJMSCorrelationID("POL-FAIL");
+            return message;
+        });
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> failed.get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause().getMessage().contains("Template not found"));
+        e = assertThrows(ExecutionException.class, () -> missing.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, e.getCause());
+    }
+
+    @Test
+    void dropsRepliesThatArriveAfterTheWaitTimedOut() {
+        CompletableFuture<byte[]> missing = listener.awaitPDF("POL-LATE", Duration.ofMillis(10));
+        assertThrows(ExecutionException.class, () -> missing.get(10, TimeUnit.SECONDS));
+
+        ReflectionTestUtils.invokeMethod(listener, "onReply", pdfMessage("POL-LATE"));
+
+        assertEquals(0, listener.getPendingCount());
+    }
+
+    @Test
+    void dropsDuplicateReplies() throws Exception {
+        CompletableFuture<byte[]> reply = listener.awaitPDF("POL-DUP", TIMEOUT);
+        ReflectionTestUtils.invokeMethod(listener, "onReply", pdfMessage("POL-DUP"));
+        reply.get(10, TimeUnit.SECONDS);
+
+        ReflectionTestUtils.invokeMethod(listener, "onReply", pdfMessage("POL-DUP"));
+
+        assertEquals(0, listener.getPendingCount());
+    }
+
+    @Test
+    void boundsAndExpiresUnclaimedReplies() throws Exception {
+        ReflectionTestUtils.setField(listener, "maxUnclaimed", 2);
+        for (int i = 0; i < 5; i++) {
+            ReflectionTestUtils.invokeMethod(listener, "onReply", pdfMessage("POL-" + i));
+        }
+        assertEquals(2, listener.getPendingCount());
+
+        ReflectionTestUtils.setField(listener, "retentionSeconds", 0L);
+        assertEquals("%PDF POL-0", new String(listener.awaitPDF("POL-0", TIMEOUT).get(10, TimeUnit.SECONDS)));
+        ReflectionTestUtils.invokeMethod(listener, "onReply", pdfMessage("POL-2"));
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (listener.getPendingCount() > 1 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, listener.getPendingCount(), "POL-1 is still waiting to be claimed");
+    }
+
+    /** A reply as the listener container would pass it, without going through the broker */
+    private static BytesMessage pdfMessage(String policyNumber) throws Exception {
+        byte[] pdf = ("%PDF " + policyNumber).getBytes();
+        BytesMessage message = mock(BytesMessage.class);
+        when(message.getJMSCorrelationID()).thenReturn(policyNumber);
+        when(message.getBodyLength()).thenReturn((long) pdf.length);
+        doAnswer(invocation -> {
+            byte[] target = invocation.getArgument(0);
+            System.arraycopy(pdf, 0, target, 0, pdf.length);
+            return pdf.length;
+        }).when(message).readBytes(any(byte[].class));
+        return message;
+    }
+
+    private void sendPdf(String policyNumber) {
+        new JmsTemplate(producerConnectionFactory).send(REPLY_QUEUE, session -> {
+            BytesMessage message = session.createBytesMessage();
+            message.writeBytes(("%PDF " + policyNumber).getBytes());
+            message.setJMSCorrelationID(policyNumber);
+            return message;
+        });
+    }
+}
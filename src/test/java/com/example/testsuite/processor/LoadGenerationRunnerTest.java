@@ -0,0 +1,135 @@
+package com.example.testsuite.processor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.testsuite.controller.StubDocumentGeneratorController;
+import com.example.testsuite.processor.LoadGenerationRunner.LoadReport;
+import com.example.testsuite.processor.LoadGenerationRunner.Transport;
+import com.example.testsuite.processor.SoapEnvelopProcessor.SoapEnvelope;
+
+public class LoadGenerationRunnerTest {
+
+    private static final long GENERATION_MILLIS = 50;
+
+    @TempDir
+    File tempDir;
+
+    private AsyncSoapSubmitter soapSubmitter;
+    private DocumentMessageProcessor messageProcessor;
+    private StubDocumentGeneratorController stub;
+    private LoadGenerationRunner runner;
+
+    @BeforeEach
+    void setUp() {
+        XMLFileProcessor xmlFileProcessor = new XMLFileProcessor();
+        stub = new StubDocumentGeneratorController(xmlFileProcessor);
+        ReflectionTestUtils.setField(stub, "minGenerationMillis", GENERATION_MILLIS);
+        ReflectionTestUtils.setField(stub, "maxGenerationMillis", GENERATION_MILLIS);
+
+        // Submissions and retrievals go straight to the stub generator instead of over HTTP
+        soapSubmitter = mock(AsyncSoapSubmitter.class);
+        when(soapSubmitter.submitAsync(any(SoapEnvelope.class))).thenAnswer(invocation -> {
+            ByteArrayOutputStream envelope = new ByteArrayOutputStream();
+            invocation.getArgument(0, SoapEnvelope.class).writeTo(envelope);
+            return CompletableFuture.completedFuture(stub.submit(envelope.toString(StandardCharsets.UTF_8)));
+        });
+        messageProcessor = mock(DocumentMessageProcessor.class);
+        when(messageProcessor.retrievePDFAsync(anyString()))
+                .thenAnswer(invocation -> poll(invocation.getArgument(0, String.class)));
+
+        runner = new LoadGenerationRunner(new XmlCorpusIndex(), new SoapEnvelopProcessor(), soapSubmitter,
+                messageProcessor);
+        ReflectionTestUtils.setField(runner, "transport", Transport.SOAP);
+        ReflectionTestUtils.setField(runner, "maxOutstanding", 10000);
+        ReflectionTestUtils.setField(runner, "lob", "PK0001");
+        ReflectionTestUtils.setField(runner, "targetEnvironment", "ETE");
+        ReflectionTestUtils.setField(runner, "emailAddress", "fake@email.com");
+    }
+
+    @Test
+    void startsRequestsAtTheTargetRateAndMeasuresEndToEndLatency() throws IOException {
+        File outputDir = new File(tempDir, "output");
+
+        LoadReport report = runner.run(createXmlFiles(5), 100, Duration.ofSeconds(1), outputDir);
+
+        assertEquals(100, report.getRequests());
+        assertEquals(100, report.getCompleted());
+        assertEquals(0, report.getFailed());
+        assertEquals(0, report.getDropped());
+        assertEquals(100, report.getAchievedRatePerSecond(), 10);
+        assertEquals(100, report.getEndToEndLatency().getCount());
+        assertTrue(report.getEndToEndLatency().getP50Millis() >= GENERATION_MILLIS,
+                "p50 " + report.getEndToEndLatency().getP50Millis() + " ms");
+        assertTrue(report.getSubmitLatency().getP99Millis() < report.getEndToEndLatency().getP50Millis());
+        // The last of 20 passes over the corpus
+        verify(messageProcessor).retrievePDFAsync("POL-4-19");
+        assertTrue(new File(outputDir, "load-report.json").isFile());
+        assertTrue(new File(outputDir, "end-to-end-latency.hgrm").isFile());
+    }
+
+    @Test
+    void dropsArrivalsBeyondTheOutstandingLimit() throws IOException {
+        ReflectionTestUtils.setField(runner, "maxOutstanding", 2);
+
+        LoadReport report = runner.run(createXmlFiles(5), 200, Duration.ofMillis(250), new File(tempDir, "output"));
+
+        assertEquals(50, report.getRequests());
+        assertTrue(report.getDropped() > 0);
+        assertEquals(report.getRequests() - report.getDropped(), report.getCompleted());
+    }
+
+    @Test
+    void countsFailedRequests() throws IOException {
+        when(messageProcessor.retrievePDFAsync(anyString()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Timed out")));
+
+        LoadReport report = runner.run(createXmlFiles(2), 100, Duration.ofMillis(100), new File(tempDir, "output"));
+
+        assertEquals(10, report.getRequests());
+        assertEquals(0, report.getCompleted());
+        assertEquals(10, report.getFailed());
+        assertEquals(0, report.getEndToEndLatency().getCount());
+    }
+
+    /** Polls the stub every few milliseconds, as retrievePDFAsync polls the document API */
+    private CompletableFuture<byte[]> poll(String policyNumber) {
+        return CompletableFuture.supplyAsync(() -> stub.getPdf(policyNumber),
+                        CompletableFuture.delayedExecutor(5, TimeUnit.MILLISECONDS))
+                .thenCompose(response -> response.getStatusCode().is2xxSuccessful()
+                        ? CompletableFuture.completedFuture(response.getBody())
+                        : poll(policyNumber));
+    }
+
+    private List<File> createXmlFiles(int count) throws IOException {
+        File inputDir = new File(tempDir, "input");
+        inputDir.mkdirs();
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            File file = new File(inputDir, "policy-" + i + ".xml");
+            Files.writeString(file.toPath(), "<policy><policyNumber>POL-" + i + "</policyNumber></policy>");
+            files.add(file);
+        }
+        return files;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.testsuite.processor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jms.connection.CachingConnectionFactory;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.testsuite.config.MQConfig;
+
+public class QueuePublisherTest {
+
+    private static final String QUEUE = "DOC.GEN.REQUEST.QUEUE";
+
+    private EmbeddedActiveMQ broker;
+    private ActiveMQConnectionFactory connectionFactory;
+    private CachingConnectionFactory cachingConnectionFactory;
+    private QueuePublisher publisher;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        broker = new EmbeddedActiveMQ();
+        broker.setConfiguration(new ConfigurationImpl()
+                .setPersistenceEnabled(false)
+                .setSecurityEnabled(false)
+                .addAcceptorConfiguration("invm", "vm://0"));
+        broker.start();
+        connectionFactory = new ActiveMQConnectionFactory("vm://0");
+
+        cachingConnectionFactory = new CachingConnectionFactory(connectionFactory);
+        cachingConnectionFactory.setSessionCacheSize(4);
+        MQConfig config = new MQConfig();
+        ReflectionTestUtils.setField(config, "queueName", QUEUE);
+        publisher = new QueuePublisher(config.jmsTemplate(cachingConnectionFactory),
+                config.transactedJmsTemplate(cachingConnectionFactory));
+        ReflectionTestUtils.setField(publisher, "queueName", QUEUE);
+        ReflectionTestUtils.setField(publisher, "batchSize", 100);
+        ReflectionTestUtils.invokeMethod(publisher, "init");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        ReflectionTestUtils.invokeMethod(publisher, "shutdown");
+        cachingConnectionFactory.destroy();
+        connectionFactory.close();
+        broker.stop();
+    }
+
+    @Test
+    void sendsBatchesInOrder() {
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            messages.add("<policy>" + i + "</policy>");
+        }
+
+        assertEquals(250, publisher.sendBatch(messages));
+        publisher.send("<policy>last</policy>");
+
+        List<String> received = receiveAll();
+        assertEquals(251, received.size());
+        assertEquals(messages, received.subList(0, 250));
+        assertEquals("<policy>last</policy>", received.get(250));
+    }
+
+    @Test
+    void asyncSendsCompleteWhenTheBrokerHasTheMessages() throws Exception {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            futures.add(publisher.sendAsync("<policy>" + i + "</policy>"));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+        assertEquals(50, receiveAll().size());
+    }
+
+    @Test
+    void asyncSendsWorkWithoutACachingConnectionFactory() throws Exception {
+        MQConfig config = new MQConfig();
+        ReflectionTestUtils.setField(config, "queueName", QUEUE);
+        QueuePublisher uncached = new QueuePublisher(config.jmsTemplate(connectionFactory),
+                config.transactedJmsTemplate(connectionFactory));
+        ReflectionTestUtils.setField(uncached, "queueName", QUEUE);
+        ReflectionTestUtils.invokeMethod(uncached, "init");
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                futures.add(uncached.sendAsync("<policy>" + i + "</policy>"));
+            }
+
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+        } finally {
+            ReflectionTestUtils.invokeMethod(uncached, "shutdown");
+        }
+
+        assertEquals(10, receiveAll().size());
+    }
+
+    private List<String> receiveAll() {
+        CachingConnectionFactory consumerConnectionFactory = new CachingConnectionFactory(connectionFactory);
+        JmsTemplate consumer = new JmsTemplate(consumerConnectionFactory);
+        consumer.setReceiveTimeout(500);
+        List<String> received = new ArrayList<>();
+        for (Object message = consumer.receiveAndConvert(QUEUE); message != null;
+                message = consumer.receiveAndConvert(QUEUE)) {
+            received.add((String) message);
+        }
+        consumerConnectionFactory.destroy();
+        return received;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.testsuite.processor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Document;
+
+import com.example.testsuite.processor.SoapEnvelopProcessor.SoapEnvelope;
+
+public class SoapEnvelopProcessorTest {
+
+    private static final String POLICY_XML = "\uFEFF<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<policy><policyNumber>POL-1</policyNumber><insured>Zoë &amp; Co</insured></policy>";
+
+    @TempDir
+    File tempDir;
+
+    private final SoapEnvelopProcessor processor = new SoapEnvelopProcessor();
+
+    @Test
+    void wrapsThePolicyWithoutItsDeclaration() throws Exception {
+        String envelope = processor.createSoapEnvelope("PK0001", "ETE", "a&b@email.com", POLICY_XML + "\n");
+
+        assertEquals(1, envelope.split("<\\?xml", -1).length - 1);
+        Document document = DocumentBuilderFactory.newInstance()
+                .newDocumentBuilder().parse(new ByteArrayInputStream(envelope.getBytes(StandardCharsets.UTF_8)));
+        assertEquals("a&b@email.com", document.getElementsByTagName("EmailAddress").item(0).getTextContent());
+        assertEquals("Zoë & Co", document.getElementsByTagName("insured").item(0).getTextContent());
+    }
+
+    @Test
+    void streamedEnvelopesMatchTheBuiltOne() throws IOException {
+        Path xmlFile = tempDir.toPath().resolve("policy.xml");
+        Files.writeString(xmlFile, POLICY_XML);
+        String expected = processor.createSoapEnvelope("PK0001", "ETE", "fake@email.com", POLICY_XML);
+
+        assertEquals(expected, write(processor.streamSoapEnvelope("PK0001", "ETE", "fake@email.com", POLICY_XML)));
+        assertEquals(expected, write(processor.streamSoapEnvelope("PK0001", "ETE", "fake@email.com", xmlFile)));
+    }
+
+    @Test
+    void rejectsEmptyContent() throws IOException {
+        Path emptyFile = Files.createFile(tempDir.toPath().resolve("empty.xml"));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> processor.createSoapEnvelope("PK0001", "ETE", "fake@email.com", "<?xml version=\"1.0\"?>  "));
+        assertThrows(IllegalArgumentException.class,
+                () -> processor.streamSoapEnvelope("PK0001", "ETE", "fake@email.com", (String) null));
+        assertThrows(IllegalArgumentException.class,
+                () -> processor.streamSoapEnvelope("PK0001", "ETE", "fake@email.com", emptyFile));
+    }
+
+    @Test
+    void streamingAllocationDoesNotGrowWithThePayload() throws IOException {
+        Path xmlFile = tempDir.toPath().resolve("large.xml");
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\"?><policy>");
+        try (Writer writer = Files.newBufferedWriter(xmlFile)) {
+            writer.write(xml.toString());
+            for (int i = 0; i < 200_000; i++) {
+                String line = "<coverage id=\"" + i + "\">Some coverage description of reasonable length</coverage>\n";
+                writer.write(line);
+                xml.append(line);
+            }
+            writer.write("</policy>");
+            xml.append("</policy>");
+        }
+        String xmlContent = xml.toString();
+        SoapEnvelope fromFile = processor.streamSoapEnvelope("PK0001", "ETE", "fake@email.com", xmlFile);
+        SoapEnvelope fromString = processor.streamSoapEnvelope("PK0001", "ETE", "fake@email.com", xmlContent);
+        // Warm up so that class loading does not count
+        fromFile.writeTo(OutputStream.nullOutputStream());
+        fromString.writeTo(OutputStream.nullOutputStream());
+
+        long fileAllocation = allocatedBytes(fromFile);
+        long stringAllocation = allocatedBytes(fromString);
+
+        assertTrue(xmlContent.length() > 10_000_000);
+        assertTrue(fileAllocation < 1_000_000, "Allocated " + fileAllocation + " bytes");
+        assertTrue(stringAllocation < 1_000_000, "Allocated " + stringAllocation + " bytes");
+    }
+
+    private static String write(SoapEnvelope envelope) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        envelope.writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static long allocatedBytes(SoapEnvelope envelope) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        envelope.writeTo(OutputStream.nullOutputStream());
+        return threads.getCurrentThreadAllocatedBytes() - before;
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.testsuite.processor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.testsuite.processor.XmlCorpusIndex.Entry;
+
+public class XmlCorpusIndexTest {
+
+    private static final String POLICY_XML = "\uFEFF<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<policy><policyNumber>POL-Zoë</policyNumber><PassDate>2024-01-31</PassDate></policy>\n";
+
+    @TempDir
+    Path tempDir;
+
+    private Path corpus;
+    private Path indexDirectory;
+
+    private XmlCorpusIndex index;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        corpus = Files.createDirectory(tempDir.resolve("corpus"));
+        indexDirectory = tempDir.resolve("index");
+        index = new XmlCorpusIndex();
+        ReflectionTestUtils.setField(index, "persist", true);
+        ReflectionTestUtils.setField(index, "indexDirectory", indexDirectory.toString());
+    }
+
+    @Test
+    void indexesPolicyNumbersAndByteRanges() throws IOException {
+        Files.writeString(corpus.resolve("policy.xml"), POLICY_XML);
+
+        Entry entry = index.load(corpus).get(0);
+
+        byte[] bytes = Files.readAllBytes(corpus.resolve("policy.xml"));
+        assertEquals("POL-Zoë", entry.getPolicyNumber());
+        assertEquals("POL-Zoë", new String(bytes, entry.getPolicyNumberStart(),
+                entry.getPolicyNumberEnd() - entry.getPolicyNumberStart(), StandardCharsets.UTF_8));
+        assertEquals("2024-01-31", new String(bytes, entry.getPassDateStart(),
+                entry.getPassDateEnd() - entry.getPassDateStart(), StandardCharsets.UTF_8));
+        assertEquals("<policy><policyNumber>POL-Zoë</policyNumber><PassDate>2024-01-31</PassDate></policy>",
+                entry.readPayload());
+    }
+
+    @Test
+    void walksSubfoldersAndOrdersByRelativePath() throws IOException {
+        Files.createDirectories(corpus.resolve("b"));
+        Files.createDirectories(corpus.resolve("c/d"));
+        Files.writeString(corpus.resolve("c/d/policy-3.xml"), policy(3));
+        Files.writeString(corpus.resolve("b/policy-2.xml"), policy(2));
+        Files.writeString(corpus.resolve("a-policy-1.XML"), policy(1));
+        Files.writeString(corpus.resolve("notes.txt"), "not a policy");
+
+        List<Entry> entries = index.load(corpus);
+
+        assertEquals(List.of("POL-1", "POL-2", "POL-3"),
+                entries.stream().map(Entry::getPolicyNumber).collect(Collectors.toList()));
+        assertEquals(-1, entries.get(0).getPassDateStart());
+    }
+
+    @Test
+    void reusesThePersistedIndexUntilAFileChanges() throws IOException {
+        Path file = corpus.resolve("policy.xml");
+        Files.writeString(file, policy(1));
+        index.load(corpus);
+        Path indexFile = indexFile();
+        assertFalse(Files.exists(corpus.resolve(".corpus-index")));
+        FileTime written = Files.getLastModifiedTime(indexFile);
+        Files.setLastModifiedTime(indexFile, FileTime.fromMillis(written.toMillis() - 10_000));
+        FileTime aged = Files.getLastModifiedTime(indexFile);
+
+        assertEquals("POL-1", index.load(corpus).get(0).getPolicyNumber());
+        assertEquals(aged, Files.getLastModifiedTime(indexFile), "Index rewritten although nothing changed");
+
+        FileTime modified = Files.getLastModifiedTime(file);
+        Files.writeString(file, policy(2));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modified.toMillis() + 1000));
+
+        assertEquals("POL-2", index.load(corpus).get(0).getPolicyNumber());
+        assertNotEquals(aged, Files.getLastModifiedTime(indexFile));
+    }
+
+    @Test
+    void payloadsWrapLikeTheirContent() throws IOException {
+        File file = corpus.resolve("policy.xml").toFile();
+        Files.writeString(file.toPath(), POLICY_XML);
+        SoapEnvelopProcessor processor = new SoapEnvelopProcessor();
+
+        Entry entry = index.index(List.of(file)).get(0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        processor.streamSoapEnvelope("PK0001", "ETE", "fake@email.com", entry.payload()).writeTo(out);
+
+        assertEquals(processor.createSoapEnvelope("PK0001", "ETE", "fake@email.com", POLICY_XML),
+                out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void rejectsFilesWithoutPolicyNumber() throws IOException {
+        Files.writeString(corpus.resolve("policy.xml"), "<policy/>");
+
+        assertThrows(IllegalArgumentException.class, () -> index.load(corpus));
+    }
+
+    @Test
+    void discardsACorruptIndex() throws IOException {
+        Files.writeString(corpus.resolve("policy.xml"), policy(1));
+        index.load(corpus);
+        Files.write(indexFile(), new byte[] {'X', 'C', 'I', 'X', 0, 0, 0, 2, 0x7f, 0, 0, 0});
+
+        assertEquals("POL-1", index.load(corpus).get(0).getPolicyNumber());
+    }
+
+    @Test
+    void doesNotFollowLinkedDirectories() throws IOException {
+        Files.createDirectories(corpus.resolve("a"));
+        Files.writeString(corpus.resolve("a/policy-1.xml"), policy(1));
+        try {
+            Files.createSymbolicLink(corpus.resolve("a/loop"), corpus);
+        } catch (UnsupportedOperationException | IOException e) {
+            Assumptions.abort("Symbolic links not supported: " + e);
+        }
+
+        assertEquals(1, index.load(corpus).size());
+    }
+
+    @Test
+    void readsSmallPayloadsOntoTheHeap() throws IOException {
+        Files.writeString(corpus.resolve("policy.xml"), POLICY_XML);
+
+        assertFalse(index.load(corpus).get(0).payload().isDirect());
+    }
+
+    private Path indexFile() throws IOException {
+        try (var files = Files.list(indexDirectory)) {
+            return files.filter(file -> file.toString().endsWith(".idx")).findFirst().orElseThrow();
+        }
+    }
+
+    private static String policy(int number) {
+        return "<policy><policyNumber>POL-" + number + "</policyNumber></policy>";
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.testsuite.processor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.testsuite.processor.XmlTemplateEngine.Template;
+
+public class XmlTemplateEngineTest {
+
+    private static final String SEED = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<policy xmlns:x=\"urn:extra\">"
+            + "<metadata><policyNumber>POL-1</policyNumber><PassDate>2024-01-27</PassDate></metadata>"
+            + "<!-- kept --><x:note>a &lt; b</x:note>"
+            + "<coverage currency=\"USD\"><limits><collision>500</collision><glass>100</glass></limits></coverage>"
+            + "<history><PassDate>2023-01-27</PassDate></history>"
+            + "</policy>";
+
+    @TempDir
+    File tempDir;
+
+    private XmlTemplateEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new XmlTemplateEngine();
+        ReflectionTestUtils.setField(engine, "parallelism", 4);
+        ReflectionTestUtils.invokeMethod(engine, "init");
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(engine, "shutdown");
+    }
+
+    @Test
+    void overridesAllSelectedFieldsInOnePass() throws IOException {
+        Template template = engine.compile("/policy/metadata/policyNumber", "//PassDate",
+                "//limits/collision", "/policy/coverage/@currency", "/policy/coverage/@deductible");
+
+        String result = apply(template, "POL-42", "2025-06-30", "750 & more", "EUR", "250");
+
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<policy xmlns:x=\"urn:extra\">"
+                + "<metadata><policyNumber>POL-42</policyNumber><PassDate>2025-06-30</PassDate></metadata>"
+                + "<!-- kept --><x:note>a &lt; b</x:note>"
+                + "<coverage currency=\"EUR\" deductible=\"250\"><limits><collision>750 &amp; more</collision>"
+                + "<glass>100</glass></limits></coverage>"
+                + "<history><PassDate>2025-06-30</PassDate></history>"
+                + "</policy>", result);
+    }
+
+    @Test
+    void nullValuesLeaveFieldsUnchanged() throws IOException {
+        Template template = engine.compile("/policy/*/policyNumber", "/policy/metadata/PassDate");
+
+        String result = apply(template, null, "2025-06-30");
+
+        assertTrue(result.contains("<policyNumber>POL-1</policyNumber>"));
+        assertTrue(result.contains("<metadata><policyNumber>POL-1</policyNumber><PassDate>2025-06-30</PassDate>"));
+        assertTrue(result.contains("<history><PassDate>2023-01-27</PassDate></history>"));
+    }
+
+    @Test
+    void replacesNestedContentOfSelectedElements() throws IOException {
+        String result = apply(engine.compile("/policy/coverage"), "none");
+
+        assertTrue(result.contains("<coverage currency=\"USD\">none</coverage>"));
+    }
+
+    @Test
+    void writesUtf8AndKeepsTheStandaloneDeclaration() throws IOException {
+        String seed = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\" standalone=\"yes\"?>"
+                + "<policy><holder>Zoë</holder><policyNumber>POL-1</policyNumber></policy>";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        engine.compile("//policyNumber").apply(
+                new ByteArrayInputStream(seed.getBytes(StandardCharsets.ISO_8859_1)), out, "POL-2");
+
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                + "<policy><holder>Zoë</holder><policyNumber>POL-2</policyNumber></policy>",
+                out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void rejectsMalformedSelectorsAndValueCounts() {
+        assertThrows(IllegalArgumentException.class, () -> engine.compile("policy/metadata"));
+        assertThrows(IllegalArgumentException.class, () -> engine.compile("/policy//metadata"));
+        assertThrows(IllegalArgumentException.class, () -> engine.compile("/@currency"));
+        assertThrows(IllegalArgumentException.class, () -> apply(engine.compile("//PassDate"), "a", "b"));
+    }
+
+    @Test
+    void generatesDistinctVariantsOfEverySeed() throws IOException {
+        Path seedDir = new File(tempDir, "seeds").toPath();
+        Files.createDirectories(seedDir);
+        Path first = Files.writeString(seedDir.resolve("first.xml"), SEED);
+        Path second = Files.writeString(seedDir.resolve("second.xml"), SEED.replace("POL-1", "POL-2"));
+        Path outputDir = new File(tempDir, "variants").toPath();
+        Template template = engine.compile("//policyNumber", "//PassDate");
+
+        int written = engine.generate(List.of(first, second), 50, template,
+                (seed, variant) -> new String[] {seed.charAt(0) + "-" + variant, null}, outputDir);
+
+        assertEquals(100, written);
+        XMLFileProcessor xmlFileProcessor = new XMLFileProcessor();
+        Set<String> policyNumbers = new HashSet<>();
+        try (var variants = Files.list(outputDir)) {
+            for (Path variant : variants.toList()) {
+                policyNumbers.add(xmlFileProcessor.extractPolicyNumber(Files.readString(variant)));
+            }
+        }
+        assertEquals(100, policyNumbers.size());
+        assertTrue(policyNumbers.contains("s-49"));
+        assertTrue(Files.readString(outputDir.resolve("first-7.xml")).contains("<policyNumber>f-7</policyNumber>"));
+    }
+
+    private static String apply(Template template, String... values) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        template.apply(new ByteArrayInputStream(SEED.getBytes(StandardCharsets.UTF_8)), out, values);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
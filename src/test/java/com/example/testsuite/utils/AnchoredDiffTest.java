@@ -0,0 +1,91 @@
+package com.example.testsuite.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class AnchoredDiffTest {
+
+    @Test
+    void reportsEverySeparateEdit() {
+        String goldCopy = words(new Random(1), 4000);
+        StringBuilder generated = new StringBuilder(goldCopy);
+        generated.replace(9000, 9004, "XXXXXXX");
+        generated.insert(5000, "inserted text");
+        generated.delete(1000, 1010);
+
+        List<LineDiff.Hunk> hunks = AnchoredDiff.diff(generated, goldCopy);
+
+        assertEquals(3, hunks.size(), hunks::toString);
+        assertEquals(goldCopy, apply(generated, goldCopy, hunks));
+        assertEquals(1000, hunks.get(0).getAStart());
+        assertEquals(0, hunks.get(0).getAEnd() - hunks.get(0).getAStart());
+    }
+
+    @Test
+    void resynchronizesAfterInsertionLargerThanSearchWindow() {
+        Random random = new Random(2);
+        String goldCopy = words(random, 5000);
+        String inserted = words(random, 3 * AnchoredDiff.SEARCH_WINDOW / 5);
+        String generated = goldCopy.substring(0, 12000) + inserted + goldCopy.substring(12000);
+
+        List<LineDiff.Hunk> hunks = AnchoredDiff.diff(generated, goldCopy);
+
+        assertEquals(1, hunks.size(), hunks::toString);
+        assertEquals(inserted.length(), hunks.get(0).getAEnd() - hunks.get(0).getAStart());
+        assertEquals(0, hunks.get(0).getBEnd() - hunks.get(0).getBStart());
+    }
+
+    @Test
+    void hunksAlwaysTransformFirstTextIntoSecond() {
+        Random random = new Random(3);
+        for (int round = 0; round < 300; round++) {
+            String goldCopy = words(random, random.nextInt(300));
+            StringBuilder generated = new StringBuilder(goldCopy);
+            for (int edit = random.nextInt(6); edit > 0 && generated.length() > 0; edit--) {
+                int at = random.nextInt(generated.length());
+                generated.replace(at, Math.min(generated.length(), at + random.nextInt(20)), words(random, random.nextInt(4)));
+            }
+
+            assertEquals(goldCopy, apply(generated, goldCopy, AnchoredDiff.diff(generated, goldCopy)));
+        }
+    }
+
+    @Test
+    void staysLinearOnRepetitiveText() {
+        // Signature lines and separators: one character repeated, so nearly every block shares one hash
+        String goldCopy = "_".repeat(2_000_000);
+        StringBuilder generated = new StringBuilder(goldCopy);
+        for (int at = 50; at < generated.length(); at += 100) {
+            generated.setCharAt(at, 'x');
+        }
+
+        List<LineDiff.Hunk> hunks = assertTimeout(Duration.ofSeconds(10),
+                () -> AnchoredDiff.diff(generated, goldCopy));
+
+        assertEquals(goldCopy, apply(generated, goldCopy, hunks));
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(random.nextInt(1000)).append(i % 12 == 11 ? '\n' : ' ');
+        }
+        return text.toString();
+    }
+
+    private static String apply(CharSequence a, CharSequence b, List<LineDiff.Hunk> hunks) {
+        StringBuilder result = new StringBuilder();
+        int position = 0;
+        for (LineDiff.Hunk hunk : hunks) {
+            assertTrue(hunk.getAStart() >= position, "Hunks must be ordered and disjoint");
+            result.append(a, position, hunk.getAStart()).append(b, hunk.getBStart(), hunk.getBEnd());
+            position = hunk.getAEnd();
+        }
+        return result.append(a, position, a.length()).toString();
+    }
+}
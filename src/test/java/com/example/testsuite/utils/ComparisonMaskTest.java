@@ -0,0 +1,73 @@
+package com.example.testsuite.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.example.testsuite.utils.DocumentContentExtractor.ExtractedContent;
+
+import java.awt.image.BufferedImage;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.yaml.snakeyaml.Yaml;
+
+public class ComparisonMaskTest {
+
+    private static final String RULES = String.join("\n",
+            "default:",
+            "  text:",
+            "    - regex: '\\d{2}/\\d{2}/\\d{4}'",
+            "INSURANCE_POLICY:",
+            "  text:",
+            "    - token: 'REF-1.2'",
+            "      ignore-case: true",
+            "  fonts: [Code128]",
+            "  regions:",
+            "    - {page: 2, x: 10, y: 20, width: 30, height: 40}");
+
+    @Test
+    void templatesIncludeTheDefaultRules() {
+        Map<String, ComparisonMask> masks = MaskRules.compile(new Yaml().load(RULES));
+        ComparisonMask policy = masks.get("INSURANCE_POLICY");
+
+        assertTrue(policy.getTextPattern().matcher("01/02/2024").matches());
+        assertTrue(policy.getTextPattern().matcher("ref-1.2").matches());
+        assertFalse(policy.getTextPattern().matcher("REF-112").matches());
+        assertTrue(policy.isFontExempt("ABCDEF+Code128"));
+        assertFalse(policy.isFontExempt("Helvetica"));
+        assertTrue(policy.isMasked(1, 15, 30));
+        assertFalse(policy.isMasked(0, 15, 30));
+        assertTrue(masks.get(MaskRules.DEFAULT_TEMPLATE).getRegions().isEmpty());
+    }
+
+    @Test
+    void masksTextAndMovesPageEnds() {
+        ComparisonMask mask = MaskRules.compile(new Yaml().load(RULES)).get("INSURANCE_POLICY");
+        String page1 = "Issued 01/02/2024\n";
+        String page2 = "Ref REF-1.2 on 31/12/2024\n";
+        ExtractedContent content = new ExtractedContent(page1 + page2, null,
+                new int[] {page1.length(), page1.length() + page2.length()});
+
+        ExtractedContent masked = mask.maskText(content);
+
+        String placeholder = ComparisonMask.TEXT_PLACEHOLDER;
+        String maskedPage1 = "Issued " + placeholder + "\n";
+        assertEquals(maskedPage1 + "Ref " + placeholder + " on " + placeholder + "\n", masked.getText());
+        assertEquals(maskedPage1.length(), masked.getPageEnd(0));
+        assertEquals(masked.getText().length(), masked.getPageEnd(1));
+    }
+
+    @Test
+    void paintsRegionsOnTheirPageOnly() {
+        ComparisonMask mask = MaskRules.compile(new Yaml().load(RULES)).get("INSURANCE_POLICY");
+        BufferedImage image = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+
+        mask.maskImage(image, 0, 144);
+        assertEquals(0, image.getRGB(30, 50) & 0xFFFFFF);
+
+        mask.maskImage(image, 1, 144);
+        assertEquals(0xFFFFFF, image.getRGB(20, 40) & 0xFFFFFF);
+        assertEquals(0xFFFFFF, image.getRGB(79, 99) & 0xFFFFFF);
+        assertEquals(0, image.getRGB(80, 50) & 0xFFFFFF);
+        assertEquals(0, image.getRGB(19, 50) & 0xFFFFFF);
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.testsuite.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.pdfbox.text.TextPosition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.testsuite.utils.ComparisonSession.SessionDocument;
+import com.example.testsuite.utils.DocumentContentExtractor.ExtractedContent;
+
+public class ComparisonSessionTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void readsAndParsesEachFileOnlyOnce() throws IOException {
+        File generated = createPdf("generated.pdf");
+        File goldCopy = createPdf("gold.pdf");
+
+        try (ComparisonSession session = ComparisonSession.open(generated, goldCopy, new GoldCopyCache())) {
+            SessionDocument document = session.getGenerated();
+            assertNull(ReflectionTestUtils.getField(document, "bytes"), "Read before it was needed");
+            byte[] bytes = document.getBytes();
+            session.getGoldCopy().getBytes();
+            // Everything after the first read must come from memory
+            Files.delete(generated.toPath());
+            Files.delete(goldCopy.toPath());
+
+            assertSame(bytes, document.getBytes());
+            PDDocument parsed = document.getDocument();
+            assertSame(parsed, document.getDocument());
+            ExtractedContent content = document.getContent();
+            assertSame(content, document.getContent());
+            assertSame(parsed, document.getDocument(), "Content extraction parsed the document again");
+            try (PDDocument copy = document.loadCopy()) {
+                assertNotSame(parsed, copy);
+                assertEquals(parsed.getNumberOfPages(), copy.getNumberOfPages());
+            }
+            assertEquals(content.getText(), session.getGoldCopy().getContent().getText());
+        }
+    }
+
+    @Test
+    void onePassGivesTheSameTextAndFontsAsSeparateExtraction() throws IOException {
+        File pdf = createPdf("document.pdf");
+
+        ExtractedContent content;
+        try (ComparisonSession session = ComparisonSession.open(pdf, pdf, new GoldCopyCache())) {
+            content = session.getGenerated().getContent();
+        }
+
+        try (PDDocument document = PDDocument.load(pdf)) {
+            assertEquals(new PDFTextStripper().getText(document), content.getText());
+
+            GlyphFontCollector collector = new GlyphFontCollector();
+            collector.getText(document);
+            List<String> runGlyphs = new ArrayList<>();
+            FontRunIndex fontRuns = content.getFontRuns();
+            for (int run = 0; run < fontRuns.size(); run++) {
+                for (char glyph : fontRuns.getText(run).toCharArray()) {
+                    runGlyphs.add(fontRuns.getPage(run) + ":" + fontRuns.getFontName(run) + ":" + glyph);
+                }
+            }
+            assertEquals(collector.glyphs, runGlyphs);
+        }
+    }
+
+    @Test
+    void goldCopyContentComesFromTheCacheWithoutParsing() throws IOException {
+        GoldCopyCache goldCopyCache = new GoldCopyCache();
+        ReflectionTestUtils.setField(goldCopyCache, "enabled", true);
+        ReflectionTestUtils.setField(goldCopyCache, "directory", new File(tempDir, "cache").getPath());
+        ReflectionTestUtils.setField(goldCopyCache, "maxSizeMb", 16L);
+        ReflectionTestUtils.invokeMethod(goldCopyCache, "init");
+        File generated = createPdf("generated.pdf");
+        File goldCopy = createPdf("gold.pdf");
+
+        String text;
+        try (ComparisonSession session = ComparisonSession.open(generated, goldCopy, goldCopyCache)) {
+            text = session.getGoldCopy().getContent().getText();
+        }
+
+        try (ComparisonSession session = ComparisonSession.open(generated, goldCopy, goldCopyCache)) {
+            SessionDocument document = session.getGoldCopy();
+            assertEquals(text, document.getContent().getText());
+            assertNull(ReflectionTestUtils.getField(document, "document"), "Gold copy parsed despite a cache hit");
+        }
+    }
+
+    /**
+     * Records the page, font and character of every glyph, as the font comparison used to in its own pass
+     */
+    private static class GlyphFontCollector extends PDFTextStripper {
+        private final List<String> glyphs = new ArrayList<>();
+
+        GlyphFontCollector() throws IOException {
+            super();
+        }
+
+        @Override
+        protected void processTextPosition(TextPosition text) {
+            super.processTextPosition(text);
+            for (char glyph : text.getUnicode().toCharArray()) {
+                glyphs.add((getCurrentPageNo() - 1) + ":" + text.getFont().getName() + ":" + glyph);
+            }
+        }
+    }
+
+    /**
+     * Writes two pages mixing regular, bold and serif lines
+     */
+    private File createPdf(String name) throws IOException {
+        File file = new File(tempDir, name);
+        try (PDDocument document = new PDDocument()) {
+            addPage(document, new PDType1Font[] {PDType1Font.HELVETICA, PDType1Font.HELVETICA_BOLD},
+                    "Policy POL-1", "Premium 500");
+            addPage(document, new PDType1Font[] {PDType1Font.TIMES_ROMAN, PDType1Font.HELVETICA},
+                    "Excess 250", "Signed");
+            document.save(file);
+        }
+        return file;
+    }
+
+    private static void addPage(PDDocument document, PDType1Font[] fonts, String... lines) throws IOException {
+        PDPage page = new PDPage();
+        document.addPage(page);
+        try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
+            contentStream.beginText();
+            contentStream.newLineAtOffset(100, 700);
+            for (int line = 0; line < lines.length; line++) {
+                contentStream.setFont(fonts[line], 12);
+                contentStream.showText(lines[line]);
+                contentStream.newLineAtOffset(0, -20);
+            }
+            contentStream.endText();
+        }
+    }
+}
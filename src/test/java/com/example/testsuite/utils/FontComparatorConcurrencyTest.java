@@ -0,0 +1,113 @@
+package com.example.testsuite.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Stress test proving that a single FontComparator instance gives the same results when it is shared
+ * by many threads as when it is called sequentially.
+ */
+public class FontComparatorConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int CALLS_PER_PAIR = 25;
+
+    @TempDir
+    File tempDir;
+
+    private FontComparator fontComparator;
+    private final List<File[]> pairs = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        fontComparator = new FontComparator(new GoldCopyCache());
+
+        File goldCopy = createPdf("gold.pdf", PDType1Font.HELVETICA, "Policy POL-2024-001");
+        pairs.add(new File[] {goldCopy, goldCopy});
+        pairs.add(new File[] {createPdf("bold.pdf", PDType1Font.HELVETICA_BOLD, "Policy POL-2024-001"), goldCopy});
+        pairs.add(new File[] {createPdf("times.pdf", PDType1Font.TIMES_ROMAN, "Policy POL-2024-001"), goldCopy});
+        pairs.add(new File[] {createPdf("text.pdf", PDType1Font.COURIER, "Quote QTE-2024-999"), goldCopy});
+    }
+
+    @Test
+    void concurrentComparisonsMatchSequentialResults() throws Exception {
+        List<String> expected = new ArrayList<>();
+        for (File[] pair : pairs) {
+            expected.add(describe(fontComparator.compareFonts(pair[0], pair[1])));
+        }
+        assertEquals("", expected.get(0), "Identical PDFs must not report font differences");
+        for (int i = 1; i < expected.size(); i++) {
+            assertFalse(expected.get(i).isEmpty(), "Expected font differences for pair " + i);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            List<Integer> pairIndexes = new ArrayList<>();
+            for (int call = 0; call < CALLS_PER_PAIR * pairs.size(); call++) {
+                int pairIndex = call % pairs.size();
+                File[] pair = pairs.get(pairIndex);
+                Callable<String> comparison = () -> {
+                    start.await();
+                    return describe(fontComparator.compareFonts(pair[0], pair[1]));
+                };
+                results.add(executor.submit(comparison));
+                pairIndexes.add(pairIndex);
+            }
+            start.countDown();
+
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(expected.get(pairIndexes.get(i)), results.get(i).get(60, TimeUnit.SECONDS),
+                        "Concurrent result differs from sequential result for pair " + pairIndexes.get(i));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private String describe(List<FontComparator.FontDifference> differences) {
+        return differences.stream()
+                .map(FontComparator.FontDifference::toString)
+                .sorted()
+                .collect(Collectors.joining("\n"));
+    }
+
+    private File createPdf(String name, PDType1Font font, String text) throws IOException {
+        File file = new File(tempDir, name);
+        try (PDDocument document = new PDDocument()) {
+            for (int pageNumber = 1; pageNumber <= 3; pageNumber++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
+                    contentStream.beginText();
+                    contentStream.setFont(font, 12);
+                    contentStream.newLineAtOffset(100, 700);
+                    contentStream.showText(text + " page " + pageNumber);
+                    contentStream.endText();
+                }
+            }
+            document.save(file);
+        }
+        return file;
+    }
+}
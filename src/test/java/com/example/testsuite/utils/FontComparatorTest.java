@@ -0,0 +1,80 @@
+package com.example.testsuite.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FontComparatorTest {
+
+    @TempDir
+    File tempDir;
+
+    private final FontComparator fontComparator = new FontComparator(new GoldCopyCache());
+
+    @Test
+    void reportsFontChangeOfRepeatedTextAtItsPosition() throws IOException {
+        File goldCopy = createPdf("gold.pdf", PDType1Font.HELVETICA_BOLD, 100);
+        File generated = createPdf("generated.pdf", PDType1Font.HELVETICA, 100);
+
+        List<FontComparator.FontDifference> differences = fontComparator.compareFonts(generated, goldCopy);
+
+        assertEquals(1, differences.size(), differences::toString);
+        FontComparator.FontDifference difference = differences.get(0);
+        assertEquals("Premium", difference.getText());
+        assertEquals(1, difference.getPage());
+        assertEquals(100, difference.getX(), 0.5);
+        assertTrue(difference.getGeneratedFont().getFontName().startsWith("Helvetica"));
+        assertTrue(difference.getGoldCopyFont().getFontName().startsWith("Helvetica-Bold"));
+    }
+
+    @Test
+    void identicalDocumentsHaveNoFontDifferences() throws IOException {
+        File document = createPdf("same.pdf", PDType1Font.HELVETICA_BOLD, 100);
+
+        assertTrue(fontComparator.compareFonts(document, document).isEmpty());
+    }
+
+    @Test
+    void pairsRunsOnePointApartAtTheLeftEdgeOfThePage() throws IOException {
+        File goldCopy = createPdf("gold.pdf", PDType1Font.HELVETICA_BOLD, 0.6f);
+        File generated = createPdf("generated.pdf", PDType1Font.HELVETICA, 0);
+
+        List<FontComparator.FontDifference> differences = fontComparator.compareFonts(generated, goldCopy);
+
+        assertEquals(1, differences.size(), differences::toString);
+        assertNotNull(differences.get(0).getGeneratedFont());
+        assertNotNull(differences.get(0).getGoldCopyFont());
+    }
+
+    /**
+     * Two pages that both show "Premium" in Helvetica; only the second occurrence uses the given font
+     * @param x horizontal offset of the text, in points
+     */
+    private File createPdf(String name, PDType1Font secondFont, float x) throws IOException {
+        File file = new File(tempDir, name);
+        try (PDDocument document = new PDDocument()) {
+            for (PDType1Font font : new PDType1Font[] {PDType1Font.HELVETICA, secondFont}) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
+                    contentStream.beginText();
+                    contentStream.setFont(font, 12);
+                    contentStream.newLineAtOffset(x, 700);
+                    contentStream.showText("Premium");
+                    contentStream.endText();
+                }
+            }
+            document.save(file);
+        }
+        return file;
+    }
+}
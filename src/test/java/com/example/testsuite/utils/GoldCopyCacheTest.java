@@ -0,0 +1,114 @@
+package com.example.testsuite.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class GoldCopyCacheTest {
+
+    @TempDir
+    File tempDir;
+
+    private File goldCopy;
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        goldCopy = new File(tempDir, "gold.pdf");
+        Files.writeString(goldCopy.toPath(), "gold copy v1");
+    }
+
+    @Test
+    void servesPageImagesFromDiskAcrossInstances() throws IOException {
+        BufferedImage first = cache(true).getPageImage(goldCopy, 0, "72.0dpi-RGB", this::render);
+        BufferedImage second = cache(true).getPageImage(goldCopy, 0, "72.0dpi-RGB", this::render);
+
+        assertEquals(1, loads.get(), "Page rendered again although it was cached");
+        assertEquals(BufferedImage.TYPE_INT_RGB, second.getType());
+        assertNull(RasterComparator.findFirstMismatch(page(), first));
+        assertNull(RasterComparator.findFirstMismatch(page(), second));
+    }
+
+    @Test
+    void keepsEntriesOfDifferentRenderSettingsApart() throws IOException {
+        GoldCopyCache cache = cache(true);
+
+        cache.getPageImage(goldCopy, 0, "72.0dpi-RGB", this::render);
+        cache.getPageImage(goldCopy, 0, "300.0dpi-RGB", this::render);
+        cache.getPageImage(goldCopy, 1, "72.0dpi-RGB", this::render);
+
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void changedGoldCopyMissesTheStaleEntry() throws IOException {
+        GoldCopyCache cache = cache(true);
+        assertEquals("v1", cache.getObject(goldCopy, "version", () -> load("v1")));
+
+        Files.writeString(goldCopy.toPath(), "gold copy version 2");
+
+        assertEquals("v2", cache.getObject(goldCopy, "version", () -> load("v2")));
+        assertEquals("v2", cache(true).getObject(goldCopy, "version", () -> load("v3")));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void discardsUnreadableEntries() throws IOException {
+        cache(true).getObject(goldCopy, "version", () -> load("v1"));
+        try (var entries = Files.walk(tempDir.toPath().resolve("cache"))) {
+            for (var entry : entries.filter(Files::isRegularFile).toList()) {
+                Files.writeString(entry, "corrupt");
+            }
+        }
+
+        assertEquals("v2", cache(true).getObject(goldCopy, "version", () -> load("v2")));
+    }
+
+    @Test
+    void disabledCacheAlwaysLoads() throws IOException {
+        GoldCopyCache cache = cache(false);
+
+        cache.getObject(goldCopy, "version", () -> load("v1"));
+        cache.getObject(goldCopy, "version", () -> load("v1"));
+
+        assertEquals(2, loads.get());
+        assertFalse(new File(tempDir, "cache").exists());
+    }
+
+    private GoldCopyCache cache(boolean enabled) throws IOException {
+        GoldCopyCache cache = new GoldCopyCache();
+        ReflectionTestUtils.setField(cache, "enabled", enabled);
+        ReflectionTestUtils.setField(cache, "directory", new File(tempDir, "cache").getPath());
+        ReflectionTestUtils.setField(cache, "maxSizeMb", 16L);
+        ReflectionTestUtils.invokeMethod(cache, "init");
+        return cache;
+    }
+
+    private String load(String value) {
+        loads.incrementAndGet();
+        return value;
+    }
+
+    private BufferedImage render() {
+        loads.incrementAndGet();
+        return page();
+    }
+
+    /** A page with a few coloured pixels */
+    private static BufferedImage page() {
+        BufferedImage image = new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, 0xFF0000);
+        image.setRGB(39, 29, 0x00FF00);
+        image.setRGB(20, 15, 0x123456);
+        return image;
+    }
+}
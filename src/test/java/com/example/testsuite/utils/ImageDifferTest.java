@@ -0,0 +1,103 @@
+package com.example.testsuite.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.testsuite.utils.ImageDiffer.DiffRegion;
+
+public class ImageDifferTest {
+
+    private static final int BLACK = 0x000000;
+
+    @Test
+    void identicalImagesHaveNoRegions() {
+        ImageDiffer differ = new ImageDiffer(0, false, 10);
+
+        assertTrue(differ.findRegions(0, white(), white(), 0).isEmpty());
+        assertEquals(0, differ.countChangedPixels(white(), white()));
+    }
+
+    @Test
+    void mergesNearbyChangesAndSeparatesDistantOnes() {
+        BufferedImage generated = white();
+        generated.setRGB(10, 10, BLACK);
+        generated.setRGB(14, 12, BLACK);
+        generated.setRGB(80, 80, BLACK);
+
+        List<DiffRegion> regions = new ImageDiffer(0, false, 10).findRegions(2, generated, white(), 10);
+
+        assertEquals(2, regions.size(), regions::toString);
+        DiffRegion first = regions.get(0);
+        assertEquals(2, first.getPage());
+        assertEquals(10, first.getX());
+        assertEquals(10, first.getY());
+        assertEquals(5, first.getWidth());
+        assertEquals(3, first.getHeight());
+        assertEquals(2, first.getPixelCount());
+        assertEquals(80, regions.get(1).getX());
+        assertEquals(1, regions.get(1).getPixelCount());
+    }
+
+    @Test
+    void ignoresChangesWithinTheChannelTolerance() {
+        BufferedImage generated = white();
+        generated.setRGB(50, 50, 0xFAFAFA);
+        generated.setRGB(60, 60, 0xF0FAFA);
+
+        ImageDiffer differ = new ImageDiffer(5, false, 10);
+
+        List<DiffRegion> regions = differ.findRegions(0, generated, white(), 0);
+        assertEquals(1, regions.size(), regions::toString);
+        assertEquals(60, regions.get(0).getX());
+        assertEquals(1, differ.countChangedPixels(generated, white()));
+    }
+
+    @Test
+    void ignoresEdgesShiftedByOnePixelWhenAskedTo() {
+        BufferedImage generated = white();
+        BufferedImage goldCopy = white();
+        for (int y = 20; y < 40; y++) {
+            generated.setRGB(20, y, BLACK);
+            goldCopy.setRGB(21, y, BLACK);
+        }
+        // A solid block has no counterpart nearby in the other image
+        for (int y = 70; y < 75; y++) {
+            for (int x = 70; x < 75; x++) {
+                generated.setRGB(x, y, BLACK);
+            }
+        }
+
+        assertEquals(2, new ImageDiffer(0, false, 10).findRegions(0, generated, goldCopy, 0).size());
+        List<DiffRegion> regions = new ImageDiffer(0, true, 10).findRegions(0, generated, goldCopy, 0);
+        assertEquals(1, regions.size(), regions::toString);
+        assertEquals(70, regions.get(0).getX());
+    }
+
+    @Test
+    void imagesOfDifferentSizesDifferEverywhere() {
+        BufferedImage larger = new BufferedImage(120, 100, BufferedImage.TYPE_INT_RGB);
+        ImageDiffer differ = new ImageDiffer(0, false, 10);
+
+        List<DiffRegion> regions = differ.findRegions(0, white(), larger, 0);
+
+        assertEquals(1, regions.size());
+        assertEquals(120, regions.get(0).getWidth());
+        assertEquals(100, regions.get(0).getHeight());
+        assertEquals(120 * 100, differ.countChangedPixels(white(), larger));
+    }
+
+    /** A white 100x100 image */
+    private static BufferedImage white() {
+        BufferedImage image = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, 0xFFFFFF);
+            }
+        }
+        return image;
+    }
+}
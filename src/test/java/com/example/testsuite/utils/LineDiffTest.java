@@ -0,0 +1,126 @@
+package com.example.testsuite.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class LineDiffTest {
+
+    @Test
+    void insertedLineIsReportedAsSingleHunk() {
+        int[] goldCopy = {1, 2, 3, 4, 5};
+        int[] generated = {9, 1, 2, 3, 4, 5};
+
+        List<LineDiff.Hunk> hunks = LineDiff.diff(generated, goldCopy);
+
+        assertEquals(1, hunks.size());
+        assertEquals("a[0, 1) -> b[0, 0)", hunks.get(0).toString());
+    }
+
+    @Test
+    void randomSequencesProduceMinimalEditScripts() {
+        Random random = new Random(42);
+        for (int round = 0; round < 500; round++) {
+            int[] a = randomSequence(random, random.nextInt(40));
+            int[] b = randomSequence(random, random.nextInt(40));
+
+            List<LineDiff.Hunk> hunks = LineDiff.diff(a, b);
+
+            assertArrayEquals(b, apply(a, b, hunks), "Hunks must turn a into b");
+            int edits = hunks.stream()
+                    .mapToInt(h -> (h.getAEnd() - h.getAStart()) + (h.getBEnd() - h.getBStart()))
+                    .sum();
+            assertEquals(a.length + b.length - 2 * lcsLength(a, b), edits, "Edit script must be minimal");
+        }
+    }
+
+    @Test
+    void largeSequencesWithFewChanges() {
+        int[] a = new int[100_000];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = i;
+        }
+        int[] b = a.clone();
+        b[10] = -1;
+        b[50_000] = -2;
+        b[99_999] = -3;
+
+        List<LineDiff.Hunk> hunks = LineDiff.diff(a, b);
+
+        assertEquals(3, hunks.size());
+        assertArrayEquals(b, apply(a, b, hunks));
+    }
+
+    @Test
+    void largeSequencesWithoutCommonLinesStopAtTheCostLimit() {
+        int[] a = new int[100_000];
+        int[] b = new int[100_000];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = i;
+            b[i] = -i - 1;
+        }
+
+        List<LineDiff.Hunk> hunks = assertTimeout(Duration.ofSeconds(10), () -> LineDiff.diff(a, b));
+
+        assertEquals("[a[0, 100000) -> b[0, 100000)]", hunks.toString());
+    }
+
+    @Test
+    void heavilyChangedSequencesStillProduceValidEditScripts() {
+        Random random = new Random(7);
+        int[] a = new int[100_000];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = i;
+        }
+        int[] b = a.clone();
+        for (int i = 0; i < 20_000; i++) {
+            b[random.nextInt(b.length)] = -i - 1;
+        }
+
+        List<LineDiff.Hunk> hunks = assertTimeout(Duration.ofSeconds(10), () -> LineDiff.diff(a, b));
+
+        assertArrayEquals(b, apply(a, b, hunks));
+    }
+
+    private static int[] randomSequence(Random random, int length) {
+        int[] sequence = new int[length];
+        for (int i = 0; i < length; i++) {
+            sequence[i] = random.nextInt(5);
+        }
+        return sequence;
+    }
+
+    private static int[] apply(int[] a, int[] b, List<LineDiff.Hunk> hunks) {
+        List<Integer> result = new ArrayList<>();
+        int position = 0;
+        for (LineDiff.Hunk hunk : hunks) {
+            assertTrue(hunk.getAStart() >= position, "Hunks must be ordered and disjoint");
+            for (; position < hunk.getAStart(); position++) {
+                result.add(a[position]);
+            }
+            for (int j = hunk.getBStart(); j < hunk.getBEnd(); j++) {
+                result.add(b[j]);
+            }
+            position = hunk.getAEnd();
+        }
+        for (; position < a.length; position++) {
+            result.add(a[position]);
+        }
+        return result.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int lcsLength(int[] a, int[] b) {
+        int[][] lengths = new int[a.length + 1][b.length + 1];
+        for (int i = a.length - 1; i >= 0; i--) {
+            for (int j = b.length - 1; j >= 0; j--) {
+                lengths[i][j] = a[i] == b[j] ? lengths[i + 1][j + 1] + 1 : Math.max(lengths[i + 1][j], lengths[i][j + 1]);
+            }
+        }
+        return lengths[0][0];
+    }
+}
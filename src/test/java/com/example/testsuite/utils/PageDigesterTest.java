@@ -0,0 +1,90 @@
+package com.example.testsuite.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class PageDigesterTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void digestIsStableAcrossLoadsAndSaves() throws IOException {
+        File original = createPdf("original.pdf", PDType1Font.HELVETICA, "Premium");
+        File resaved = new File(tempDir, "resaved.pdf");
+        try (PDDocument document = PDDocument.load(original)) {
+            document.save(resaved);
+        }
+
+        byte[] digest = digest(original, 0);
+
+        assertArrayEquals(digest, digest(original, 0));
+        assertArrayEquals(digest, digest(resaved, 0));
+        assertEquals(32, digest.length);
+    }
+
+    @Test
+    void pagesWithTheSameContentHaveTheSameDigest() throws IOException {
+        File document = createPdf("document.pdf", PDType1Font.HELVETICA, "Premium", "Premium", "Excess");
+
+        try (PDDocument loaded = PDDocument.load(document)) {
+            PageDigester digester = new PageDigester();
+            byte[] first = digester.digest(loaded.getPage(0));
+
+            assertArrayEquals(first, digester.digest(loaded.getPage(1)));
+            assertFalse(Arrays.equals(first, digester.digest(loaded.getPage(2))));
+        }
+    }
+
+    @Test
+    void fontsAndRotationArePartOfTheDigest() throws IOException {
+        File regular = createPdf("regular.pdf", PDType1Font.HELVETICA, "Premium");
+        File bold = createPdf("bold.pdf", PDType1Font.HELVETICA_BOLD, "Premium");
+
+        assertFalse(Arrays.equals(digest(regular, 0), digest(bold, 0)));
+
+        try (PDDocument document = PDDocument.load(regular)) {
+            byte[] upright = new PageDigester().digest(document.getPage(0));
+            document.getPage(0).setRotation(90);
+            assertFalse(Arrays.equals(upright, new PageDigester().digest(document.getPage(0))));
+        }
+    }
+
+    private static byte[] digest(File pdf, int page) throws IOException {
+        try (PDDocument document = PDDocument.load(pdf)) {
+            return new PageDigester().digest(document.getPage(page));
+        }
+    }
+
+    /**
+     * Writes one page per given text, shown in the given font
+     */
+    private File createPdf(String name, PDType1Font font, String... pageTexts) throws IOException {
+        File file = new File(tempDir, name);
+        try (PDDocument document = new PDDocument()) {
+            for (String text : pageTexts) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
+                    contentStream.beginText();
+                    contentStream.setFont(font, 12);
+                    contentStream.newLineAtOffset(100, 700);
+                    contentStream.showText(text);
+                    contentStream.endText();
+                }
+            }
+            document.save(file);
+        }
+        return file;
+    }
+}
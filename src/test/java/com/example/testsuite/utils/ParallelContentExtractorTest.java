@@ -0,0 +1,110 @@
+package com.example.testsuite.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.testsuite.utils.DocumentContentExtractor.ExtractedContent;
+
+public class ParallelContentExtractorTest {
+
+    @TempDir
+    File tempDir;
+
+    private ParallelContentExtractor contentExtractor;
+
+    @BeforeEach
+    void setUp() {
+        contentExtractor = new ParallelContentExtractor();
+        ReflectionTestUtils.setField(contentExtractor, "parallelism", 4);
+        ReflectionTestUtils.setField(contentExtractor, "minPagesPerWorker", 1);
+        ReflectionTestUtils.invokeMethod(contentExtractor, "init");
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(contentExtractor, "shutdown");
+    }
+
+    @Test
+    void parallelExtractionMatchesSingleExtractor() throws IOException {
+        File pdf = createPdf("document.pdf", 10, -1);
+
+        ExtractedContent sequential;
+        ExtractedContent parallel;
+        try (ComparisonSession session = ComparisonSession.open(pdf, pdf, new GoldCopyCache());
+             ComparisonSession parallelSession = ComparisonSession.open(pdf, pdf, new GoldCopyCache(), contentExtractor)) {
+            sequential = session.getGenerated().getContent();
+            parallel = parallelSession.getGenerated().getContent();
+        }
+
+        assertEquals(sequential.getText(), parallel.getText());
+        assertArrayEquals(sequential.getPageEnds(), parallel.getPageEnds());
+        assertEquals(10, parallel.getPageCount());
+        FontRunIndex runs = parallel.getFontRuns();
+        assertEquals(sequential.getFontRuns().size(), runs.size());
+        for (int run = 0; run < runs.size(); run++) {
+            assertEquals(sequential.getFontRuns().getText(run), runs.getText(run));
+            assertEquals(sequential.getFontRuns().getPage(run), runs.getPage(run));
+            assertEquals(sequential.getFontRuns().getFontInfo(run), runs.getFontInfo(run));
+        }
+    }
+
+    @Test
+    void differencesCarryPageAndDocumentLineNumber() throws IOException {
+        File goldCopy = createPdf("gold.pdf", 6, -1);
+        File generated = createPdf("generated.pdf", 6, 4);
+        TextComparator textComparator = new TextComparator(new GoldCopyCache(), contentExtractor);
+
+        for (TextComparator.ComparisonMode mode : List.of(TextComparator.ComparisonMode.LINE_BY_LINE,
+                TextComparator.ComparisonMode.SEQUENCE_DIFF)) {
+            List<TextComparator.TextDifference> differences =
+                    textComparator.compareContent(generated, goldCopy, mode, false);
+
+            assertEquals(1, differences.size(), mode + ": " + differences);
+            TextComparator.TextDifference difference = differences.get(0);
+            assertEquals(4, difference.getGeneratedPage());
+            assertEquals(4 * 3 + 2, difference.getGeneratedLine());
+            assertEquals("Page 5, Line 14 vs 14: Changed from \"Line 2 of page 5\" to \"Line 2 of page 5 changed\"",
+                    difference.toString());
+        }
+    }
+
+    /**
+     * Creates a PDF whose pages have three lines each, changing the second line of one page
+     */
+    private File createPdf(String name, int pages, int changedPage) throws IOException {
+        File file = new File(tempDir, name);
+        try (PDDocument document = new PDDocument()) {
+            for (int pageIndex = 0; pageIndex < pages; pageIndex++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
+                    contentStream.beginText();
+                    contentStream.setFont(pageIndex % 2 == 0 ? PDType1Font.HELVETICA : PDType1Font.TIMES_ROMAN, 12);
+                    contentStream.newLineAtOffset(100, 700);
+                    for (int line = 1; line <= 3; line++) {
+                        String text = "Line " + line + " of page " + (pageIndex + 1);
+                        contentStream.showText(pageIndex == changedPage && line == 2 ? text + " changed" : text);
+                        contentStream.newLineAtOffset(0, -20);
+                    }
+                    contentStream.endText();
+                }
+            }
+            document.save(file);
+        }
+        return file;
+    }
+}
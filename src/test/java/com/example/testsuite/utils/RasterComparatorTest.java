@@ -0,0 +1,76 @@
+package com.example.testsuite.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+import org.junit.jupiter.api.Test;
+
+public class RasterComparatorTest {
+
+    @Test
+    void identicalImagesHaveNoMismatch() {
+        assertNull(RasterComparator.findFirstMismatch(image(BufferedImage.TYPE_INT_RGB),
+                image(BufferedImage.TYPE_INT_RGB)));
+        assertNull(RasterComparator.findFirstMismatch(image(BufferedImage.TYPE_BYTE_GRAY),
+                image(BufferedImage.TYPE_BYTE_GRAY)));
+    }
+
+    @Test
+    void findsTheFirstDifferingPixelInRowMajorOrder() {
+        BufferedImage generated = image(BufferedImage.TYPE_INT_RGB);
+        generated.setRGB(30, 20, 0x000000);
+        generated.setRGB(10, 40, 0x000000);
+
+        assertEquals(new Point(30, 20),
+                RasterComparator.findFirstMismatch(generated, image(BufferedImage.TYPE_INT_RGB)));
+    }
+
+    @Test
+    void findsDifferencesInGrayImages() {
+        BufferedImage generated = image(BufferedImage.TYPE_BYTE_GRAY);
+        generated.setRGB(49, 49, 0x000000);
+
+        assertEquals(new Point(49, 49),
+                RasterComparator.findFirstMismatch(generated, image(BufferedImage.TYPE_BYTE_GRAY)));
+    }
+
+    @Test
+    void ignoresTheUndefinedTopByteOfRgbPixels() {
+        BufferedImage generated = image(BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) generated.getRaster().getDataBuffer()).getData();
+        pixels[5] |= 0xFF000000;
+
+        assertNull(RasterComparator.findFirstMismatch(generated, image(BufferedImage.TYPE_INT_RGB)));
+    }
+
+    @Test
+    void comparesImagesOfDifferentTypesRowByRow() {
+        BufferedImage generated = image(BufferedImage.TYPE_INT_ARGB);
+
+        assertNull(RasterComparator.findFirstMismatch(generated, image(BufferedImage.TYPE_INT_RGB)));
+
+        generated.setRGB(7, 3, 0xFF000000);
+        assertEquals(new Point(7, 3),
+                RasterComparator.findFirstMismatch(generated, image(BufferedImage.TYPE_INT_RGB)));
+    }
+
+    @Test
+    void imagesOfDifferentSizesDifferAtTheOrigin() {
+        assertEquals(new Point(0, 0), RasterComparator.findFirstMismatch(image(BufferedImage.TYPE_INT_RGB),
+                new BufferedImage(50, 51, BufferedImage.TYPE_INT_RGB)));
+    }
+
+    /** A white 50x50 image */
+    private static BufferedImage image(int type) {
+        BufferedImage image = new BufferedImage(50, 50, type);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, 0xFFFFFFFF);
+            }
+        }
+        return image;
+    }
+}
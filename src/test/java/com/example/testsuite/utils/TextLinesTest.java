@@ -0,0 +1,77 @@
+package com.example.testsuite.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the hand-rolled scanners against the regular expressions they replace
+ */
+public class TextLinesTest {
+
+    private static final char[] ALPHABET = {'a', 'b', ' ', ' ', '\t', '\n', '\n', '\r', '\u000B', '\f', '\u0001', '\u00A0'};
+
+    @Test
+    void cursorSplitsLikeStringSplit() {
+        Random random = new Random(7);
+        for (int round = 0; round < 5000; round++) {
+            String text = randomText(random);
+
+            List<String> lines = new ArrayList<>();
+            TextLines.Cursor cursor = new TextLines.Cursor(text);
+            while (cursor.next()) {
+                assertEquals(lines.size() + 1, cursor.lineNumber());
+                lines.add(cursor.line());
+            }
+
+            assertEquals(List.of(text.split("\\r?\\n")), lines, () -> "Lines of " + escape(text));
+        }
+    }
+
+    @Test
+    void normalizationMatchesTrimAndRegex() {
+        Random random = new Random(11);
+        for (int round = 0; round < 5000; round++) {
+            String text1 = randomText(random);
+            String text2 = random.nextBoolean() ? randomText(random) : text1.replace(" ", " \t ");
+            String expected1 = text1.trim().replaceAll("\\s+", " ");
+            String expected2 = text2.trim().replaceAll("\\s+", " ");
+
+            assertEquals(expected1, TextLines.normalizeWhitespace(text1, 0, text1.length()), () -> escape(text1));
+            assertEquals(expected1.equals(expected2),
+                    TextLines.equals(text1, 0, text1.length(), text2, 0, text2.length(), false),
+                    () -> escape(text1) + " vs " + escape(text2));
+            if (expected1.equals(expected2)) {
+                assertEquals(TextLines.hash(text1, 0, text1.length(), false),
+                        TextLines.hash(text2, 0, text2.length(), false));
+            }
+        }
+    }
+
+    @Test
+    void internerGivesEqualLinesEqualIds() {
+        TextLines.Interner interner = new TextLines.Interner(false);
+
+        int[] ids1 = interner.internLines("Policy  POL-1\nPremium\n  Total ");
+        int[] ids2 = interner.internLines("Premium\nPolicy POL-1\nTotal\nNew");
+
+        assertArrayEquals(new int[] {0, 1, 2}, ids1);
+        assertArrayEquals(new int[] {1, 0, 2, 3}, ids2);
+    }
+
+    private static String randomText(Random random) {
+        char[] chars = new char[random.nextInt(12)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+        }
+        return new String(chars);
+    }
+
+    private static String escape(String text) {
+        return text.replace("\r", "\\r").replace("\n", "\\n").replace("\t", "\\t");
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.testsuite.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.rendering.ImageType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.testsuite.utils.ImageDiffer.DiffRegion;
+import com.example.testsuite.utils.VisualComparator.PageDecision;
+import com.example.testsuite.utils.VisualComparator.VisualResult;
+
+public class VisualComparatorTest {
+
+    @TempDir
+    File tempDir;
+
+    private VisualComparator visualComparator;
+
+    @BeforeEach
+    void setUp() {
+        visualComparator = new VisualComparator(new GoldCopyCache());
+        ReflectionTestUtils.setField(visualComparator, "dpi", 72f);
+        ReflectionTestUtils.setField(visualComparator, "imageType", ImageType.RGB);
+        ReflectionTestUtils.setField(visualComparator, "parallelism", 4);
+        ReflectionTestUtils.setField(visualComparator, "regionMergeDistance", 10);
+        ReflectionTestUtils.setField(visualComparator, "coarseDpis", new float[] {36f});
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(visualComparator, "shutdown");
+    }
+
+    @Test
+    void identicalDocumentsAreIdenticalOnEveryPage() throws IOException {
+        ReflectionTestUtils.invokeMethod(visualComparator, "init");
+        File diff = new File(tempDir, "diff.png");
+
+        VisualResult result = visualComparator.compareAndGenerateDiff(
+                createPdf("generated.pdf", "A", "B", "C", "D", "E", "F"),
+                createPdf("gold.pdf", "A", "B", "C", "D", "E", "F"), diff);
+
+        assertTrue(result.isIdentical());
+        assertTrue(result.getRegions().isEmpty());
+        assertFalse(diff.exists());
+    }
+
+    @Test
+    void reportsTheLowestDifferingPageWhicheverWorkerFindsItFirst() throws IOException {
+        ReflectionTestUtils.invokeMethod(visualComparator, "init");
+        File generated = createPdf("generated.pdf", "A", "B", "C 500", "D", "E 500", "F");
+        File goldCopy = createPdf("gold.pdf", "A", "B", "C 250", "D", "E 250", "F");
+
+        byte[] firstDiff = null;
+        for (int run = 0; run < 5; run++) {
+            File diff = new File(tempDir, "diff-" + run + ".png");
+
+            VisualResult result = visualComparator.compareAndGenerateDiff(generated, goldCopy, diff);
+
+            assertFalse(result.isIdentical());
+            List<DiffRegion> regions = result.getRegions();
+            assertFalse(regions.isEmpty());
+            assertTrue(regions.stream().allMatch(region -> region.getPage() == 2), regions::toString);
+            assertEquals(List.of(0, 1, 2), result.getPageDecisions().stream().map(PageDecision::getPage).toList());
+            if (firstDiff == null) {
+                firstDiff = Files.readAllBytes(diff.toPath());
+            } else {
+                assertArrayEquals(firstDiff, Files.readAllBytes(diff.toPath()), "Diff image of run " + run);
+            }
+        }
+    }
+
+    @Test
+    void coarseTiersEscalateDifferingPagesToTheFullResolution() throws IOException {
+        ReflectionTestUtils.setField(visualComparator, "tiersEnabled", true);
+        ReflectionTestUtils.invokeMethod(visualComparator, "init");
+
+        VisualResult result = visualComparator.compareAndGenerateDiff(
+                createPdf("generated.pdf", "A", "Excess 500"), createPdf("gold.pdf", "A", "Excess 250"),
+                new File(tempDir, "diff.png"));
+
+        assertFalse(result.isIdentical());
+        PageDecision first = result.getPageDecisions().get(0);
+        assertTrue(first.isIdentical());
+        assertEquals(36f, first.getDpi());
+        PageDecision second = result.getPageDecisions().get(1);
+        assertFalse(second.isIdentical());
+        assertEquals(72f, second.getDpi());
+    }
+
+    @Test
+    void coarseTierPassesPagesWithinTheEscalationThreshold() throws IOException {
+        ReflectionTestUtils.setField(visualComparator, "tiersEnabled", true);
+        ReflectionTestUtils.setField(visualComparator, "escalationThreshold", 0.01);
+        ReflectionTestUtils.invokeMethod(visualComparator, "init");
+
+        VisualResult result = visualComparator.compareAndGenerateDiff(
+                createPdf("generated.pdf", "A", "Excess 500"), createPdf("gold.pdf", "A", "Excess 250"),
+                new File(tempDir, "diff.png"));
+
+        assertTrue(result.isIdentical());
+        assertTrue(result.getPageDecisions().stream().allMatch(decision -> decision.getDpi() == 36f));
+    }
+
+    @Test
+    void pagesWithEqualContentHashesAreNotRendered() throws IOException {
+        ReflectionTestUtils.setField(visualComparator, "contentHashShortCircuit", true);
+        ReflectionTestUtils.invokeMethod(visualComparator, "init");
+
+        VisualResult result = visualComparator.compareAndGenerateDiff(
+                createPdf("generated.pdf", "A", "Excess 500"), createPdf("gold.pdf", "A", "Excess 250"),
+                new File(tempDir, "diff.png"));
+
+        assertFalse(result.isIdentical());
+        assertEquals(PageDecision.Stage.CONTENT_HASH, result.getPageDecisions().get(0).getStage());
+        assertEquals(PageDecision.Stage.RASTER, result.getPageDecisions().get(1).getStage());
+    }
+
+    /**
+     * Writes one page per given text, each showing "Policy" with the text on the line below
+     */
+    private File createPdf(String name, String... pageTexts) throws IOException {
+        File file = new File(tempDir, name);
+        try (PDDocument document = new PDDocument()) {
+            for (String text : pageTexts) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
+                    contentStream.beginText();
+                    contentStream.setFont(PDType1Font.HELVETICA, 12);
+                    contentStream.newLineAtOffset(100, 700);
+                    contentStream.showText("Policy");
+                    contentStream.newLineAtOffset(0, -20);
+                    contentStream.showText(text);
+                    contentStream.endText();
+                }
+            }
+            document.save(file);
+        }
+        return file;
+    }
+}